@@ -39,11 +39,26 @@ declare function isLoggedIn(): boolean;
 
 /**
  * If a string, matches items by their name, with the "minecraft:" prefix removed if it exists.
+ * If a string starting with "#", matches items in the item tag with that name, e.g. "#logs".
  * If an object, matches the item NBT.
  * If a function, it should return true or false based on the input item NBT.
  */
 type ItemPredicate = string | object | ((itemNbt: object) => boolean);
 
+/**
+ * If a string, matches blocks by their name, with the "minecraft:" prefix removed if it exists.
+ * If a string starting with "#", matches blocks in the block tag with that name, e.g. "#logs".
+ * If a function, it should return true or false based on the input block state.
+ */
+type BlockPredicate = string | ((state: BlockState) => boolean);
+
+/**
+ * If a string, matches entities by their type, with the "minecraft:" prefix removed if it exists.
+ * If a string starting with "#", matches entities whose type is in the entity type tag with that name.
+ * If a function, it should return true or false based on the input entity.
+ */
+type EntityPredicate = string | ((entity: Entity) => boolean);
+
 /**
  * Represents a generic entity
  */
@@ -95,6 +110,26 @@ declare class Entity {
      */
     readonly nbt: object;
 
+    /**
+     * Gets only some values from the NBT of the entity, which is much faster than reading {@link nbt} when the entity
+     * has a lot of data. Paths use the same syntax as the <tt>/data get</tt> command, e.g. <tt>"Item.id"</tt> or
+     * <tt>"Inventory[0].Count"</tt>. A path which matches one value gives that value, a path which matches several
+     * values gives an array of them, and a path which matches nothing gives <tt>null</tt>. <tt>Pos</tt>,
+     * <tt>Motion</tt>, <tt>Rotation</tt>, <tt>Health</tt>, <tt>Item.id</tt> and <tt>Item.Count</tt> are read without
+     * serializing the entity at all.
+     * @param paths A single path, or an array of paths
+     * @return The value of the path if a single path was given, otherwise an object mapping each path to its value
+     */
+    getNbt(paths: string | Array<string>): any;
+
+    /**
+     * Predicts where this entity will be over the next few ticks, taking into account gravity, drag and collisions
+     * with blocks. Mobs and players are assumed to keep walking the way they walked last tick. Fluids are ignored.
+     * @param ticks How many ticks to predict, at most 200
+     * @return The predicted position after each tick, starting with the next tick
+     */
+    predictPositions(ticks: number): Array<Position>;
+
     /**
      * Returns whether this entity is the same entity as the other entity
      * @param other The other entity
@@ -160,8 +195,9 @@ declare class ControllablePlayer extends Player {
      */
     pathTo(x: number, y: number, z: number, hints?: PathfindingHints): boolean;
     /**
-     * Pathfinds the player to the specified moving target entity. Blocks until it reaches there.
-     * Returns whether successful
+     * Pathfinds the player to the specified moving target entity, heading for where the entity is predicted to be by
+     * the time the player gets there. The path is only recalculated when the entity strays far enough from where it
+     * was expected to be. Blocks until it reaches there. Returns whether successful
      * @param target The entity to follow
      * @param hints The pathfinding hints
      */
@@ -197,6 +233,23 @@ declare class ControllablePlayer extends Player {
      * @param target The entity to look at
      */
     lookAt(target: Entity): void;
+    /**
+     * Causes the player to look towards where an entity is predicted to be after some ticks, as in
+     * {@link Entity.predictPositions}. Useful to lead a moving target.
+     * @param target The entity to look at
+     * @param leadTicks How many ticks ahead to look, at most 200
+     */
+    lookAt(target: Entity, leadTicks: number): void;
+
+    /**
+     * Finds the earliest point at which a projectile shot from the player's eyes at a constant speed could hit an
+     * entity, using the entity's predicted positions. Gravity on the projectile is not taken into account. Aims at the
+     * eye height of {@link LivingEntity}s, like {@link lookAt}. Returns <tt>null</tt> if there is no such point.
+     * @param target The entity to hit
+     * @param speed The speed of the projectile in blocks per tick
+     * @param maxTicks The maximum number of ticks to look ahead, at most 200. Defaults to 100
+     */
+    getInterceptPoint(target: Entity, speed: number, maxTicks?: number): Position | null;
 
     /**
      * Forces a synchronization of the player's look angles with the server. By default, the player's
@@ -265,16 +318,44 @@ declare class ControllablePlayer extends Player {
      * If the player currently has a crafting container open, crafts as many times as possible up to the given
      * number of times. Places items matching the given parameters into the given pattern, waits for a result matching
      * <tt>result</tt> to appear, and pulls it out of the crafting grid.
+     *
+     * By default, if the player has unlocked a recipe for the result, the recipe book is used to fill the grid with as
+     * many crafts as possible at once, and the result is shift-clicked to craft them all. This falls back to placing
+     * the items by hand if the recipe book can't be used, or if it picks items which don't match the ingredients.
      * @param result The expected result of the recipe
      * @param craftCount The number of crafts
      * @param pattern An array of rows of the pattern. Each character corresponds to an item, use spaces for blank slots
      * @param ingredients Associates characters with items
+     * @param options Options for how to craft
      * @return The number of crafts managed
      */
     craft(result: ItemPredicate,
           craftCount: number,
           pattern: Array<string>,
-          ingredients: {[keys: string]: ItemPredicate}): number;
+          ingredients: {[keys: string]: ItemPredicate},
+          options?: CraftOptions): number;
+
+    /**
+     * Plans the crafts needed to make an item from what's in the player's inventory, including crafting any
+     * intermediate items, such as logs into planks into sticks. Only recipes that fit in the grid of the open crafting
+     * table are used, or in the player's own 2x2 grid if no crafting table is open. Repeats of the same craft are
+     * merged, and every item is crafted before the crafts that use it.
+     * @param item The item to craft
+     * @param count The number of items to craft, not counting any already in the inventory
+     * @return The crafts to do in order, each of which can be passed to {@link craft}, or <tt>null</tt> if the item
+     * can't be made from the inventory
+     */
+    planCraft(item: string, count: number): Array<CraftStep> | null;
+
+    /**
+     * Plans the crafts needed to make an item as in {@link planCraft}, and does them with {@link craft}. A crafting
+     * container must be open.
+     * @param item The item to craft
+     * @param count The number of items to craft, not counting any already in the inventory
+     * @param options Options for how to craft
+     * @return Whether all the crafts succeeded
+     */
+    craftRecursively(item: string, count: number, options?: CraftOptions): boolean;
 
     /**
      * "picks" an item from the player's inventory, and selects it in the hotbar, in a similar fashion to the
@@ -450,6 +531,83 @@ interface InventoryClickOptions {
     quickCraftStage?: number;
 }
 
+interface ClickTransactionOptions {
+    /**
+     * The maximum number of clicks sent in one batch, before waiting for the server to confirm them. Defaults to 8
+     */
+    window?: number;
+    /**
+     * How many ticks to wait for the server to confirm a batch of clicks before treating the transaction as diverged.
+     * Defaults to twice the player's ping in ticks plus 4
+     */
+    settleTicks?: number;
+}
+
+interface PlanOptions extends ClickTransactionOptions {
+    /**
+     * The first slot to rearrange. Defaults to 9 for the player inventory, i.e. the start of the main inventory, or 0
+     * for containers
+     */
+    from?: number;
+    /**
+     * The last slot to rearrange, inclusive. Defaults to 35 for the player inventory, i.e. the end of the main
+     * inventory, or the last slot for containers
+     */
+    to?: number;
+}
+
+interface CraftOptions {
+    /**
+     * Whether to use the recipe book to fill the crafting grid when possible. Defaults to <tt>true</tt>
+     */
+    recipeBook?: boolean;
+    /**
+     * Called at the end of each tick spent crafting
+     * @param crafted The number of crafts managed so far
+     * @param ticks The number of ticks spent crafting so far
+     */
+    onProgress?: (crafted: number, ticks: number) => void;
+}
+
+/**
+ * A queue of inventory clicks which are sent several at a time rather than one per tick, created by
+ * {@link Inventory.transaction}. Clicks are sent in batches, and after each batch the server is asked for its copy of
+ * the inventory, which confirms the batch if it matches what the client predicted. Since the server only replies to a
+ * click if its result differs from the client's, any such reply stops the transaction, so that the remaining clicks
+ * don't act on the wrong items. Slots the server fills in by itself, such as crafting results, are not checked.
+ */
+declare class ClickTransaction {
+    /**
+     * The number of clicks queued
+     */
+    readonly size: number;
+    /**
+     * The number of clicks sent so far
+     */
+    readonly sent: number;
+    /**
+     * The number of sent clicks whose result the server has confirmed
+     */
+    readonly confirmed: number;
+    /**
+     * Whether the server disagreed with the result of a click, or the inventory was changed by something else
+     */
+    readonly diverged: boolean;
+
+    /**
+     * Queues a click, with the same arguments as {@link Inventory.click}
+     */
+    click(slot: number | null, options?: InventoryClickOptions): void;
+
+    /**
+     * Sends the queued clicks and blocks until the server has confirmed all of them. If the server's inventory
+     * diverges, no more clicks are sent and this asks for and waits for the server's copy of the inventory, so you can
+     * plan again from the real inventory. If the screen is closed, no more clicks are sent.
+     * @return Whether all clicks were confirmed by the server
+     */
+    execute(): boolean;
+}
+
 /**
  * Represents an inventory/container of items
  */
@@ -473,6 +631,50 @@ declare class Inventory {
      */
     click(slot: number | null, options?: InventoryClickOptions): void;
 
+    /**
+     * Creates a transaction to send many clicks in quick succession without the inventory getting out of sync with the
+     * server. This is much faster than waiting a tick between clicks.
+     * @param options The options of the transaction
+     */
+    transaction(options?: ClickTransactionOptions): ClickTransaction;
+
+    /**
+     * Starts watching for changes to the items in this inventory. The items are compared with their previous values at
+     * the end of every tick, which is much cheaper than reading {@link items} every tick, and the changes can be picked
+     * up with {@link InventoryWatcher.poll}. The watcher is closed automatically when the container is closed or the
+     * thread that created it stops.
+     */
+    watch(): InventoryWatcher;
+
+    /**
+     * Merges partial stacks and sorts the stacks by item id, then NBT, then count, using as few clicks as it can.
+     * Equivalent to <tt>planSort(options).execute()</tt>.
+     * @param options Which slots to sort, and the options of the transaction
+     * @return Whether all the clicks were sent without the server disagreeing
+     */
+    sort(options?: PlanOptions): boolean;
+
+    /**
+     * Plans the clicks to merge partial stacks and sort the stacks by item id, then NBT, then count, without sending
+     * them. Cycles of stacks are moved with left clicks, or with hotbar swaps when a cycle goes through the hotbar,
+     * which needs fewer clicks. The cursor must be empty.
+     * @param options Which slots to sort, and the options of the transaction
+     * @return A transaction containing the planned clicks, which can be sent with {@link ClickTransaction.execute}
+     */
+    planSort(options?: PlanOptions): ClickTransaction;
+
+    /**
+     * Plans the clicks to merge partial stacks and move stacks so that each slot matches its entry in the layout,
+     * without sending them. Other stacks go to slots whose entry is <tt>null</tt> where possible, and stay where they
+     * are if they can. The cursor must be empty.
+     * @param layout An item predicate for each slot, starting at <tt>from</tt>. <tt>null</tt> means any item may go
+     *               there, and <tt>"air"</tt> means the slot should be empty. Missing entries at the end are
+     *               <tt>null</tt>
+     * @param options Which slots to rearrange, and the options of the transaction
+     * @return A transaction containing the planned clicks, which can be sent with {@link ClickTransaction.execute}
+     */
+    planLayout(layout: Array<ItemPredicate | null>, options?: PlanOptions): ClickTransaction;
+
     /**
      * Finds the first slot in the container with an item that matches the given item predicate
      * @param item The item to search for
@@ -509,6 +711,54 @@ declare class Inventory {
     equals(other: Inventory): boolean;
 }
 
+/**
+ * Watches an inventory for changes, created by {@link Inventory.watch}
+ */
+declare class InventoryWatcher {
+    /**
+     * Whether this watcher has been closed
+     */
+    readonly closed: boolean;
+
+    /**
+     * Returns all the changes since the last call to <tt>poll</tt>, up to the end of the last tick, or <tt>null</tt>
+     * if there were none. Several changes to the same slot are merged into one, and slots which changed back to what
+     * they were are left out.
+     */
+    poll(): InventoryChangeBatch | null;
+
+    /**
+     * Stops watching for changes
+     */
+    close(): void;
+}
+
+/**
+ * A batch of inventory changes, as returned by {@link InventoryWatcher.poll}
+ */
+declare class InventoryChangeBatch {
+    /**
+     * The number of changed slots in this batch
+     */
+    readonly count: number;
+    /**
+     * The number of ticks this batch covers
+     */
+    readonly ticks: number;
+    /**
+     * The index of each changed slot in {@link Inventory.items}
+     */
+    readonly slots: Array<number>;
+    /**
+     * The item stack NBT of each slot before the change
+     */
+    readonly oldItems: Array<object>;
+    /**
+     * The item stack NBT of each slot after the change
+     */
+    readonly newItems: Array<object>;
+}
+
 /**
  * The type of the global <tt>world</tt> variable, the client-side world.
  */
@@ -528,6 +778,150 @@ declare class World {
      */
     getBlock(x: number, y: number, z: number): string;
 
+    /**
+     * Gets the numeric id of the block at the given position. Comparing ids is faster than comparing names, but ids
+     * may change across Minecraft versions, with mods, or between servers, so they should be looked up with
+     * {@link BlockState.blockIdOf} each time you join a world rather than hardcoded.
+     * @param x The x-position of the block to query
+     * @param y The y-position of the block to query
+     * @param z The z-position of the block to query
+     */
+    getBlockId(x: number, y: number, z: number): number;
+
+    /**
+     * Gets the numeric block state id of the block state at the given position, see {@link BlockState.id}
+     * @param x The x-position of the block state to query
+     * @param y The y-position of the block state to query
+     * @param z The z-position of the block state to query
+     */
+    getBlockStateId(x: number, y: number, z: number): number;
+
+    /**
+     * Reads all the blocks in the box between the two given corners (inclusive) in one go. This is much faster than
+     * calling {@link getBlock} for each position. Unloaded positions are read as air.
+     * @param x1 The x-position of the first corner
+     * @param y1 The y-position of the first corner
+     * @param z1 The z-position of the first corner
+     * @param x2 The x-position of the second corner
+     * @param y2 The y-position of the second corner
+     * @param z2 The z-position of the second corner
+     */
+    getBlocks(x1: number, y1: number, z1: number, x2: number, y2: number, z2: number): BlockRegion;
+
+    /**
+     * Searches the loaded chunks for blocks matching the given predicate, closest first. The search runs in the
+     * background on a copy of the world, and <tt>matcher</tt> is only called once per distinct block state, so this
+     * is much faster than looping over {@link getBlock}. Air is only found in chunk sections which contain other
+     * blocks. The blocks are read as they were at the end of a tick, so this may wait for the end of the current tick
+     * if the area hasn't been copied recently.
+     * @param matcher The blocks to search for
+     * @param center The center of the search
+     * @param radius The maximum Euclidean distance from the center of the search to a found block. Must be at most 127
+     * @param limit The maximum number of blocks to return, or -1 for no maximum. Defaults to -1
+     * @return The positions of the matching blocks, sorted by distance from the center
+     */
+    findBlocks(matcher: BlockPredicate, center: Position, radius: number, limit?: number): Array<Position>;
+
+    /**
+     * Starts watching for block changes inside a box. Changes are filtered and collected in the background, and
+     * can be picked up once per tick with {@link BlockWatcher.poll}. The watcher is closed automatically when the
+     * thread that created it stops.
+     * @param box The box to watch
+     * @param matcher If present, only changes from or to a matching block are reported. Block names and tags are
+     *                matched as the changes happen. A function is called from the script, once per block state, so
+     *                until it has been asked about a block state, changes involving it are kept until the next poll
+     */
+    watchBlocks(box: BlockBox, matcher?: BlockPredicate): BlockWatcher;
+
+    /**
+     * Gets the entities touching a box, using the world's spatial entity index rather than scanning every entity.
+     * Much faster than an <tt>@e</tt> selector when you only care about a small area. Spectators are not included.
+     * @param box The box to search. Coordinates may be fractional. The player is included if it touches the box
+     * @param matcher If present, only entities matching this predicate are returned. Matching by type name is
+     *                fastest, since the world also groups entities by type
+     * @param limit The maximum number of entities to return, closest to the player first, or -1 for no maximum.
+     *              Defaults to -1
+     */
+    getEntities(box: BlockBox, matcher?: EntityPredicate | null, limit?: number): Array<Entity>;
+
+    /**
+     * Gets the positions, velocities and rotations of entities as they were at the end of the last tick. This is
+     * much faster than reading the properties of many {@link Entity} objects. While scripts keep calling this, the
+     * snapshot is built once per tick and shared between all of them.
+     * @param filter If a number, only includes entities within that distance of the player. If a string, only
+     *               includes the entities matched by that entity selector, e.g. <tt>"@e[type=zombie]"</tt>. If
+     *               absent, includes all entities in the world
+     */
+    getEntitySnapshot(filter?: number | string | null): EntitySnapshot;
+
+    /**
+     * Predicts the positions of many entities at once, as in {@link Entity.predictPositions}. The predictions are
+     * computed in parallel.
+     * @param entities The entities to predict
+     * @param ticks How many ticks to predict, at most 200
+     * @return The predicted positions of each entity, in the same order as <tt>entities</tt>
+     */
+    predictPositions(entities: Array<Entity>, ticks: number): Array<Array<Position>>;
+
+    /**
+     * Starts watching for entities spawning, entering, moving in, leaving and being removed from a box. The entities
+     * are checked in the background once per tick, and the events can be picked up with {@link EntityWatcher.poll}.
+     * The watcher is closed automatically when the thread that created it stops.
+     * @param box The box to watch. Coordinates may be fractional
+     * @param matcher If present, only entities of this type, or in this tag if it starts with "#", are watched.
+     *                Unlike {@link getEntities}, this cannot be a function
+     * @param moveThreshold How far an entity has to move from its last reported position to report another move.
+     *                      Defaults to 1
+     */
+    watchEntities(box: BlockBox, matcher?: string | null, moveThreshold?: number): EntityWatcher;
+
+    /**
+     * Returns a number which changes whenever a block changes or a chunk is loaded or unloaded inside the box. Store
+     * it and compare it later to cheaply check whether anything in the box might have changed, without rescanning
+     * the blocks. Changes are tracked per 16x16x16 chunk section, so changes just outside the box may also change
+     * the number.
+     * @param box The box to check
+     */
+    regionVersion(box: BlockBox): number;
+
+    /**
+     * Takes an immutable copy of the blocks inside a box. The copy never changes, even if the world does, and is
+     * safe to read from any thread. The snapshot shows the world as it was at the end of a single tick, and waits for
+     * the end of the current tick if some of the area hasn't been copied yet. Unchanged chunk sections are shared
+     * between snapshots, so repeatedly taking snapshots of the same area is cheap.
+     * @param box The box to copy. Must be at most 512x512x384 blocks
+     */
+    createSnapshot(box: BlockBox): WorldSnapshot;
+
+    /**
+     * Gets the contents of a container block as they were when the player last had it open, or <tt>null</tt> if the
+     * container hasn't been opened since its block last changed. Every container block the player opens which stores
+     * items, such as a chest, barrel or furnace, is remembered, whether or not a script opened it, and the memory is
+     * saved per server or singleplayer world. Ender chests are not remembered, since their contents belong to the
+     * player. The saved memory is loaded in the background when joining, and the remembered container functions wait
+     * for it to finish loading.
+     * @param x The x-position of the container. Either half of a double chest works
+     * @param y The y-position of the container
+     * @param z The z-position of the container
+     */
+    getRememberedContainer(x: number, y: number, z: number): RememberedContainer | null;
+
+    /**
+     * Finds the remembered containers, in any dimension, which had a matching item in them when they were last seen.
+     * Matching by item name looks the item up in an index, which is much faster than matching by tag, NBT or function,
+     * since those look at every remembered container.
+     * @param item The item to search for
+     */
+    findRememberedItems(item: ItemPredicate): Array<RememberedContainer>;
+
+    /**
+     * Forgets the remembered contents of a container block
+     * @param x The x-position of the container
+     * @param y The y-position of the container
+     * @param z The z-position of the container
+     */
+    forgetContainer(x: number, y: number, z: number): void;
+
     /**
      * Gets the block state property with the given name at the given position.
      * Equivalent to <tt>getBlockState(x, y, z).getProperty(property)</tt>
@@ -547,7 +941,8 @@ declare class World {
     getBlockState(x: number, y: number, z: number): BlockState;
 
     /**
-     * Gets the client-side block entity NBT at the given coordinates
+     * Gets the client-side block entity NBT at the given coordinates. The NBT is cached until the block entity
+     * receives new data from the server, but every call returns a new object which can be freely modified.
      * @param x The x-position of the block entity whose NBT to get
      * @param y The y-position of the block entity whose NBT to get
      * @param z The z-position of the block entity whose NBT to get
@@ -555,6 +950,29 @@ declare class World {
      */
     getBlockEntityNbt(x: number, y: number, z: number): object | null;
 
+    /**
+     * Gets only some values from the NBT of the block entity at the given coordinates. Paths work as in
+     * {@link Entity.getNbt}
+     * @param x The x-position of the block entity whose NBT to get
+     * @param y The y-position of the block entity whose NBT to get
+     * @param z The z-position of the block entity whose NBT to get
+     * @param paths A single path, or an array of paths
+     * @return The value of the path if a single path was given, otherwise an object mapping each path to its value.
+     * <tt>null</tt> if there was no block entity
+     */
+    getBlockEntityNbt(x: number, y: number, z: number, paths: string | Array<string>): any;
+
+    /**
+     * Returns whether the block entity at the given coordinates has ever received its data from the server. If not,
+     * {@link getBlockEntityNbt} only returns the defaults the client created the block entity with. Note that the
+     * server never sends the contents of some block entities, such as chests, after the chunk is loaded.
+     * @param x The x-position of the block entity
+     * @param y The y-position of the block entity
+     * @param z The z-position of the block entity
+     * @return Whether the block entity has been synced, or <tt>false</tt> if there was no block entity
+     */
+    isBlockEntityDataSynced(x: number, y: number, z: number): boolean;
+
     /**
      * Gets the block light at the given position, 0-15
      * @param x The x-coordinate of the position to get the block light of
@@ -571,6 +989,35 @@ declare class World {
      */
     getSkyLight(x: number, y: number, z: number): number;
 
+    /**
+     * Gets the block or sky light levels of all positions in a box at once, read directly from the light storage.
+     * This is much faster than calling {@link getBlockLight} or {@link getSkyLight} in a loop.
+     * The box may be at most 16777216 blocks in volume. The light levels are read as they are at the time of the call,
+     * so they may be from a later tick than the blocks found by {@link findBlocks}.
+     * @param type Either <tt>"block"</tt> or <tt>"sky"</tt>
+     * @param x1 The x-position of the first corner
+     * @param y1 The y-position of the first corner
+     * @param z1 The z-position of the first corner
+     * @param x2 The x-position of the second corner
+     * @param y2 The y-position of the second corner
+     * @param z2 The z-position of the second corner
+     */
+    getLightLevels(type: string, x1: number, y1: number, z1: number, x2: number, y2: number, z2: number): LightRegion;
+
+    /**
+     * Like {@link findBlocks}, but only finds blocks whose own light level is at most <tt>maxLight</tt>. For example,
+     * to find dark spaces where mobs could spawn, match air with a <tt>"block"</tt> light level of at most 0. The light
+     * levels and the blocks are both read at the end of the same tick, so this waits for the end of the current tick.
+     * @param matcher The blocks to search for
+     * @param center The center of the search
+     * @param radius The maximum Euclidean distance from the center of the search to a found block. Must be at most 127
+     * @param type Either <tt>"block"</tt> or <tt>"sky"</tt>
+     * @param maxLight The maximum light level of a found block
+     * @param limit The maximum number of blocks to return, or -1 for no maximum. Defaults to -1
+     * @return The positions of the matching blocks, sorted by distance from the center
+     */
+    findBlocksByLight(matcher: BlockPredicate, center: Position, radius: number, type: string, maxLight: number, limit?: number): Array<Position>;
+
     /**
      * Finds the closest visible point on a block
      * @param x The x-position of the block to find the closest visible point on
@@ -580,6 +1027,457 @@ declare class World {
      * @return Whether there was a visible point on the block within reach
      */
     getClosestVisiblePoint(x: number, y: number, z: number, side?: string): Position | null;
+
+    /**
+     * Finds the closest visible point on many blocks at once. This is much faster than calling
+     * {@link getClosestVisiblePoint} in a loop, as the blocks are processed in parallel on a copy of the world.
+     * @param positions The positions of the blocks to find the closest visible point on
+     * @param sides Either a single side to use for all blocks, or an array with a side (or <tt>null</tt>) for each
+     *              block. If not specified, will use the closest side.
+     * @return For each block, the closest visible point within reach, or <tt>null</tt> if there was none
+     */
+    getClosestVisiblePoints(positions: Array<Position>, sides?: string | Array<string | null>): Array<Position | null>;
+}
+
+/**
+ * A copy of the blocks in a box, as returned by {@link World.getBlocks}. Blocks are stored as block state ids,
+ * which are unique per block state but may change across Minecraft versions or when mods are added.
+ */
+declare class BlockRegion {
+    /**
+     * The minimum x-position of the region
+     */
+    readonly minX: number;
+    /**
+     * The minimum y-position of the region
+     */
+    readonly minY: number;
+    /**
+     * The minimum z-position of the region
+     */
+    readonly minZ: number;
+    /**
+     * The size of the region along the x-axis
+     */
+    readonly sizeX: number;
+    /**
+     * The size of the region along the y-axis
+     */
+    readonly sizeY: number;
+    /**
+     * The size of the region along the z-axis
+     */
+    readonly sizeZ: number;
+    /**
+     * The block state ids of the region, in y, z, x order. The index of a position is
+     * <tt>((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX)</tt>
+     */
+    readonly ids: Array<number>;
+    /**
+     * The distinct block state ids which appear in this region
+     */
+    readonly palette: Array<number>;
+
+    /**
+     * Returns the index of the given position in {@link ids}, or -1 if the position is outside the region
+     */
+    getIndex(x: number, y: number, z: number): number;
+
+    /**
+     * Returns the block state id at the given position
+     */
+    getId(x: number, y: number, z: number): number;
+
+    /**
+     * Returns the block name at the given position, as in {@link World.getBlock}
+     */
+    getBlock(x: number, y: number, z: number): string;
+
+    /**
+     * Returns the block name of the given block state id
+     * @param id The block state id
+     */
+    getBlockName(id: number): string;
+
+    /**
+     * Returns the block state of the given block state id
+     * @param id The block state id
+     */
+    getBlockState(id: number): BlockState;
+}
+
+/**
+ * The light levels in a box, as returned by {@link World.getLightLevels}
+ */
+declare class LightRegion {
+    /**
+     * The minimum x-position of the region
+     */
+    readonly minX: number;
+    /**
+     * The minimum y-position of the region
+     */
+    readonly minY: number;
+    /**
+     * The minimum z-position of the region
+     */
+    readonly minZ: number;
+    /**
+     * The size of the region along the x-axis
+     */
+    readonly sizeX: number;
+    /**
+     * The size of the region along the y-axis
+     */
+    readonly sizeY: number;
+    /**
+     * The size of the region along the z-axis
+     */
+    readonly sizeZ: number;
+    /**
+     * The light levels of the region, 0-15, in the same order as {@link BlockRegion.ids}
+     */
+    readonly levels: Array<number>;
+
+    /**
+     * Returns the index of the given position in {@link levels}, or -1 if the position is outside the region
+     */
+    getIndex(x: number, y: number, z: number): number;
+
+    /**
+     * Returns the light level at the given position
+     */
+    getLevel(x: number, y: number, z: number): number;
+}
+
+/**
+ * An immutable copy of the blocks in a box, as returned by {@link World.createSnapshot}. Reading a position
+ * outside the box throws an error. Block entities are not copied.
+ */
+declare class WorldSnapshot {
+    readonly minX: number;
+    readonly minY: number;
+    readonly minZ: number;
+    readonly maxX: number;
+    readonly maxY: number;
+    readonly maxZ: number;
+
+    /**
+     * Like {@link World.getBlock}, but reads from the snapshot
+     */
+    getBlock(x: number, y: number, z: number): string;
+
+    /**
+     * Like {@link World.getBlockId}, but reads from the snapshot
+     */
+    getBlockId(x: number, y: number, z: number): number;
+
+    /**
+     * Like {@link World.getBlockStateId}, but reads from the snapshot
+     */
+    getBlockStateId(x: number, y: number, z: number): number;
+
+    /**
+     * Like {@link World.getBlockState}, but reads from the snapshot
+     */
+    getBlockState(x: number, y: number, z: number): BlockState;
+
+    /**
+     * Like {@link World.getBlocks}, but reads from the snapshot. Throws an error if the region isn't inside the
+     * snapshot
+     */
+    getBlocks(x1: number, y1: number, z1: number, x2: number, y2: number, z2: number): BlockRegion;
+
+    /**
+     * Like {@link World.findBlocks}, but searches the snapshot. Only blocks inside the snapshot are found
+     */
+    findBlocks(matcher: BlockPredicate, center: Position, radius: number, limit?: number): Array<Position>;
+}
+
+/**
+ * Watches for block changes in a box, as returned by {@link World.watchBlocks}
+ */
+declare class BlockWatcher {
+    /**
+     * Whether this watcher has been closed
+     */
+    readonly closed: boolean;
+
+    /**
+     * Returns all the changes since the last call to <tt>poll</tt>, up to the end of the last tick, or <tt>null</tt>
+     * if there were no changes. Multiple changes to the same position are merged into one.
+     */
+    poll(): BlockChangeBatch | null;
+
+    /**
+     * Stops watching for block changes
+     */
+    close(): void;
+}
+
+/**
+ * A batch of block changes, as returned by {@link BlockWatcher.poll}
+ */
+declare class BlockChangeBatch {
+    /**
+     * The number of changes in this batch
+     */
+    readonly count: number;
+    /**
+     * The number of ticks this batch covers
+     */
+    readonly ticks: number;
+    /**
+     * The number of changed positions that were dropped because too many changes were waiting to be polled. If this
+     * is not zero, some changes in the watched box are missing from this batch
+     */
+    readonly dropped: number;
+    /**
+     * The changed positions, packed as x, y, z triples
+     */
+    readonly positions: Array<number>;
+    /**
+     * The block state ids before each change
+     */
+    readonly oldIds: Array<number>;
+    /**
+     * The block state ids after each change
+     */
+    readonly newIds: Array<number>;
+
+    getX(index: number): number;
+    getY(index: number): number;
+    getZ(index: number): number;
+    getOldBlock(index: number): string;
+    getNewBlock(index: number): string;
+    getOldState(index: number): BlockState;
+    getNewState(index: number): BlockState;
+}
+
+/**
+ * A step of a plan returned by {@link Player.planCraft}
+ */
+declare class CraftStep {
+    /**
+     * The item the step makes
+     */
+    readonly result: string;
+    /**
+     * The number of times to craft
+     */
+    readonly crafts: number;
+    /**
+     * The number of items the crafts make
+     */
+    readonly count: number;
+    /**
+     * The pattern to pass to {@link Player.craft}
+     */
+    readonly pattern: Array<string>;
+    /**
+     * The item for each character in the pattern, to pass to {@link Player.craft}
+     */
+    readonly ingredients: {[keys: string]: string};
+}
+
+/**
+ * The remembered contents of a container block, as returned by {@link World.getRememberedContainer}
+ */
+declare class RememberedContainer {
+    /**
+     * The dimension the container is in
+     */
+    readonly dimension: string;
+    /**
+     * The x-position of the container
+     */
+    readonly x: number;
+    /**
+     * The y-position of the container
+     */
+    readonly y: number;
+    /**
+     * The z-position of the container
+     */
+    readonly z: number;
+    /**
+     * The container ID, as in {@link Inventory.type}
+     */
+    readonly type: string | null;
+    /**
+     * When the container was last seen, in milliseconds since the epoch
+     */
+    readonly time: number;
+    /**
+     * The items in the container, as in {@link Inventory.items}
+     */
+    readonly items: Array<object>;
+
+    /**
+     * Counts the matching items in the container
+     * @param item The item to count
+     */
+    countItems(item: ItemPredicate): number;
+}
+
+/**
+ * The positions, velocities and rotations of many entities at the end of a tick, stored as one array per field, as
+ * returned by {@link World.getEntitySnapshot}. Index <tt>i</tt> of every array refers to the same entity. Each read
+ * of an array property returns a new copy, so store the array in a variable before looping over it, or use the
+ * <tt>...At</tt> methods to read single values without copying.
+ */
+declare class EntitySnapshot {
+    /**
+     * The number of entities in this snapshot
+     */
+    readonly count: number;
+    readonly ids: Array<number>;
+    readonly types: Array<string>;
+    readonly x: Array<number>;
+    readonly y: Array<number>;
+    readonly z: Array<number>;
+    readonly motionX: Array<number>;
+    readonly motionY: Array<number>;
+    readonly motionZ: Array<number>;
+    readonly yaw: Array<number>;
+    readonly pitch: Array<number>;
+
+    /**
+     * The same as <tt>ids[index]</tt>, without copying the array
+     */
+    getIdAt(index: number): number;
+
+    /**
+     * The same as <tt>types[index]</tt>, without copying the array
+     */
+    getTypeAt(index: number): string;
+
+    /**
+     * The same as <tt>x[index]</tt>, without copying the array
+     */
+    getXAt(index: number): number;
+
+    /**
+     * The same as <tt>y[index]</tt>, without copying the array
+     */
+    getYAt(index: number): number;
+
+    /**
+     * The same as <tt>z[index]</tt>, without copying the array
+     */
+    getZAt(index: number): number;
+
+    /**
+     * The same as <tt>motionX[index]</tt>, without copying the array
+     */
+    getMotionXAt(index: number): number;
+
+    /**
+     * The same as <tt>motionY[index]</tt>, without copying the array
+     */
+    getMotionYAt(index: number): number;
+
+    /**
+     * The same as <tt>motionZ[index]</tt>, without copying the array
+     */
+    getMotionZAt(index: number): number;
+
+    /**
+     * The same as <tt>yaw[index]</tt>, without copying the array
+     */
+    getYawAt(index: number): number;
+
+    /**
+     * The same as <tt>pitch[index]</tt>, without copying the array
+     */
+    getPitchAt(index: number): number;
+
+    /**
+     * Returns the entity at the given index, or <tt>null</tt> if it's no longer in the world
+     */
+    getEntity(index: number): Entity | null;
+}
+
+/**
+ * Watches for entities entering, leaving and moving inside a box, as returned by {@link World.watchEntities}
+ */
+declare class EntityWatcher {
+    /**
+     * Whether this watcher has been closed
+     */
+    readonly closed: boolean;
+
+    /**
+     * Returns the events since the last call to <tt>poll</tt>, up to the end of the last tick, or <tt>null</tt>
+     * if there were none. The events of each entity are merged into at most one: consecutive moves become a single
+     * move, an entity which appeared and disappeared again is left out, and an entity which left and came back is
+     * reported as a move.
+     */
+    poll(): EntityEventBatch | null;
+
+    /**
+     * Stops watching for entity events
+     */
+    close(): void;
+}
+
+/**
+ * A batch of entity events, as returned by {@link EntityWatcher.poll}
+ */
+declare class EntityEventBatch {
+    /**
+     * The number of events in this batch
+     */
+    readonly count: number;
+    /**
+     * The number of ticks this batch covers
+     */
+    readonly ticks: number;
+    /**
+     * The number of events that were dropped because too many entities had events waiting to be polled. If this is
+     * not zero, some entities in the watched box are missing from this batch
+     */
+    readonly dropped: number;
+    /**
+     * The kind of each event. One of:
+     * <ul>
+     *     <li><tt>"spawn"</tt>: the entity was added to the client's world inside the box. This happens when it
+     *     comes into the player's tracking range as well as when it actually spawns, so it doesn't mean the entity
+     *     is new</li>
+     *     <li><tt>"enter"</tt>: the entity was already in the world and moved into the box, or was there when the
+     *     watcher was created</li>
+     *     <li><tt>"move"</tt>: the entity moved at least the move threshold since its last event</li>
+     *     <li><tt>"leave"</tt>: the entity moved out of the box</li>
+     *     <li><tt>"remove"</tt>: the entity was removed from the client's world, which includes leaving the
+     *     player's tracking range</li>
+     * </ul>
+     */
+    readonly kinds: Array<string>;
+    /**
+     * The entity id of each event
+     */
+    readonly ids: Array<number>;
+    /**
+     * The entity type of each event
+     */
+    readonly types: Array<string>;
+    /**
+     * The x-position of the entity at each event. For <tt>"remove"</tt> events, this is its last known position
+     */
+    readonly x: Array<number>;
+    /**
+     * The y-position of the entity at each event
+     */
+    readonly y: Array<number>;
+    /**
+     * The z-position of the entity at each event
+     */
+    readonly z: Array<number>;
+
+    /**
+     * Returns the entity of the given event, or <tt>null</tt> if it's no longer in the world
+     */
+    getEntity(index: number): Entity | null;
 }
 
 /**
@@ -677,11 +1575,39 @@ declare class BlockState {
      */
     static defaultState(block: string): BlockState;
 
+    /**
+     * Returns the block state with the given block state id
+     * @param id The block state id
+     */
+    static fromId(id: number): BlockState;
+
+    /**
+     * Returns the numeric id of the given block, or -1 if there is no such block
+     * @param block The block name
+     */
+    static blockIdOf(block: string): number;
+
+    /**
+     * Returns the name of the block with the given numeric id
+     * @param id The block id
+     */
+    static blockNameOf(id: number): string;
+
     /**
      * The block of this block state
      */
     readonly block: string;
 
+    /**
+     * The numeric id of this block state, unique among all block states. See {@link World.getBlockId} for caveats
+     */
+    readonly id: number;
+
+    /**
+     * The numeric id of the block of this block state
+     */
+    readonly blockId: number;
+
     /**
      * A list of block state properties supported by this block, i.e. those that can be used
      * in {@link World.getBlockProperty}
@@ -696,6 +1622,12 @@ declare class BlockState {
      */
     getProperty(property: string): boolean | number | string;
 
+    /**
+     * All the properties of the block state and their values, as returned by {@link getProperty}. The object is
+     * shared between calls and is read-only.
+     */
+    readonly properties: {[property: string]: boolean | number | string};
+
     /**
      * The light level emitted, 0-15
      */
@@ -751,6 +1683,11 @@ declare class BlockState {
      */
     readonly item: string | null;
 
+    /**
+     * The numeric id of the item corresponding to this block
+     */
+    readonly itemId: number;
+
     /**
      * A unique ID of the material of the block, may change across Minecraft versions or when other mods
      * add materials. It's safest to compare against the material ID of a block with a known material
@@ -823,6 +1760,12 @@ declare class BlockState {
      * The tags applying to this block
      */
     readonly tags: Array<string>;
+
+    /**
+     * Returns whether this block is in the given tag. Much faster than searching {@link tags}
+     * @param tag The tag name, with or without the "minecraft:" prefix or a leading "#"
+     */
+    hasTag(tag: string): boolean;
 }
 
 /**
@@ -843,11 +1786,34 @@ declare class ItemStack {
      */
     static of(item: string): ItemStack;
 
+    /**
+     * Returns the numeric id of the given item, or -1 if there is no such item. See {@link World.getBlockId} for
+     * caveats
+     * @param item The item name
+     */
+    static itemIdOf(item: string): number;
+
+    /**
+     * Returns the name of the item with the given numeric id
+     * @param id The item id
+     */
+    static itemNameOf(id: number): string;
+
     /**
      * Returns the NBT representation of this item stack
      */
     readonly stack: object;
 
+    /**
+     * The item of this item stack
+     */
+    readonly item: string;
+
+    /**
+     * The numeric id of the item of this item stack
+     */
+    readonly itemId: number;
+
     /**
      * Gets the mining speed of this item stack against a given block state. This is a multiplier,
      * where a value of 1 indicates the same speed as with a fist against a block which doesn't require
@@ -908,6 +1874,12 @@ declare class ItemStack {
      * The tags applying to this item
      */
     readonly tags: Array<string>;
+
+    /**
+     * Returns whether this item is in the given tag. Much faster than searching {@link tags}
+     * @param tag The tag name, with or without the "minecraft:" prefix or a leading "#"
+     */
+    hasTag(tag: string): boolean;
 }
 
 /**
@@ -919,6 +1891,18 @@ interface Position {
     z: number;
 }
 
+/**
+ * Represents a box of blocks between two corners, inclusive
+ */
+interface BlockBox {
+    x1: number;
+    y1: number;
+    z1: number;
+    x2: number;
+    y2: number;
+    z2: number;
+}
+
 /**
  * Pathfinding hints
  */
@@ -0,0 +1,163 @@
+package net.earthcomputer.clientcommands.script;
+
+import com.google.common.collect.ImmutableSet;
+import net.earthcomputer.clientcommands.features.PathfindingHints;
+import net.earthcomputer.clientcommands.features.PlayerPathfinder;
+import net.minecraft.entity.ai.pathing.Path;
+import net.minecraft.entity.ai.pathing.PathNodeType;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.BlockView;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+
+/**
+ * Runs path searches a slice at a time, so that a script can keep following its current path while a new one is
+ * found. Only the newest search of each pathfinder is wanted, so submitting a search cancels the previous one, which
+ * stops at the next node it looks at.
+ *
+ * <p>The pathfinder reads the client world directly, which isn't safe while the client thread is ticking. The search
+ * runs on its own thread only so that it can be suspended part way through: it only ever runs during
+ * {@link #runSlice()}, while the script thread waits for it, and the client thread in turn waits for the script
+ * thread. Between slices the world may change, but the block change listener of the path being followed asks for
+ * another search anyway. The hints must not call into the script, because the script engine can only be entered from
+ * the script thread.</p>
+ */
+final class AsyncPathfinder {
+    // how long a search may run for each time the script lets it, which is about once a tick
+    private static final long SLICE_NANOS = 5_000_000;
+
+    // A suspended search keeps its thread, so each search needs a thread of its own. Otherwise the search of one
+    // script could wait forever behind the suspended search of another, which can't resume until the first is done
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Script pathfinder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BiFunction<BlockPos, PathfindingHints, Path> pathfinder;
+    // only accessed by the script thread
+    private Search pending;
+
+    AsyncPathfinder() {
+        this((target, hints) -> PlayerPathfinder.findPathToAny(ImmutableSet.of(target), hints));
+    }
+
+    AsyncPathfinder(BiFunction<BlockPos, PathfindingHints, Path> pathfinder) {
+        this.pathfinder = pathfinder;
+    }
+
+    /**
+     * Starts a search for a path to the target, cancelling the previous search. The hints are asked for the values
+     * which don't depend on the node straight away, on the calling thread. The search makes no progress except in
+     * {@link #runSlice()}
+     */
+    CompletableFuture<Path> submit(BlockPos target, PathfindingHints hints) {
+        cancel();
+        Search search = new Search(pathfinder, target, hints);
+        EXECUTOR.execute(search::run);
+        pending = search;
+        return search.future;
+    }
+
+    /**
+     * Lets the pending search run for a slice, and waits until it has stopped reading the world
+     */
+    void runSlice() {
+        Search search = pending;
+        if (search == null || search.future.isDone()) {
+            return;
+        }
+        search.sliceEnd = System.nanoTime() + SLICE_NANOS;
+        search.resume.release();
+        search.yielded.acquireUninterruptibly();
+    }
+
+    void cancel() {
+        if (pending != null) {
+            // a suspended search checks for cancellation before it reads the world again
+            pending.cancelled = true;
+            pending.future.cancel(false);
+            pending.resume.release();
+            pending = null;
+        }
+    }
+
+    private static final class Search implements PathfindingHints {
+        private final BiFunction<BlockPos, PathfindingHints, Path> pathfinder;
+        private final BlockPos target;
+        private final PathfindingHints delegate;
+        private final float followRange;
+        private final int reachDistance;
+        private final float maxPathLength;
+        final CompletableFuture<Path> future = new CompletableFuture<>();
+        // the script thread hands control to the search with resume, and the search hands it back with yielded
+        final Semaphore resume = new Semaphore(0);
+        final Semaphore yielded = new Semaphore(0);
+        volatile boolean cancelled;
+        volatile long sliceEnd;
+
+        Search(BiFunction<BlockPos, PathfindingHints, Path> pathfinder, BlockPos target, PathfindingHints delegate) {
+            this.pathfinder = pathfinder;
+            this.target = target;
+            this.delegate = delegate;
+            this.followRange = delegate.getFollowRange();
+            this.reachDistance = delegate.getReachDistance();
+            this.maxPathLength = delegate.getMaxPathLength();
+        }
+
+        void run() {
+            try {
+                resume.acquireUninterruptibly();
+                checkCancelled();
+                future.complete(pathfinder.apply(target, this));
+            } catch (CancellationException e) {
+                future.cancel(false);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                yielded.release();
+            }
+        }
+
+        private void checkCancelled() {
+            if (cancelled)
+                throw new CancellationException();
+        }
+
+        @Override
+        public PathNodeType getNodeType(BlockView world, BlockPos pos) {
+            // the pathfinder asks for the type of every node it looks at, so this is where the search is suspended
+            if (System.nanoTime() > sliceEnd) {
+                yielded.release();
+                resume.acquireUninterruptibly();
+            }
+            checkCancelled();
+            return delegate.getNodeType(world, pos);
+        }
+
+        @Override
+        public float getPathfindingPenalty(PathNodeType type) {
+            return delegate.getPathfindingPenalty(type);
+        }
+
+        @Override
+        public float getFollowRange() {
+            return followRange;
+        }
+
+        @Override
+        public int getReachDistance() {
+            return reachDistance;
+        }
+
+        @Override
+        public float getMaxPathLength() {
+            return maxPathLength;
+        }
+    }
+}
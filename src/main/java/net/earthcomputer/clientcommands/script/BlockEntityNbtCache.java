@@ -0,0 +1,55 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.earthcomputer.clientcommands.script.ducks.IBlockEntity;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.nbt.NbtCompound;
+
+/**
+ * Caches block entity NBT, so that scripts repeatedly reading the same chest or sign don't serialize it every time. An
+ * entry is reused until the block entity reads new NBT from the server. The entry is stored on the block entity itself,
+ * so it goes away with the block entity and never keeps an old world alive. Only the NBT is cached, not the script
+ * object made from it, since the script is free to modify that.
+ */
+final class BlockEntityNbtCache {
+    private BlockEntityNbtCache() {}
+
+    /**
+     * Returns a new script object of the block entity's NBT, which the script is free to modify
+     */
+    static Object get(BlockEntity blockEntity) {
+        return ScriptUtil.fromNbt(getEntry(blockEntity).nbt);
+    }
+
+    /**
+     * Returns the block entity's NBT, which must not be modified
+     */
+    static NbtCompound getRaw(BlockEntity blockEntity) {
+        return getEntry(blockEntity).nbt;
+    }
+
+    private static Entry getEntry(BlockEntity blockEntity) {
+        IBlockEntity duck = (IBlockEntity) blockEntity;
+        int version = duck.clientcommands_getNbtVersion();
+        Entry entry = (Entry) duck.clientcommands_getCachedNbt();
+        if (entry != null && entry.version == version) {
+            return entry;
+        }
+        entry = new Entry(version, blockEntity.createNbt());
+        duck.clientcommands_setCachedNbt(entry);
+        return entry;
+    }
+
+    static boolean isSynced(BlockEntity blockEntity) {
+        return ((IBlockEntity) blockEntity).clientcommands_getNbtVersion() != 0;
+    }
+
+    private static final class Entry {
+        final int version;
+        final NbtCompound nbt;
+
+        Entry(int version, NbtCompound nbt) {
+            this.version = version;
+            this.nbt = nbt;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.state.property.Property;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lookup tables for the properties of a block, built once per block. Reading a property of a state is then a hash
+ * lookup of the property name followed by an array index, and the script values of every state are only converted once.
+ */
+final class BlockProperties {
+    private static final Map<Block, BlockProperties> cache = new ConcurrentHashMap<>();
+
+    private final List<String> names;
+    private final Object2IntMap<String> indices = new Object2IntOpenHashMap<>();
+    private final Reference2ObjectMap<BlockState, StateValues> stateValues = new Reference2ObjectOpenHashMap<>();
+
+    private BlockProperties(Block block) {
+        Collection<Property<?>> properties = block.getStateManager().getProperties();
+        Property<?>[] propertyArray = properties.toArray(new Property<?>[0]);
+        String[] nameArray = new String[propertyArray.length];
+        indices.defaultReturnValue(-1);
+        for (int i = 0; i < propertyArray.length; i++) {
+            nameArray[i] = propertyArray[i].getName();
+            indices.put(nameArray[i], i);
+        }
+        this.names = List.of(nameArray);
+
+        for (BlockState state : block.getStateManager().getStates()) {
+            Object[] values = new Object[propertyArray.length];
+            Map<String, Object> map = new LinkedHashMap<>(propertyArray.length);
+            for (int i = 0; i < propertyArray.length; i++) {
+                values[i] = toScriptValue(propertyArray[i], state.get(propertyArray[i]));
+                map.put(nameArray[i], values[i]);
+            }
+            stateValues.put(state, new StateValues(values, Collections.unmodifiableMap(map)));
+        }
+    }
+
+    static BlockProperties of(Block block) {
+        return cache.computeIfAbsent(block, BlockProperties::new);
+    }
+
+    List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Returns the script value of the given property, or null if the state has no such property
+     */
+    Object get(BlockState state, String name) {
+        int index = indices.getInt(name);
+        if (index == -1) {
+            return null;
+        }
+        return stateValues.get(state).values()[index];
+    }
+
+    Map<String, Object> getAll(BlockState state) {
+        return stateValues.get(state).map();
+    }
+
+    private static Object toScriptValue(Property<?> property, Object value) {
+        if (value instanceof Boolean || value instanceof Number) {
+            return value;
+        }
+        return propertyGetName(property, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> String propertyGetName(Property<T> prop, Object val) {
+        return prop.name((T) val);
+    }
+
+    private record StateValues(Object[] values, Map<String, Object> map) {}
+}
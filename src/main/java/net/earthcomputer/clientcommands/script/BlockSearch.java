@@ -0,0 +1,109 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+final class BlockSearch {
+    private BlockSearch() {}
+
+    /**
+     * Finds the blocks matching {@code matcher} within {@code radius} of {@code center}, sorted by distance.
+     * The matcher is only called on the calling thread, once per distinct block state in the snapshot, so it is safe
+     * for it to call into the script. The scan itself runs in parallel.
+     */
+    static List<BlockPos> find(WorldSnapshot snapshot, Predicate<BlockState> matcher, BlockPos center, int radius, int limit) {
+        return find(snapshot, matcher, null, center, radius, limit);
+    }
+
+    /**
+     * Like {@link #find(WorldSnapshot, Predicate, BlockPos, int, int)}, but positions whose block matches are also
+     * tested with {@code positionFilter}, which is called on the worker threads with {@link BlockPos#asLong} positions
+     */
+    static List<BlockPos> find(WorldSnapshot snapshot, Predicate<BlockState> matcher, @Nullable LongPredicate positionFilter, BlockPos center, int radius, int limit) {
+        Set<BlockState> seenStates = new ReferenceOpenHashSet<>();
+        Set<BlockState> matchingStates = new ReferenceOpenHashSet<>();
+        for (PalettedContainer<BlockState> section : snapshot.getSections().values()) {
+            // visit the palette without touching the block data. The global palette can't be visited, so fall back to counting
+            boolean globalPalette = section.hasAny(state -> {
+                if (seenStates.add(state) && matcher.test(state)) {
+                    matchingStates.add(state);
+                }
+                return false;
+            });
+            if (globalPalette) {
+                section.count((state, count) -> {
+                    if (seenStates.add(state) && matcher.test(state)) {
+                        matchingStates.add(state);
+                    }
+                });
+            }
+        }
+        if (matchingStates.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        long radiusSq = (long) radius * radius;
+        return snapshot.getSections().long2ObjectEntrySet().parallelStream()
+                .filter(entry -> sectionDistanceSq(entry.getLongKey(), center) <= radiusSq)
+                .filter(entry -> entry.getValue().hasAny(matchingStates::contains))
+                .flatMap(entry -> scanSection(entry.getLongKey(), entry.getValue(), matchingStates, positionFilter, center, radiusSq).stream())
+                .sorted(Comparator.comparingLong(Match::distanceSq))
+                .limit(limit < 0 ? Long.MAX_VALUE : limit)
+                .map(match -> BlockPos.fromLong(match.pos()))
+                .toList();
+    }
+
+    private static List<Match> scanSection(long sectionPos, PalettedContainer<BlockState> section, Set<BlockState> matchingStates, @Nullable LongPredicate positionFilter, BlockPos center, long radiusSq) {
+        List<Match> matches = new ArrayList<>();
+        int baseX = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(sectionPos));
+        int baseY = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(sectionPos));
+        int baseZ = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(sectionPos));
+        for (int y = 0; y < 16; y++) {
+            long dy = baseY + y - center.getY();
+            for (int z = 0; z < 16; z++) {
+                long dz = baseZ + z - center.getZ();
+                for (int x = 0; x < 16; x++) {
+                    long dx = baseX + x - center.getX();
+                    long distanceSq = dx * dx + dy * dy + dz * dz;
+                    if (distanceSq <= radiusSq && matchingStates.contains(section.get(x, y, z))) {
+                        long pos = BlockPos.asLong(baseX + x, baseY + y, baseZ + z);
+                        if (positionFilter == null || positionFilter.test(pos)) {
+                            matches.add(new Match(pos, distanceSq));
+                        }
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static long sectionDistanceSq(long sectionPos, BlockPos center) {
+        long dx = axisDistance(ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(sectionPos)), center.getX());
+        long dy = axisDistance(ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(sectionPos)), center.getY());
+        long dz = axisDistance(ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(sectionPos)), center.getZ());
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static long axisDistance(int sectionMin, int coord) {
+        if (coord < sectionMin) {
+            return sectionMin - coord;
+        } else if (coord > sectionMin + 15) {
+            return coord - (sectionMin + 15);
+        } else {
+            return 0;
+        }
+    }
+
+    private record Match(long pos, long distanceSq) {}
+}
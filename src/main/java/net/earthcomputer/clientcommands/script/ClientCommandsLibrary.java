@@ -56,11 +56,31 @@ public class ClientCommandsLibrary extends BaseLibrary {
         public Object defaultState(String block) {
             return ScriptBlockState.defaultState(block);
         }
+
+        public Object fromId(int id) {
+            return ScriptBlockState.fromId(id);
+        }
+
+        public int blockIdOf(String block) {
+            return ScriptBlockState.blockIdOf(block);
+        }
+
+        public String blockNameOf(int id) {
+            return ScriptBlockState.blockNameOf(id);
+        }
     }
 
     public static class ItemStackLibrary extends BaseLibrary {
         public Object of(Value obj) {
             return ScriptItemStack.of(obj);
         }
+
+        public int itemIdOf(String item) {
+            return ScriptItemStack.itemIdOf(item);
+        }
+
+        public String itemNameOf(int id) {
+            return ScriptItemStack.itemNameOf(id);
+        }
     }
 }
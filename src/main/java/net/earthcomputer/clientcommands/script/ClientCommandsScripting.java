@@ -1,8 +1,12 @@
 package net.earthcomputer.clientcommands.script;
 
 import com.mojang.logging.LogUtils;
+import net.earthcomputer.clientcommands.interfaces.IBlockChangeListener;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.event.registry.RegistryIdRemapCallback;
 import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.util.registry.Registry;
 import org.slf4j.Logger;
 
 import java.io.IOException;
@@ -28,8 +32,24 @@ public class ClientCommandsScripting implements ModInitializer {
         if (isJsMacrosPresent) {
             ScriptManager.inject();
             ScriptManager.reloadLegacyScripts();
+            IBlockChangeListener.LISTENERS.add(ScriptBlockWatcher::onBlockChange);
+            IBlockChangeListener.LISTENERS.add(WorldSnapshot::onBlockChange);
+            IBlockChangeListener.LISTENERS.add(SectionVersions::onBlockChange);
+            IBlockChangeListener.LISTENERS.add(ContainerMemory::onBlockChange);
+            // raw ids change when registry sync remaps them, and again when they're restored on disconnect
+            RegistryIdRemapCallback.event(Registry.BLOCK).register(state -> onRegistryRemap());
+            RegistryIdRemapCallback.event(Registry.ITEM).register(state -> onRegistryRemap());
+            RegistryIdRemapCallback.event(Registry.ENTITY_TYPE).register(state -> onRegistryRemap());
+            ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> onRegistryRemap());
         } else {
             LOGGER.info("Clientcommands scripts are disabled because jsmacros is not present");
         }
     }
+
+    private static void onRegistryRemap() {
+        RegistryNames.invalidate();
+        // the tag bitsets are indexed by raw id
+        TagIndex.invalidate();
+        CraftPlanner.invalidate();
+    }
 }
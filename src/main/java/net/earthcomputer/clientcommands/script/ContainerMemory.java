@@ -0,0 +1,521 @@
+package net.earthcomputer.clientcommands.script;
+
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.ChestBlock;
+import net.minecraft.block.enums.ChestType;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.network.ServerInfo;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtTagSizeTracker;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.screen.slot.Slot;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.registry.Registry;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Remembers the contents of every container block the player opens, per server or singleplayer world. Each
+ * remembered container is indexed by the items in it, so finding where an item is stored doesn't look at any other
+ * containers. A container is forgotten when its block changes.
+ *
+ * <p>The memory is stored as an append-only log of NBT records, one per container update, which is replayed on a
+ * background thread when joining the world and rewritten without the superseded records once they make up most of the
+ * log. Writes happen on the same thread in the order they were made. Scripts wait for the log to be loaded, while the
+ * client thread never does: containers it records while loading take precedence over the log, and containers whose
+ * block changes while loading are forgotten once it has loaded.</p>
+ */
+public final class ContainerMemory {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    // how long after interacting with a block a container may open for it to be attributed to that block
+    private static final int OPEN_TIMEOUT_TICKS = 40;
+    private static final int MIN_RECORDS_TO_COMPACT = 1024;
+
+    private static final Object LOCK = new Object();
+    private static final ExecutorService IO_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Container memory IO");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // all guarded by LOCK, except that loaded may be read without it
+    @Nullable
+    private static Path file;
+    private static volatile boolean loaded = true;
+    // incremented whenever the memory is reset, so that a load for an old file doesn't apply
+    private static int generation;
+    private static final Set<Location> forgottenWhileLoading = new HashSet<>();
+    private static final Map<Location, Entry> entries = new HashMap<>();
+    // the other half of double chests -> the half they're stored under
+    private static final Map<Location, Location> aliases = new HashMap<>();
+    private static final Map<Item, Set<Location>> locationsByItem = new HashMap<>();
+    private static int recordsInLog;
+
+    // only accessed on the client thread
+    private static int tick;
+    @Nullable
+    private static Location interactedLocation;
+    @Nullable
+    private static Location interactedAlias;
+    private static int interactedTick;
+    // the number of slots the container of the interacted block has, to tell it apart from other screens the server
+    // might open in response
+    private static int interactedSize;
+    @Nullable
+    private static ScreenHandler openHandler;
+    @Nullable
+    private static Location openLocation;
+    @Nullable
+    private static Location openAlias;
+    private static List<Slot> openSlots;
+    private static ItemStack[] openStacks;
+    private static boolean openDirty;
+
+    private ContainerMemory() {}
+
+    public static void onGameJoin() {
+        MinecraftClient mc = MinecraftClient.getInstance();
+        String name;
+        ServerInfo server = mc.getCurrentServerEntry();
+        if (server != null) {
+            name = "server_" + server.address;
+        } else if (mc.getServer() != null) {
+            name = "world_" + mc.getServer().getSaveProperties().getLevelName();
+        } else {
+            name = null;
+        }
+        synchronized (LOCK) {
+            Path newFile = name == null ? null : ClientCommandsScripting.configDir.resolve("container_memory").resolve(name.replaceAll("[^a-zA-Z0-9._-]", "_") + ".dat");
+            if (newFile == null || !newFile.equals(file)) {
+                file = newFile;
+                entries.clear();
+                aliases.clear();
+                locationsByItem.clear();
+                forgottenWhileLoading.clear();
+                recordsInLog = 0;
+                int loadGeneration = ++generation;
+                loaded = newFile == null;
+                if (newFile != null) {
+                    IO_EXECUTOR.execute(() -> load(newFile, loadGeneration));
+                }
+            }
+        }
+        openHandler = null;
+        interactedLocation = null;
+    }
+
+    public static void onInteractBlock(BlockPos pos) {
+        ClientWorld world = MinecraftClient.getInstance().world;
+        if (world == null) {
+            return;
+        }
+        BlockState state = world.getBlockState(pos);
+        // Only blocks which store items are remembered. Crafting tables, anvils and the like have no block entity, so
+        // they would never be forgotten, and the ender chest's contents belong to the player, not the block
+        if (!(world.getBlockEntity(pos) instanceof Inventory inventory)) {
+            interactedLocation = null;
+            return;
+        }
+        String dimension = dimensionName(world);
+        interactedLocation = new Location(dimension, pos.asLong());
+        interactedAlias = null;
+        interactedSize = inventory.size();
+        if (state.getBlock() instanceof ChestBlock && state.get(ChestBlock.CHEST_TYPE) != ChestType.SINGLE) {
+            Direction toOtherHalf = ChestBlock.getFacing(state);
+            interactedAlias = new Location(dimension, pos.offset(toOtherHalf).asLong());
+            interactedSize *= 2;
+        }
+        interactedTick = tick;
+    }
+
+    /**
+     * Called when the interaction with a block places a block or uses an item instead, and when interacting with an
+     * entity, neither of which opens the container of the block last interacted with
+     */
+    public static void onInteractOther() {
+        interactedLocation = null;
+    }
+
+    static void onServerInventory(int syncId) {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        if (player == null || syncId == 0 || player.currentScreenHandler.syncId != syncId) {
+            return;
+        }
+        if (player.currentScreenHandler != openHandler) {
+            if (interactedLocation == null || tick - interactedTick > OPEN_TIMEOUT_TICKS) {
+                return;
+            }
+            List<Slot> slots = containerSlots(player.currentScreenHandler, player);
+            if (slots.size() != interactedSize) {
+                // not the block's own container, e.g. a custom screen opened by the server
+                interactedLocation = null;
+                return;
+            }
+            closeOpenContainer();
+            openHandler = player.currentScreenHandler;
+            openLocation = interactedLocation;
+            openAlias = interactedAlias;
+            openSlots = slots;
+            openStacks = null;
+            interactedLocation = null;
+        }
+        openDirty = true;
+    }
+
+    static void onTick() {
+        tick++;
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        if (openHandler == null) {
+            return;
+        }
+        if (player == null || player.currentScreenHandler != openHandler) {
+            closeOpenContainer();
+            return;
+        }
+
+        // compare without allocating, since this runs every tick while the container is open
+        List<Slot> slots = openSlots;
+        if (!openDirty && openStacks != null) {
+            for (int i = 0; i < openStacks.length; i++) {
+                if (!ItemStack.areEqual(openStacks[i], slots.get(i).getStack())) {
+                    openDirty = true;
+                    break;
+                }
+            }
+        }
+        if (openDirty || openStacks == null) {
+            openStacks = new ItemStack[slots.size()];
+            for (int i = 0; i < openStacks.length; i++) {
+                openStacks[i] = slots.get(i).getStack().copy();
+            }
+            put(openLocation, openAlias, containerType(openHandler), openStacks, false);
+            openDirty = false;
+        }
+    }
+
+    /**
+     * Writes the final contents of the open container to the log
+     */
+    private static void closeOpenContainer() {
+        if (openHandler != null && openStacks != null) {
+            put(openLocation, openAlias, containerType(openHandler), openStacks, true);
+        }
+        openHandler = null;
+        openLocation = null;
+        openAlias = null;
+        openSlots = null;
+        openStacks = null;
+    }
+
+    static void onBlockChange(BlockPos pos, BlockState oldState, BlockState newState) {
+        // only containers are remembered, and they all have block entities
+        if (oldState.getBlock() == newState.getBlock() || !oldState.hasBlockEntity()) {
+            return;
+        }
+        ClientWorld world = MinecraftClient.getInstance().world;
+        if (world == null) {
+            return;
+        }
+        Location location = new Location(dimensionName(world), pos.asLong());
+        synchronized (LOCK) {
+            if (!loaded) {
+                forgottenWhileLoading.add(location);
+            }
+            forget0(location);
+        }
+    }
+
+    private static List<Slot> containerSlots(ScreenHandler handler, ClientPlayerEntity player) {
+        List<Slot> slots = new ArrayList<>(handler.slots.size());
+        for (Slot slot : handler.slots) {
+            if (slot.inventory != player.getInventory()) {
+                slots.add(slot);
+            }
+        }
+        return slots;
+    }
+
+    @Nullable
+    private static String containerType(ScreenHandler handler) {
+        return handler.getType() == null ? null : ScriptUtil.simplifyIdentifier(Registry.SCREEN_HANDLER.getId(handler.getType()));
+    }
+
+    static String dimensionName(ClientWorld world) {
+        return ScriptUtil.simplifyIdentifier(world.getRegistryKey().getValue());
+    }
+
+    @Nullable
+    static Entry get(Location location) {
+        awaitLoaded();
+        synchronized (LOCK) {
+            Location target = aliases.getOrDefault(location, location);
+            return entries.get(target);
+        }
+    }
+
+    /**
+     * Returns the containers which have been seen with the given item in them
+     */
+    static List<Entry> findItem(Item item) {
+        awaitLoaded();
+        synchronized (LOCK) {
+            Set<Location> locations = locationsByItem.get(item);
+            if (locations == null) {
+                return List.of();
+            }
+            List<Entry> ret = new ArrayList<>(locations.size());
+            for (Location location : locations) {
+                ret.add(entries.get(location));
+            }
+            return ret;
+        }
+    }
+
+    static List<Entry> getAll() {
+        awaitLoaded();
+        synchronized (LOCK) {
+            return new ArrayList<>(entries.values());
+        }
+    }
+
+    static void forget(Location location) {
+        awaitLoaded();
+        synchronized (LOCK) {
+            forget0(location);
+        }
+    }
+
+    /**
+     * Must hold LOCK. Only writes a record if the container is in memory
+     */
+    private static void forget0(Location location) {
+        Location target = aliases.getOrDefault(location, location);
+        if (remove(target)) {
+            NbtCompound record = new NbtCompound();
+            record.putString("Dimension", target.dimension());
+            record.putLong("Pos", target.pos());
+            record.putBoolean("Removed", true);
+            append(record);
+        }
+    }
+
+    /**
+     * Only called on script threads, which pass ticks while waiting so the client thread isn't held up by the load
+     */
+    private static void awaitLoaded() {
+        while (!loaded) {
+            ScriptManager.passTick();
+        }
+    }
+
+    private static void put(Location location, @Nullable Location alias, @Nullable String type, ItemStack[] stacks, boolean writeToLog) {
+        List<ItemStack> copies = new ArrayList<>(stacks.length);
+        for (ItemStack stack : stacks) {
+            copies.add(stack.copy());
+        }
+        Entry entry = new Entry(location, alias, type, copies, System.currentTimeMillis());
+        synchronized (LOCK) {
+            forgottenWhileLoading.remove(location);
+            if (alias != null) {
+                forgottenWhileLoading.remove(alias);
+            }
+            add(entry);
+            if (writeToLog) {
+                append(entry.toNbt());
+            }
+        }
+    }
+
+    private static void add(Entry entry) {
+        remove(entry.location());
+        entries.put(entry.location(), entry);
+        if (entry.alias() != null) {
+            aliases.put(entry.alias(), entry.location());
+        }
+        for (ItemStack stack : entry.stacks()) {
+            if (!stack.isEmpty()) {
+                locationsByItem.computeIfAbsent(stack.getItem(), k -> new ObjectOpenHashSet<>()).add(entry.location());
+            }
+        }
+    }
+
+    private static boolean remove(Location location) {
+        Entry entry = entries.remove(location);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.alias() != null) {
+            aliases.remove(entry.alias());
+        }
+        for (ItemStack stack : entry.stacks()) {
+            Set<Location> locations = locationsByItem.get(stack.getItem());
+            if (locations != null) {
+                locations.remove(location);
+                if (locations.isEmpty()) {
+                    locationsByItem.remove(stack.getItem());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs on the IO thread. The log is replayed without holding LOCK, then merged into what was recorded meanwhile
+     */
+    private static void load(Path file, int loadGeneration) {
+        Map<Location, Entry> loadedEntries = new HashMap<>();
+        int records = 0;
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    NbtCompound record;
+                    try {
+                        record = NbtIo.read(in, NbtTagSizeTracker.EMPTY);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    records++;
+                    Location location = new Location(record.getString("Dimension"), record.getLong("Pos"));
+                    if (record.getBoolean("Removed")) {
+                        loadedEntries.remove(location);
+                    } else {
+                        loadedEntries.put(location, Entry.fromNbt(location, record));
+                    }
+                }
+            } catch (IOException e) {
+                // keep whatever was read before the damaged record
+                LOGGER.error("Failed to read container memory from {}", file, e);
+            }
+        }
+
+        synchronized (LOCK) {
+            if (generation != loadGeneration) {
+                return;
+            }
+            recordsInLog += records;
+            for (Entry entry : loadedEntries.values()) {
+                // what the client recorded while loading is newer than the log
+                if (!entries.containsKey(entry.location()) && !aliases.containsKey(entry.location())
+                        && (entry.alias() == null || !entries.containsKey(entry.alias()) && !aliases.containsKey(entry.alias()))) {
+                    add(entry);
+                }
+            }
+            for (Location location : forgottenWhileLoading) {
+                forget0(location);
+            }
+            forgottenWhileLoading.clear();
+            loaded = true;
+        }
+    }
+
+    /**
+     * Appends a record to the log, or rewrites the log if it is mostly superseded records
+     */
+    private static void append(NbtCompound record) {
+        Path file = ContainerMemory.file;
+        if (file == null) {
+            return;
+        }
+        recordsInLog++;
+        // until the log is loaded, the entries aren't everything the log should keep
+        if (loaded && recordsInLog >= MIN_RECORDS_TO_COMPACT && recordsInLog > entries.size() * 2) {
+            List<NbtCompound> records = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values()) {
+                records.add(entry.toNbt());
+            }
+            recordsInLog = records.size();
+            IO_EXECUTOR.execute(() -> rewrite(file, records));
+        } else {
+            IO_EXECUTOR.execute(() -> {
+                try {
+                    Files.createDirectories(file.getParent());
+                    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+                        NbtIo.write(record, out);
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("Failed to write container memory to {}", file, e);
+                }
+            });
+        }
+    }
+
+    private static void rewrite(Path file, Collection<NbtCompound> records) {
+        try {
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream stream = Files.newOutputStream(tempFile); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+                for (NbtCompound record : records) {
+                    NbtIo.write(record, out);
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.error("Failed to compact container memory in {}", file, e);
+        }
+    }
+
+    record Location(String dimension, long pos) {}
+
+    record Entry(Location location, @Nullable Location alias, @Nullable String type, List<ItemStack> stacks, long time) {
+        NbtCompound toNbt() {
+            NbtCompound record = new NbtCompound();
+            record.putString("Dimension", location.dimension());
+            record.putLong("Pos", location.pos());
+            if (alias != null) {
+                record.putLong("Alias", alias.pos());
+            }
+            if (type != null) {
+                record.putString("Type", type);
+            }
+            record.putLong("Time", time);
+            NbtList items = new NbtList();
+            for (ItemStack stack : stacks) {
+                items.add(stack.writeNbt(new NbtCompound()));
+            }
+            record.put("Items", items);
+            return record;
+        }
+
+        static Entry fromNbt(Location location, NbtCompound record) {
+            Location alias = record.contains("Alias", NbtElement.LONG_TYPE) ? new Location(location.dimension(), record.getLong("Alias")) : null;
+            String type = record.contains("Type", NbtElement.STRING_TYPE) ? record.getString("Type") : null;
+            NbtList items = record.getList("Items", NbtElement.COMPOUND_TYPE);
+            List<ItemStack> stacks = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                stacks.add(ItemStack.fromNbt(items.getCompound(i)));
+            }
+            return new Entry(location, alias, type, stacks, record.getLong("Time"));
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.recipe.CraftingRecipe;
+import net.minecraft.recipe.Ingredient;
+import net.minecraft.recipe.RecipeType;
+import net.minecraft.recipe.ShapedRecipe;
+import net.minecraft.util.collection.DefaultedList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Plans the crafts needed to make an item from what's in the player's inventory, crafting intermediate items as
+ * needed.
+ *
+ * <p>The crafting recipes are indexed by output and by ingredient once, and the index is rebuilt lazily after
+ * {@link #invalidate()}. Each plan first works out which items could be obtained at all, ignoring quantities, by
+ * propagating forwards from the inventory through the ingredient index, so the search never descends into recipes
+ * which can't work. The search then simulates the inventory, trying the recipes for each missing item in turn, and
+ * remembers which amounts of an item couldn't be made until the simulated inventory gains something again.</p>
+ *
+ * <p>Repeats of the same craft are merged in the final plan, which is ordered so that every item is crafted before
+ * the crafts that use it, so that each craft only has to set up the grid once.</p>
+ */
+public final class CraftPlanner {
+    private static final int MAX_DEPTH = 32;
+
+    private static volatile RecipeIndex index;
+
+    private final RecipeIndex recipes;
+    private final int gridWidth;
+    private final int gridHeight;
+
+    // the simulated inventory, and an undo log of the changes made to it so that failed attempts can be rolled back
+    private final Reference2IntMap<Item> pool = new Reference2IntOpenHashMap<>();
+    private final List<Item> undoItems = new ArrayList<>();
+    private final IntList undoAmounts = new IntArrayList();
+    // incremented whenever the simulated inventory gains items, which may make a failed craft possible
+    private int gainVersion;
+    private final Reference2ObjectMap<Item, Failure> failures = new Reference2ObjectOpenHashMap<>();
+
+    private final Set<Item> obtainable = new ReferenceOpenHashSet<>();
+    private final Reference2ObjectMap<Item, List<RecipeInfo>> usableRecipes = new Reference2ObjectOpenHashMap<>();
+    private final Set<Item> resolving = new ReferenceOpenHashSet<>();
+    // whether the search has been cut short by the depth limit or a cycle since the current item started resolving
+    private boolean hitLimit;
+    private final List<Step> steps = new ArrayList<>();
+
+    CraftPlanner(List<ItemStack> inventory, int gridWidth, int gridHeight) {
+        this.recipes = index();
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        pool.defaultReturnValue(0);
+        for (ItemStack stack : inventory) {
+            if (!stack.isEmpty()) {
+                pool.put(stack.getItem(), pool.getInt(stack.getItem()) + stack.getCount());
+            }
+        }
+        findObtainable();
+    }
+
+    public static void invalidate() {
+        index = null;
+    }
+
+    private static RecipeIndex index() {
+        RecipeIndex recipeIndex = index;
+        if (recipeIndex == null) {
+            ClientPlayNetworkHandler networkHandler = MinecraftClient.getInstance().getNetworkHandler();
+            if (networkHandler == null)
+                throw new IllegalStateException("Not connected to a world");
+            index = recipeIndex = new RecipeIndex(networkHandler.getRecipeManager().listAllOfType(RecipeType.CRAFTING));
+        }
+        return recipeIndex;
+    }
+
+    /**
+     * Plans enough crafts of the item to make at least the given number of it, not counting any already in the
+     * inventory. Returns null if it can't be made
+     */
+    List<Step> plan(Item item, int count) {
+        int mark = undoItems.size();
+        if (!craft(item, count, 0)) {
+            rollback(mark);
+            return null;
+        }
+        return mergeSteps();
+    }
+
+    private void findObtainable() {
+        // how many ingredient groups of each recipe have no obtainable item yet
+        int[] remainingGroups = new int[recipes.all.size()];
+        BitSet satisfiedGroups = new BitSet();
+        for (RecipeInfo recipe : recipes.all) {
+            remainingGroups[recipe.id] = recipe.groups.length;
+        }
+
+        List<Item> queue = new ArrayList<>(pool.keySet());
+        obtainable.addAll(queue);
+        while (!queue.isEmpty()) {
+            Item item = queue.remove(queue.size() - 1);
+            for (GroupRef ref : recipes.consumers.getOrDefault(item, List.of())) {
+                RecipeInfo recipe = ref.recipe();
+                int bit = recipe.groupOffset + ref.group();
+                if (satisfiedGroups.get(bit))
+                    continue;
+                satisfiedGroups.set(bit);
+                if (--remainingGroups[recipe.id] == 0 && recipe.fits(gridWidth, gridHeight) && obtainable.add(recipe.output)) {
+                    queue.add(recipe.output);
+                }
+            }
+        }
+    }
+
+    /**
+     * The recipes for an item which fit in the grid and only use obtainable items
+     */
+    private List<RecipeInfo> usableRecipes(Item item) {
+        return usableRecipes.computeIfAbsent(item, k -> {
+            List<RecipeInfo> ret = new ArrayList<>();
+            recipeLoop:
+            for (RecipeInfo recipe : recipes.byOutput.getOrDefault(item, List.of())) {
+                if (!recipe.fits(gridWidth, gridHeight))
+                    continue;
+                for (Item[] candidates : recipe.groups) {
+                    if (Arrays.stream(candidates).noneMatch(obtainable::contains))
+                        continue recipeLoop;
+                }
+                ret.add(recipe);
+            }
+            return ret;
+        });
+    }
+
+    /**
+     * Takes the amount of the item from the simulated inventory, crafting whatever is missing. If that isn't
+     * possible, returns false and leaves the simulated inventory as it was
+     */
+    private boolean obtain(Item item, int amount, int depth) {
+        int mark = undoItems.size();
+        int taken = Math.min(pool.getInt(item), amount);
+        change(item, -taken);
+        if (taken == amount)
+            return true;
+        int missing = amount - taken;
+        if (craft(item, missing, depth + 1)) {
+            change(item, -missing);
+            return true;
+        }
+        rollback(mark);
+        return false;
+    }
+
+    /**
+     * Adds crafts which make at least the amount of the item to the plan, and their results to the simulated
+     * inventory
+     */
+    private boolean craft(Item item, int amount, int depth) {
+        if (!obtainable.contains(item))
+            return false;
+        if (depth > MAX_DEPTH || resolving.contains(item)) {
+            hitLimit = true;
+            return false;
+        }
+        Failure failure = failures.get(item);
+        if (failure != null && failure.version == gainVersion && amount >= failure.amount)
+            return false;
+
+        boolean outerHitLimit = hitLimit;
+        hitLimit = false;
+        resolving.add(item);
+        try {
+            for (RecipeInfo recipe : usableRecipes(item)) {
+                int mark = undoItems.size();
+                int stepMark = steps.size();
+                int crafts = (amount + recipe.outputCount - 1) / recipe.outputCount;
+                Item[] chosen = consumeIngredients(recipe, crafts, depth);
+                if (chosen != null) {
+                    change(item, crafts * recipe.outputCount);
+                    steps.add(new Step(recipe, chosen, crafts));
+                    return true;
+                }
+                rollback(mark);
+                steps.subList(stepMark, steps.size()).clear();
+            }
+
+            // a failure that depends on which items are being resolved higher up may not fail elsewhere
+            if (!hitLimit && (failure == null || failure.version != gainVersion || amount < failure.amount)) {
+                failures.put(item, new Failure(amount, gainVersion));
+            }
+            return false;
+        } finally {
+            resolving.remove(item);
+            hitLimit |= outerHitLimit;
+        }
+    }
+
+    /**
+     * Picks an item for each ingredient group and takes enough of it for the crafts, preferring items there's already
+     * the most of. Returns the chosen items, or null if some group couldn't be satisfied
+     */
+    private Item[] consumeIngredients(RecipeInfo recipe, int crafts, int depth) {
+        Item[] chosen = new Item[recipe.groups.length];
+        for (int group = 0; group < recipe.groups.length; group++) {
+            int needed = recipe.groupCounts[group] * crafts;
+            Item[] candidates = recipe.groups[group].clone();
+            Arrays.sort(candidates, Comparator.comparingInt((Item candidate) -> pool.getInt(candidate)).reversed());
+            for (Item candidate : candidates) {
+                if (obtainable.contains(candidate) && obtain(candidate, needed, depth)) {
+                    chosen[group] = candidate;
+                    break;
+                }
+            }
+            if (chosen[group] == null)
+                return null;
+        }
+        return chosen;
+    }
+
+    private void change(Item item, int amount) {
+        if (amount == 0)
+            return;
+        pool.put(item, pool.getInt(item) + amount);
+        undoItems.add(item);
+        undoAmounts.add(amount);
+        if (amount > 0) {
+            gainVersion++;
+        }
+    }
+
+    private void rollback(int mark) {
+        boolean gained = false;
+        for (int i = undoItems.size() - 1; i >= mark; i--) {
+            Item item = undoItems.remove(i);
+            int amount = undoAmounts.removeInt(i);
+            pool.put(item, pool.getInt(item) - amount);
+            gained |= amount < 0;
+        }
+        if (gained) {
+            gainVersion++;
+        }
+    }
+
+    /**
+     * Merges repeats of the same craft, and orders the crafts so that each one comes after all the crafts which make
+     * its ingredients, otherwise keeping the order they were planned in
+     */
+    private List<Step> mergeSteps() {
+        Map<StepKey, Integer> nodeIds = new LinkedHashMap<>();
+        List<Step> merged = new ArrayList<>();
+        for (Step step : steps) {
+            StepKey key = new StepKey(step.recipe, List.of(step.ingredients));
+            Integer id = nodeIds.get(key);
+            if (id == null) {
+                nodeIds.put(key, merged.size());
+                merged.add(step);
+            } else {
+                Step existing = merged.get(id);
+                merged.set(id, new Step(existing.recipe, existing.ingredients, existing.crafts + step.crafts));
+            }
+        }
+
+        Map<Item, IntList> producers = new HashMap<>();
+        for (int i = 0; i < merged.size(); i++) {
+            producers.computeIfAbsent(merged.get(i).recipe.output, k -> new IntArrayList()).add(i);
+        }
+        List<IntList> dependents = new ArrayList<>(merged.size());
+        int[] inDegree = new int[merged.size()];
+        for (int i = 0; i < merged.size(); i++) {
+            dependents.add(new IntArrayList());
+        }
+        for (int i = 0; i < merged.size(); i++) {
+            for (Item ingredient : merged.get(i).ingredients) {
+                for (int producer : producers.getOrDefault(ingredient, IntList.of())) {
+                    if (producer != i) {
+                        dependents.get(producer).add(i);
+                        inDegree[i]++;
+                    }
+                }
+            }
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < merged.size(); i++) {
+            if (inDegree[i] == 0) {
+                ready.add(i);
+            }
+        }
+        List<Step> ordered = new ArrayList<>(merged.size());
+        while (!ready.isEmpty()) {
+            int node = ready.poll();
+            ordered.add(merged.get(node));
+            for (int dependent : dependents.get(node)) {
+                if (--inDegree[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        // the crafts depend on each other in a cycle, so they can't be merged safely
+        return ordered.size() == merged.size() ? ordered : steps;
+    }
+
+    /**
+     * A number of crafts of a recipe, with the item chosen for each of its ingredient groups
+     */
+    record Step(RecipeInfo recipe, Item[] ingredients, int crafts) {
+        /**
+         * The pattern to pass to the craft function, with the letters A, B, C, ... standing for the ingredient groups
+         */
+        String[] pattern() {
+            String[] pattern = new String[recipe.height];
+            for (int y = 0; y < recipe.height; y++) {
+                StringBuilder row = new StringBuilder(recipe.width);
+                for (int x = 0; x < recipe.width; x++) {
+                    int slot = x + recipe.width * y;
+                    int group = slot < recipe.slotGroups.length ? recipe.slotGroups[slot] : -1;
+                    row.append(group == -1 ? ' ' : (char) ('A' + group));
+                }
+                pattern[y] = row.toString();
+            }
+            return pattern;
+        }
+    }
+
+    private record StepKey(RecipeInfo recipe, List<Item> ingredients) {}
+
+    private record Failure(int amount, int version) {}
+
+    private record GroupRef(RecipeInfo recipe, int group) {}
+
+    /**
+     * A crafting recipe with its ingredients grouped by the items they accept. Each group can be filled with a single
+     * item, so the planner only has to choose one item per group rather than per slot
+     */
+    static final class RecipeInfo {
+        final int id;
+        final CraftingRecipe recipe;
+        final Item output;
+        final int outputCount;
+        final int width;
+        final int height;
+        // the group of each slot in the pattern, or -1 for empty slots
+        final int[] slotGroups;
+        final Item[][] groups;
+        // how many slots each group has
+        final int[] groupCounts;
+        // the index of this recipe's first group among the groups of all recipes
+        final int groupOffset;
+
+        private RecipeInfo(int id, CraftingRecipe recipe, int groupOffset) {
+            this.id = id;
+            this.recipe = recipe;
+            this.output = recipe.getOutput().getItem();
+            this.outputCount = recipe.getOutput().getCount();
+            this.groupOffset = groupOffset;
+
+            DefaultedList<Ingredient> ingredients = recipe.getIngredients();
+            if (recipe instanceof ShapedRecipe shaped) {
+                this.width = shaped.getWidth();
+                this.height = shaped.getHeight();
+            } else {
+                this.width = ingredients.size() == 1 ? 1 : ingredients.size() <= 4 ? 2 : 3;
+                this.height = (ingredients.size() + width - 1) / width;
+            }
+
+            this.slotGroups = new int[ingredients.size()];
+            List<List<Item>> groupList = new ArrayList<>();
+            IntList counts = new IntArrayList();
+            for (int slot = 0; slot < ingredients.size(); slot++) {
+                Ingredient ingredient = ingredients.get(slot);
+                if (ingredient.isEmpty()) {
+                    slotGroups[slot] = -1;
+                    continue;
+                }
+                List<Item> candidates = Arrays.stream(ingredient.getMatchingStacks()).map(ItemStack::getItem).distinct().toList();
+                int group = groupList.indexOf(candidates);
+                if (group == -1) {
+                    group = groupList.size();
+                    groupList.add(candidates);
+                    counts.add(0);
+                }
+                slotGroups[slot] = group;
+                counts.set(group, counts.getInt(group) + 1);
+            }
+            this.groups = groupList.stream().map(list -> list.toArray(new Item[0])).toArray(Item[][]::new);
+            this.groupCounts = counts.toIntArray();
+        }
+
+        boolean fits(int gridWidth, int gridHeight) {
+            return width <= gridWidth && height <= gridHeight;
+        }
+    }
+
+    private static final class RecipeIndex {
+        private final List<RecipeInfo> all = new ArrayList<>();
+        private final Map<Item, List<RecipeInfo>> byOutput = new HashMap<>();
+        private final Map<Item, List<GroupRef>> consumers = new HashMap<>();
+
+        RecipeIndex(List<CraftingRecipe> recipes) {
+            int groupOffset = 0;
+            for (CraftingRecipe recipe : recipes) {
+                // special recipes such as fireworks and map cloning have no fixed ingredients
+                if (recipe.getOutput().isEmpty() || recipe.getIngredients().isEmpty())
+                    continue;
+                RecipeInfo info = new RecipeInfo(all.size(), recipe, groupOffset);
+                groupOffset += info.groups.length;
+                all.add(info);
+                byOutput.computeIfAbsent(info.output, k -> new ArrayList<>()).add(info);
+                for (int group = 0; group < info.groups.length; group++) {
+                    for (Item item : info.groups[group]) {
+                        consumers.computeIfAbsent(item, k -> new ArrayList<>()).add(new GroupRef(info, group));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.ExperienceOrbEntity;
+import net.minecraft.entity.FallingBlockEntity;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.TntEntity;
+import net.minecraft.entity.projectile.ExplosiveProjectileEntity;
+import net.minecraft.entity.projectile.PersistentProjectileEntity;
+import net.minecraft.entity.projectile.thrown.ThrownEntity;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.List;
+
+/**
+ * Predicts where entities will be in the next few ticks by simulating their gravity, drag and collisions with the
+ * world. Mobs and players move under their own control, so their horizontal movement is extrapolated from their
+ * movement over the last tick rather than simulated. Fluids and knockback are not taken into account.
+ */
+final class EntityPredictor {
+    static final int MAX_TICKS = 200;
+
+    private EntityPredictor() {}
+
+    /**
+     * Returns the predicted positions of the entity after each of the next ticks ticks
+     */
+    static Vec3d[] predict(Entity entity, int ticks) {
+        if (ticks < 0 || ticks > MAX_TICKS)
+            throw new IllegalArgumentException("Ticks must be between 0 and " + MAX_TICKS);
+
+        Motion motion = Motion.of(entity);
+        Vec3d pos = entity.getPos();
+        Vec3d velocity = motion.velocity();
+        Box box = entity.getBoundingBox();
+        boolean stuck = false;
+
+        Vec3d[] ret = new Vec3d[ticks];
+        for (int i = 0; i < ticks; i++) {
+            if (!stuck) {
+                if (motion.gravityBeforeMove()) {
+                    velocity = velocity.add(0, -motion.gravity(), 0);
+                }
+                Vec3d movement = velocity.lengthSquared() == 0 ? velocity : Entity.adjustMovementForCollisions(entity, velocity, box, entity.world, List.of());
+                pos = pos.add(movement);
+                box = box.offset(movement);
+
+                boolean hitX = movement.x != velocity.x, hitY = movement.y != velocity.y, hitZ = movement.z != velocity.z;
+                if (motion.stopsOnCollision() && (hitX || hitY || hitZ)) {
+                    stuck = true;
+                } else {
+                    boolean onGround = hitY && velocity.y < 0;
+                    velocity = new Vec3d(hitX ? 0 : velocity.x, hitY ? 0 : velocity.y, hitZ ? 0 : velocity.z);
+                    if (!motion.gravityBeforeMove()) {
+                        velocity = velocity.add(0, -motion.gravity(), 0);
+                    }
+                    double horizontalDrag = onGround ? motion.groundDrag() : motion.drag();
+                    velocity = new Vec3d(velocity.x * horizontalDrag, velocity.y * motion.drag(), velocity.z * horizontalDrag);
+                }
+            }
+            ret[i] = pos;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the first tick at which a projectile fired from origin with the given speed in blocks per tick can
+     * reach the predicted target point, or -1 if it can't reach any of them. Gravity on the projectile is ignored.
+     */
+    static int findInterceptTick(Vec3d[] targetPoints, Vec3d origin, double speed) {
+        for (int i = 0; i < targetPoints.length; i++) {
+            double reach = speed * (i + 1);
+            if (targetPoints[i].squaredDistanceTo(origin) <= reach * reach) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private record Motion(Vec3d velocity, double gravity, boolean gravityBeforeMove, double drag, double groundDrag, boolean stopsOnCollision) {
+        static Motion of(Entity entity) {
+            Vec3d velocity = entity.getVelocity();
+            if (entity instanceof LivingEntity) {
+                // the client doesn't know the velocity a mob's AI is moving it with, only where it has been
+                Vec3d observed = entity.getPos().subtract(entity.prevX, entity.prevY, entity.prevZ);
+                return new Motion(new Vec3d(observed.x, entity.isOnGround() ? 0 : observed.y, observed.z), 0.08, true, 0.98, 1, false);
+            } else if (entity instanceof PersistentProjectileEntity) {
+                return new Motion(velocity, 0.05, false, 0.99, 0.99, true);
+            } else if (entity instanceof ThrownEntity) {
+                return new Motion(velocity, 0.03, false, 0.99, 0.99, true);
+            } else if (entity instanceof ExplosiveProjectileEntity) {
+                return new Motion(velocity, 0, false, 1, 1, true);
+            } else if (entity instanceof ItemEntity || entity instanceof FallingBlockEntity || entity instanceof TntEntity) {
+                return new Motion(velocity, 0.04, true, 0.98, 0.98 * 0.6, false);
+            } else if (entity instanceof ExperienceOrbEntity) {
+                return new Motion(velocity, 0.03, true, 0.98, 0.98 * 0.6, false);
+            } else {
+                // vehicles and everything else: assume they keep moving as they did last tick
+                Vec3d observed = entity.getPos().subtract(entity.prevX, entity.prevY, entity.prevZ);
+                return new Motion(observed, 0, true, 1, 1, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.ItemStack;
+import net.minecraft.screen.slot.Slot;
+import net.minecraft.screen.slot.SlotActionType;
+import net.minecraft.util.registry.Registry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Plans the clicks to rearrange a set of slots, by simulating the clicks on copies of the stacks.
+ *
+ * <p>Partial stacks are merged first. The rearrangement is then a permutation of the slots, which is done one cycle at
+ * a time. A cycle of k slots takes k + 1 left clicks, or fewer if it contains empty slots. If the cycle contains a
+ * hotbar slot, it only takes k - 1 hotbar swaps, with the hotbar slot holding each stack in turn.</p>
+ *
+ * <p>A left click merges the cursor into a stack it can combine with rather than swapping them, so stacks aren't
+ * assigned to slots holding a stack they can merge with unless there is no other choice. When a cycle still has such
+ * a step, it is made the last step of the cycle, whose slot is empty by then. Any others either leave an identical
+ * stack where it is, or park the cursor in a free slot until the rest of the cycle is done.</p>
+ *
+ * <p>Only left clicks and hotbar swaps are used. Shift clicks move stacks to the other inventory of the screen, wherever
+ * the screen handler decides, while a plan only ever rearranges the slots of one inventory.</p>
+ */
+final class InventoryPlanner {
+    private final List<Slot> slots;
+    private final ItemStack[] stacks;
+    // the hotbar index of each slot, or -1 if it isn't in the hotbar
+    private final int[] hotbarIndex;
+    private ItemStack cursor = ItemStack.EMPTY;
+    private final List<ScriptClickTransaction.Click> clicks = new ArrayList<>();
+
+    InventoryPlanner(List<Slot> slots, PlayerInventory playerInventory) {
+        this.slots = slots;
+        this.stacks = new ItemStack[slots.size()];
+        this.hotbarIndex = new int[slots.size()];
+        for (int i = 0; i < stacks.length; i++) {
+            Slot slot = slots.get(i);
+            stacks[i] = slot.getStack().copy();
+            hotbarIndex[i] = slot.inventory == playerInventory && PlayerInventory.isValidHotbarIndex(slot.getIndex()) ? slot.getIndex() : -1;
+        }
+    }
+
+    int getSlotCount() {
+        return slots.size();
+    }
+
+    List<ScriptClickTransaction.Click> getClicks() {
+        return clicks;
+    }
+
+    /**
+     * Merges stacks and moves them to the start of the slots, ordered by item id, then NBT, then count
+     */
+    void planSort() {
+        mergeStacks();
+
+        List<ItemStack> sorted = new ArrayList<>();
+        for (ItemStack stack : stacks) {
+            if (!stack.isEmpty()) {
+                sorted.add(stack);
+            }
+        }
+        sorted.sort(Comparator.<ItemStack>comparingInt(stack -> Registry.ITEM.getRawId(stack.getItem()))
+                .thenComparing(stack -> String.valueOf(stack.getNbt()))
+                .thenComparing(Comparator.comparingInt(ItemStack::getCount).reversed()));
+
+        @SuppressWarnings("unchecked")
+        Predicate<ItemStack>[] wanted = new Predicate[stacks.length];
+        for (int i = 0; i < stacks.length; i++) {
+            if (i < sorted.size()) {
+                ItemStack target = sorted.get(i);
+                wanted[i] = stack -> ItemStack.canCombine(stack, target);
+            } else {
+                wanted[i] = ItemStack::isEmpty;
+            }
+        }
+        permute(assign(wanted));
+    }
+
+    /**
+     * Moves stacks so that each slot matches its predicate where possible. Null predicates mean any item may go there
+     */
+    void planLayout(Predicate<ItemStack>[] wanted) {
+        mergeStacks();
+        permute(assign(wanted));
+    }
+
+    private void mergeStacks() {
+        boolean[] done = new boolean[stacks.length];
+        for (int first = 0; first < stacks.length; first++) {
+            if (done[first] || stacks[first].isEmpty() || isFull(first)) {
+                continue;
+            }
+            IntList partials = new IntArrayList();
+            for (int i = first; i < stacks.length; i++) {
+                if (!stacks[i].isEmpty() && !isFull(i) && ItemStack.canCombine(stacks[first], stacks[i])) {
+                    partials.add(i);
+                    done[i] = true;
+                }
+            }
+
+            // pick up the smallest stack and drop it onto the largest ones until it's used up
+            while (partials.size() >= 2) {
+                partials.sort((int a, int b) -> Integer.compare(stacks[a].getCount(), stacks[b].getCount()));
+                int source = partials.removeInt(0);
+                click(source);
+                for (int i = partials.size() - 1; i >= 0 && !cursor.isEmpty(); i--) {
+                    int dest = partials.getInt(i);
+                    click(dest);
+                    if (isFull(dest)) {
+                        partials.removeInt(i);
+                    }
+                }
+                if (!cursor.isEmpty()) {
+                    // every other stack is full now
+                    click(source);
+                    partials.add(source);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns where the stack in each slot should go
+     */
+    private int[] assign(Predicate<ItemStack>[] wanted) {
+        int[] dest = new int[stacks.length];
+        Arrays.fill(dest, -1);
+        boolean[] taken = new boolean[stacks.length];
+
+        // stacks which are already in a slot that wants them
+        for (int i = 0; i < stacks.length; i++) {
+            if (wanted[i] != null && wanted[i].test(stacks[i])) {
+                dest[i] = i;
+                taken[i] = true;
+            }
+        }
+
+        // fill slots which want an item
+        for (int target = 0; target < stacks.length; target++) {
+            if (taken[target] || wanted[target] == null || wanted[target].test(ItemStack.EMPTY)) {
+                continue;
+            }
+            for (int source = 0; source < stacks.length; source++) {
+                if (dest[source] == -1 && !stacks[source].isEmpty() && wanted[target].test(stacks[source]) && !wouldMerge(source, target)) {
+                    dest[source] = target;
+                    taken[target] = true;
+                    break;
+                }
+            }
+        }
+
+        // find somewhere for the other stacks, preferring slots that don't care, then slots that want an item they
+        // can't have, then slots that want to be empty. Stay put if possible
+        for (int source = 0; source < stacks.length; source++) {
+            if (dest[source] != -1 || stacks[source].isEmpty()) {
+                continue;
+            }
+            int best = -1;
+            int bestScore = Integer.MAX_VALUE;
+            for (int target = 0; target < stacks.length; target++) {
+                if (taken[target]) {
+                    continue;
+                }
+                int score = wanted[target] == null ? 0 : wanted[target].test(ItemStack.EMPTY) ? 2 : 1;
+                // slots with a stack this one would merge with are only a last resort
+                if (wouldMerge(source, target)) {
+                    score += 3;
+                }
+                if (score < bestScore || score == bestScore && target == source) {
+                    best = target;
+                    bestScore = score;
+                }
+            }
+            dest[source] = best;
+            taken[best] = true;
+        }
+
+        // empty slots fill in the gaps
+        int nextFree = 0;
+        for (int source = 0; source < stacks.length; source++) {
+            if (dest[source] != -1) {
+                continue;
+            }
+            if (!taken[source]) {
+                dest[source] = source;
+                taken[source] = true;
+            }
+        }
+        for (int source = 0; source < stacks.length; source++) {
+            if (dest[source] == -1) {
+                while (taken[nextFree]) {
+                    nextFree++;
+                }
+                dest[source] = nextFree;
+                taken[nextFree] = true;
+            }
+        }
+
+        return dest;
+    }
+
+    /**
+     * Moves the stack in each slot to the slot given by dest, which must be a permutation of the slots
+     */
+    void permute(int[] dest) {
+        boolean[] visited = new boolean[stacks.length];
+        for (int start = 0; start < stacks.length; start++) {
+            if (visited[start] || dest[start] == start) {
+                visited[start] = true;
+                continue;
+            }
+            IntList cycle = new IntArrayList();
+            for (int i = start; !visited[i]; i = dest[i]) {
+                visited[i] = true;
+                cycle.add(i);
+            }
+
+            int hotbarPos = -1;
+            int runs = 0;
+            int nonEmpty = 0;
+            int emptyPos = -1;
+            for (int i = 0; i < cycle.size(); i++) {
+                int slot = cycle.getInt(i);
+                if (hotbarPos == -1 && hotbarIndex[slot] != -1) {
+                    hotbarPos = i;
+                }
+                if (stacks[slot].isEmpty()) {
+                    emptyPos = i;
+                } else {
+                    nonEmpty++;
+                    if (stacks[cycle.getInt((i + cycle.size() - 1) % cycle.size())].isEmpty()) {
+                        runs++;
+                    }
+                }
+            }
+            int pickupCost = nonEmpty + (emptyPos == -1 ? 1 : runs);
+            int swapCost = cycle.size() - 1;
+
+            if (hotbarPos != -1 && swapCost < pickupCost) {
+                swapCycle(rotate(cycle, hotbarPos));
+            } else if (emptyPos != -1) {
+                pickupCycle(rotate(cycle, emptyPos + 1));
+            } else {
+                // the last step puts the cursor into the first slot, which is empty by then, so it can't merge
+                int mergePos = -1;
+                for (int i = 0; i < cycle.size() && mergePos == -1; i++) {
+                    if (wouldMerge(cycle.getInt(i), cycle.getInt((i + 1) % cycle.size()))) {
+                        mergePos = i;
+                    }
+                }
+                pickupCycle(mergePos == -1 ? cycle : rotate(cycle, mergePos + 1));
+            }
+        }
+    }
+
+    /**
+     * Whether a left click with the stack from the source slot on the target slot would merge them rather than swap
+     */
+    private boolean wouldMerge(int source, int target) {
+        return source != target && !stacks[target].isEmpty() && ItemStack.canCombine(stacks[source], stacks[target]);
+    }
+
+    private static IntList rotate(IntList cycle, int newStart) {
+        IntList ret = new IntArrayList(cycle.size());
+        for (int i = 0; i < cycle.size(); i++) {
+            ret.add(cycle.getInt((newStart + i) % cycle.size()));
+        }
+        return ret;
+    }
+
+    /**
+     * The stack in each slot of the cycle goes to the next one. The first slot is in the hotbar
+     */
+    private void swapCycle(IntList cycle) {
+        int hotbar = cycle.getInt(0);
+        for (int i = 1; i < cycle.size(); i++) {
+            swap(cycle.getInt(i), hotbar);
+        }
+    }
+
+    /**
+     * The stack in each slot of the cycle goes to the next one. If any slot is empty, the last one is
+     */
+    private void pickupCycle(IntList cycle) {
+        boolean[] wasEmpty = new boolean[cycle.size()];
+        for (int i = 0; i < cycle.size(); i++) {
+            wasEmpty[i] = stacks[cycle.getInt(i)].isEmpty();
+        }
+        // stacks parked in a free slot, and the slots they belong in
+        IntList parkedIn = new IntArrayList();
+        IntList parkedFor = new IntArrayList();
+        for (int i = 0; i < cycle.size(); i++) {
+            if (cursor.isEmpty()) {
+                if (wasEmpty[i]) {
+                    continue;
+                }
+                click(cycle.getInt(i));
+            }
+            int next = cycle.getInt((i + 1) % cycle.size());
+            if (!stacks[next].isEmpty() && ItemStack.canCombine(cursor, stacks[next])) {
+                if (ItemStack.areEqual(cursor, stacks[next])) {
+                    // the stacks are interchangeable, so the one already there can stay and the cursor carries on
+                    continue;
+                }
+                int free = findFreeSlot(cycle, cursor);
+                if (free == -1)
+                    throw new IllegalStateException("Not enough free slots to rearrange the stacks");
+                click(free);
+                parkedIn.add(free);
+                parkedFor.add(next);
+            }
+            click(next);
+        }
+        for (int i = 0; i < parkedIn.size(); i++) {
+            click(parkedIn.getInt(i));
+            click(parkedFor.getInt(i));
+        }
+    }
+
+    private int findFreeSlot(IntList cycle, ItemStack stack) {
+        for (int i = 0; i < stacks.length; i++) {
+            if (stacks[i].isEmpty() && !cycle.contains(i) && slots.get(i).canInsert(stack)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isFull(int index) {
+        return stacks[index].getCount() >= getMaxCount(index, stacks[index]);
+    }
+
+    private int getMaxCount(int index, ItemStack stack) {
+        return Math.min(stack.getMaxCount(), slots.get(index).getMaxItemCount(stack));
+    }
+
+    /**
+     * Simulates a left click on the slot
+     */
+    private void click(int index) {
+        ItemStack stack = stacks[index];
+        if (cursor.isEmpty()) {
+            cursor = stack;
+            stacks[index] = ItemStack.EMPTY;
+        } else if (stack.isEmpty()) {
+            stacks[index] = cursor;
+            cursor = ItemStack.EMPTY;
+        } else if (ItemStack.canCombine(cursor, stack)) {
+            int moved = Math.min(cursor.getCount(), getMaxCount(index, stack) - stack.getCount());
+            stacks[index] = copyWithCount(stack, stack.getCount() + moved);
+            cursor = copyWithCount(cursor, cursor.getCount() - moved);
+        } else {
+            stacks[index] = cursor;
+            cursor = stack;
+        }
+        clicks.add(new ScriptClickTransaction.Click(slots.get(index).id, 0, SlotActionType.PICKUP));
+    }
+
+    /**
+     * Simulates swapping the slot with a hotbar slot using the number keys
+     */
+    private void swap(int index, int hotbar) {
+        ItemStack stack = stacks[index];
+        stacks[index] = stacks[hotbar];
+        stacks[hotbar] = stack;
+        clicks.add(new ScriptClickTransaction.Click(slots.get(index).id, hotbarIndex[hotbar], SlotActionType.SWAP));
+    }
+
+    private static ItemStack copyWithCount(ItemStack stack, int count) {
+        if (count <= 0) {
+            return ItemStack.EMPTY;
+        }
+        ItemStack copy = stack.copy();
+        copy.setCount(count);
+        return copy;
+    }
+}
@@ -0,0 +1,149 @@
+package net.earthcomputer.clientcommands.script;
+
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.command.argument.NbtPathArgumentType;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.registry.Registry;
+import org.graalvm.polyglot.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates NBT paths, in the same syntax as the <code>/data get</code> command, against entity and block entity NBT.
+ * Paths are compiled once and cached by string. Some common entity paths are read straight from the entity, without
+ * serializing it at all.
+ */
+final class NbtPaths {
+    private static final int MAX_CACHED_PATHS = 256;
+    // Guarded by itself
+    private static final Map<String, NbtPathArgumentType.NbtPath> compiledPaths = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, NbtPathArgumentType.NbtPath> eldest) {
+            return size() > MAX_CACHED_PATHS;
+        }
+    };
+
+    private NbtPaths() {}
+
+    /**
+     * Evaluates the given path or array of paths. A single path returns its value directly, an array of paths returns
+     * an object mapping each path to its value.
+     */
+    static Object project(Value paths, Supplier<NbtCompound> nbt) {
+        return project(paths, path -> null, nbt);
+    }
+
+    static Object projectEntity(Value paths, Entity entity) {
+        return project(paths, path -> getFastPath(entity, path), () -> entity.writeNbt(new NbtCompound()));
+    }
+
+    private static Object project(Value paths, Function<String, Object> fastPaths, Supplier<NbtCompound> nbtSupplier) {
+        NbtCompound[] nbt = new NbtCompound[1];
+        Function<String, Object> evaluate = path -> {
+            Object value = fastPaths.apply(path);
+            if (value != null) {
+                return value;
+            }
+            if (nbt[0] == null) {
+                nbt[0] = nbtSupplier.get();
+            }
+            return evaluate(compile(path), nbt[0]);
+        };
+
+        if (paths.isString()) {
+            return evaluate.apply(paths.asString());
+        }
+        if (!paths.hasArrayElements()) {
+            throw new IllegalArgumentException("Cannot interpret " + paths + " as an NBT path or array of NBT paths");
+        }
+        Map<String, Object> result = new HashMap<>();
+        for (long i = 0; i < paths.getArraySize(); i++) {
+            String path = ScriptUtil.asString(paths.getArrayElement(i));
+            result.put(path, evaluate.apply(path));
+        }
+        return result;
+    }
+
+    static NbtPathArgumentType.NbtPath compile(String path) {
+        synchronized (compiledPaths) {
+            NbtPathArgumentType.NbtPath compiled = compiledPaths.get(path);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+        NbtPathArgumentType.NbtPath compiled;
+        try {
+            StringReader reader = new StringReader(path);
+            compiled = NbtPathArgumentType.nbtPath().parse(reader);
+            if (reader.canRead()) {
+                throw new IllegalArgumentException("Invalid NBT path: " + path);
+            }
+        } catch (CommandSyntaxException e) {
+            throw new IllegalArgumentException("Invalid NBT path: " + path, e);
+        }
+        synchronized (compiledPaths) {
+            compiledPaths.put(path, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Returns the value at the path, a list of values if there is more than one, or null if there are none
+     */
+    private static Object evaluate(NbtPathArgumentType.NbtPath path, NbtElement nbt) {
+        List<NbtElement> matches;
+        try {
+            matches = path.get(nbt);
+        } catch (CommandSyntaxException e) {
+            return null;
+        }
+        if (matches.size() == 1) {
+            return ScriptUtil.fromNbt(matches.get(0));
+        }
+        List<Object> values = new ArrayList<>(matches.size());
+        for (NbtElement match : matches) {
+            values.add(ScriptUtil.fromNbt(match));
+        }
+        return values;
+    }
+
+    /**
+     * Returns the value of common paths without serializing the entity, with the same value the full NBT would give,
+     * or null if the path isn't one of them
+     */
+    private static Object getFastPath(Entity entity, String path) {
+        switch (path) {
+            case "Pos":
+                return List.of(entity.getX(), entity.getY(), entity.getZ());
+            case "Motion":
+                Vec3d velocity = entity.getVelocity();
+                return List.of(velocity.x, velocity.y, velocity.z);
+            case "Rotation":
+                return List.of((double) entity.getYaw(), (double) entity.getPitch());
+            case "Health":
+                return entity instanceof LivingEntity living ? (double) living.getHealth() : null;
+            case "Item.id":
+            case "Item.Count":
+                if (entity instanceof ItemEntity itemEntity && !itemEntity.getStack().isEmpty()) {
+                    ItemStack stack = itemEntity.getStack();
+                    return path.equals("Item.id") ? Registry.ITEM.getId(stack.getItem()).toString() : (double) stack.getCount();
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+}
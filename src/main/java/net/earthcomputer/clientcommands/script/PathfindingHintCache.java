@@ -0,0 +1,115 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.entity.ai.pathing.PathNodeType;
+import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Remembers the results of the script's pathfinding hint functions, which are slow to call, for the duration of a
+ * pathTo call. Block changes are recorded from the client thread and applied by the script thread before each search,
+ * so that a new search never sees node types computed from blocks which have since changed.
+ */
+final class PathfindingHintCache {
+    private static final PathNodeType[] PATH_NODE_TYPES = PathNodeType.values();
+    // past this many changes, it's cheaper to start again than to find the affected positions
+    private static final int MAX_TRACKED_CHANGES = 4096;
+
+    // only accessed on the script thread. Holds the ordinal of the node type at each position, or -1 for null
+    private final Long2IntMap nodeTypes = new Long2IntOpenHashMap();
+    private final Map<PathNodeType, Float> penalties = new EnumMap<>(PathNodeType.class);
+
+    // guarded by itself
+    private final LongSet changedBlocks = new LongOpenHashSet();
+    private boolean tooManyChanges;
+
+    PathfindingHintCache() {
+        nodeTypes.defaultReturnValue(-2);
+    }
+
+    @Nullable
+    PathNodeType getNodeType(BlockPos pos, Function<BlockPos, PathNodeType> function) {
+        long key = pos.asLong();
+        int ordinal = nodeTypes.get(key);
+        if (ordinal == -2) {
+            PathNodeType type = function.apply(pos);
+            ordinal = type == null ? -1 : type.ordinal();
+            nodeTypes.put(key, ordinal);
+        }
+        return ordinal == -1 ? null : PATH_NODE_TYPES[ordinal];
+    }
+
+    float getPenalty(PathNodeType type, Function<PathNodeType, Float> function) {
+        Float penalty = penalties.get(type);
+        if (penalty == null) {
+            penalty = function.apply(type);
+            penalties.put(type, penalty);
+        }
+        return penalty;
+    }
+
+    /**
+     * Called on the client thread
+     */
+    void onBlockChange(BlockPos pos) {
+        synchronized (changedBlocks) {
+            if (tooManyChanges) {
+                return;
+            }
+            changedBlocks.add(pos.asLong());
+            if (changedBlocks.size() > MAX_TRACKED_CHANGES) {
+                tooManyChanges = true;
+                changedBlocks.clear();
+            }
+        }
+    }
+
+    /**
+     * Called on the script thread before each search. Drops the cached node types around the blocks which changed, and
+     * the penalties, which the penalty function may base on the world too
+     */
+    void applyBlockChanges() {
+        synchronized (changedBlocks) {
+            if (tooManyChanges) {
+                nodeTypes.clear();
+                penalties.clear();
+                tooManyChanges = false;
+                return;
+            }
+            if (changedBlocks.isEmpty()) {
+                return;
+            }
+            if (!nodeTypes.isEmpty()) {
+                BlockPos.Mutable neighbor = new BlockPos.Mutable();
+                for (LongIterator itr = changedBlocks.iterator(); itr.hasNext(); ) {
+                    long pos = itr.nextLong();
+                    int x = BlockPos.unpackLongX(pos);
+                    int y = BlockPos.unpackLongY(pos);
+                    int z = BlockPos.unpackLongZ(pos);
+                    // the node type function may look at the neighbours of a position too
+                    for (int dx = -1; dx <= 1; dx++) {
+                        for (int dy = -1; dy <= 1; dy++) {
+                            for (int dz = -1; dz <= 1; dz++) {
+                                nodeTypes.remove(neighbor.set(x + dx, y + dy, z + dz).asLong());
+                            }
+                        }
+                    }
+                }
+            }
+            penalties.clear();
+            changedBlocks.clear();
+        }
+    }
+
+    int getCachedNodeTypeCount() {
+        return nodeTypes.size();
+    }
+}
@@ -0,0 +1,121 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.block.Block;
+import net.minecraft.entity.EntityType;
+import net.minecraft.item.Item;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+
+/**
+ * Caches the simplified names of blocks and items by raw id, so that hot paths don't build a new identifier string
+ * every call. Raw ids may change when registries are synced with the server, so the tables are rebuilt lazily after
+ * {@link #invalidate()}, which is called whenever registry sync remaps the ids and when they're restored on disconnect.
+ */
+public final class RegistryNames {
+    private static volatile Table<Block> blocks;
+    private static volatile Table<Item> items;
+    private static volatile Table<EntityType<?>> entityTypes;
+
+    private RegistryNames() {}
+
+    public static void invalidate() {
+        blocks = null;
+        items = null;
+        entityTypes = null;
+    }
+
+    static String blockName(Block block) {
+        return blockName(Registry.BLOCK.getRawId(block));
+    }
+
+    static String blockName(int rawId) {
+        return blocks().getName(rawId);
+    }
+
+    /**
+     * Returns the raw id of the block with the given name, or -1 if there is no such block
+     */
+    static int blockId(String name) {
+        return blocks().getId(name);
+    }
+
+    static String itemName(Item item) {
+        return itemName(Registry.ITEM.getRawId(item));
+    }
+
+    static String itemName(int rawId) {
+        return items().getName(rawId);
+    }
+
+    /**
+     * Returns the raw id of the item with the given name, or -1 if there is no such item
+     */
+    static int itemId(String name) {
+        return items().getId(name);
+    }
+
+    static String entityTypeName(EntityType<?> type) {
+        return entityTypes().getName(Registry.ENTITY_TYPE.getRawId(type));
+    }
+
+    private static Table<Block> blocks() {
+        Table<Block> table = blocks;
+        if (table == null) {
+            blocks = table = new Table<>(Registry.BLOCK);
+        }
+        return table;
+    }
+
+    private static Table<Item> items() {
+        Table<Item> table = items;
+        if (table == null) {
+            items = table = new Table<>(Registry.ITEM);
+        }
+        return table;
+    }
+
+    private static Table<EntityType<?>> entityTypes() {
+        Table<EntityType<?>> table = entityTypes;
+        if (table == null) {
+            entityTypes = table = new Table<>(Registry.ENTITY_TYPE);
+        }
+        return table;
+    }
+
+    private static final class Table<T> {
+        private final String[] names;
+        private final Object2IntMap<String> ids = new Object2IntOpenHashMap<>();
+
+        Table(Registry<T> registry) {
+            int maxId = -1;
+            for (T entry : registry) {
+                maxId = Math.max(maxId, registry.getRawId(entry));
+            }
+            names = new String[maxId + 1];
+            ids.defaultReturnValue(-1);
+            for (T entry : registry) {
+                int rawId = registry.getRawId(entry);
+                Identifier id = registry.getId(entry);
+                String name = ScriptUtil.simplifyIdentifier(id);
+                names[rawId] = name;
+                ids.put(name, rawId);
+                if (id != null) {
+                    ids.put(id.toString(), rawId);
+                }
+            }
+        }
+
+        String getName(int rawId) {
+            if (rawId < 0 || rawId >= names.length || names[rawId] == null) {
+                throw new IllegalArgumentException("No such id: " + rawId);
+            }
+            return names[rawId];
+        }
+
+        int getId(String name) {
+            return ids.getInt(name);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.block.Block;
+
+@SuppressWarnings("unused")
+public class ScriptBlockChangeBatch {
+    private final int count;
+    private final int ticks;
+    private final int dropped;
+    private final int[] positions;
+    private final int[] oldIds;
+    private final int[] newIds;
+
+    ScriptBlockChangeBatch(int count, int ticks, int dropped, int[] positions, int[] oldIds, int[] newIds) {
+        this.count = count;
+        this.ticks = ticks;
+        this.dropped = dropped;
+        this.positions = positions;
+        this.oldIds = oldIds;
+        this.newIds = newIds;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * The number of changes that were dropped because too many were waiting to be polled
+     */
+    public int getDropped() {
+        return dropped;
+    }
+
+    /**
+     * The changed positions, packed as x, y, z triples
+     */
+    public int[] getPositions() {
+        return positions;
+    }
+
+    public int[] getOldIds() {
+        return oldIds;
+    }
+
+    public int[] getNewIds() {
+        return newIds;
+    }
+
+    public int getX(int index) {
+        return positions[checkIndex(index) * 3];
+    }
+
+    public int getY(int index) {
+        return positions[checkIndex(index) * 3 + 1];
+    }
+
+    public int getZ(int index) {
+        return positions[checkIndex(index) * 3 + 2];
+    }
+
+    public String getOldBlock(int index) {
+        return RegistryNames.blockName(Block.getStateFromRawId(oldIds[checkIndex(index)]).getBlock());
+    }
+
+    public String getNewBlock(int index) {
+        return RegistryNames.blockName(Block.getStateFromRawId(newIds[checkIndex(index)]).getBlock());
+    }
+
+    public Object getOldState(int index) {
+        return BeanWrapper.wrap(new ScriptBlockState(Block.getStateFromRawId(oldIds[checkIndex(index)])));
+    }
+
+    public Object getNewState(int index) {
+        return BeanWrapper.wrap(new ScriptBlockState(Block.getStateFromRawId(newIds[checkIndex(index)])));
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException(index);
+        return index;
+    }
+}
@@ -0,0 +1,174 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import java.util.Arrays;
+
+@SuppressWarnings("unused")
+public class ScriptBlockRegion {
+    private static final int MAX_VOLUME = 256 * 256 * 256;
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final int[] ids;
+    private final int[] palette;
+
+    private ScriptBlockRegion(int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ, int[] ids, int[] palette) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.ids = ids;
+        this.palette = palette;
+    }
+
+    static ScriptBlockRegion read(ClientWorld world, int x1, int y1, int z1, int x2, int y2, int z2) {
+        int minX = Math.min(x1, x2), minY = Math.min(y1, y2), minZ = Math.min(z1, z2);
+        int maxX = Math.max(x1, x2), maxY = Math.max(y1, y2), maxZ = Math.max(z1, z2);
+        checkVolume(minX, minY, minZ, maxX, maxY, maxZ);
+        return read(WorldSnapshot.capture(world, minX, minY, minZ, maxX, maxY, maxZ), minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    static ScriptBlockRegion read(WorldSnapshot snapshot, int x1, int y1, int z1, int x2, int y2, int z2) {
+        int minX = Math.min(x1, x2), minY = Math.min(y1, y2), minZ = Math.min(z1, z2);
+        int maxX = Math.max(x1, x2), maxY = Math.max(y1, y2), maxZ = Math.max(z1, z2);
+        checkVolume(minX, minY, minZ, maxX, maxY, maxZ);
+        int sizeX = maxX - minX + 1, sizeY = maxY - minY + 1, sizeZ = maxZ - minZ + 1;
+
+        int airId = Block.getRawIdFromState(Blocks.AIR.getDefaultState());
+        int[] ids = new int[sizeX * sizeY * sizeZ];
+        // anything we don't overwrite below is unloaded, out of the world, an empty section or outside the snapshot
+        Arrays.fill(ids, airId);
+        IntSet palette = new IntOpenHashSet();
+        palette.add(airId);
+
+        for (Long2ObjectMap.Entry<PalettedContainer<BlockState>> entry : snapshot.getSections().long2ObjectEntrySet()) {
+            long sectionPos = entry.getLongKey();
+            int baseX = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(sectionPos));
+            int baseY = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(sectionPos));
+            int baseZ = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(sectionPos));
+            int fromX = Math.max(minX, baseX), toX = Math.min(maxX, baseX + 15);
+            int fromY = Math.max(minY, baseY), toY = Math.min(maxY, baseY + 15);
+            int fromZ = Math.max(minZ, baseZ), toZ = Math.min(maxZ, baseZ + 15);
+            if (fromX > toX || fromY > toY || fromZ > toZ) {
+                continue;
+            }
+            PalettedContainer<BlockState> container = entry.getValue();
+
+            BlockState lastState = null;
+            int lastId = airId;
+            for (int y = fromY; y <= toY; y++) {
+                for (int z = fromZ; z <= toZ; z++) {
+                    int index = ((y - minY) * sizeZ + (z - minZ)) * sizeX + (fromX - minX);
+                    for (int x = fromX; x <= toX; x++, index++) {
+                        BlockState state = container.get(x & 15, y & 15, z & 15);
+                        if (state != lastState) {
+                            lastState = state;
+                            lastId = Block.getRawIdFromState(state);
+                            palette.add(lastId);
+                        }
+                        ids[index] = lastId;
+                    }
+                }
+            }
+        }
+
+        int[] paletteArray = palette.toIntArray();
+        Arrays.sort(paletteArray);
+        return new ScriptBlockRegion(minX, minY, minZ, sizeX, sizeY, sizeZ, ids, paletteArray);
+    }
+
+    private static void checkVolume(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if ((long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1) > MAX_VOLUME) {
+            throw new IllegalArgumentException("Region too large");
+        }
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    /**
+     * The block state ids in y, z, x order, i.e. the index of (x, y, z) is
+     * ((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX)
+     */
+    public int[] getIds() {
+        return ids;
+    }
+
+    public int[] getPalette() {
+        return palette;
+    }
+
+    public int getIndex(int x, int y, int z) {
+        x -= minX;
+        y -= minY;
+        z -= minZ;
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+            return -1;
+        }
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    public int getId(int x, int y, int z) {
+        int index = getIndex(x, y, z);
+        if (index == -1) {
+            throw new IndexOutOfBoundsException("Position is outside of the region");
+        }
+        return ids[index];
+    }
+
+    public String getBlock(int x, int y, int z) {
+        return getBlockName(getId(x, y, z));
+    }
+
+    public String getBlockName(int id) {
+        return RegistryNames.blockName(stateFromId(id).getBlock());
+    }
+
+    public Object getBlockState(int id) {
+        return BeanWrapper.wrap(new ScriptBlockState(stateFromId(id)));
+    }
+
+    private static BlockState stateFromId(int id) {
+        BlockState state = Block.getStateFromRawId(id);
+        if (state == null) {
+            throw new IllegalArgumentException("No such block state id: " + id);
+        }
+        return state;
+    }
+}
@@ -1,22 +1,19 @@
 package net.earthcomputer.clientcommands.script;
 
-import com.google.common.collect.Lists;
 import net.earthcomputer.clientcommands.script.ducks.IMaterial;
 import net.earthcomputer.clientcommands.script.mixin.AbstractBlockAccessor;
 import net.earthcomputer.clientcommands.script.mixin.AbstractBlockSettingsAccessor;
 import net.earthcomputer.clientcommands.script.mixin.FireBlockAccessor;
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.block.FallingBlock;
-import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.network.ClientPlayNetworkHandler;
-import net.minecraft.state.property.Property;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.registry.Registry;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 @SuppressWarnings("unused")
 public class ScriptBlockState {
@@ -32,6 +29,21 @@ public class ScriptBlockState {
         return BeanWrapper.wrap(uncheckedDefaultState(block));
     }
 
+    public static Object fromId(int id) {
+        BlockState state = Block.STATE_IDS.get(id);
+        if (state == null)
+            throw new IllegalArgumentException("No such block state id: " + id);
+        return BeanWrapper.wrap(new ScriptBlockState(state));
+    }
+
+    public static int blockIdOf(String block) {
+        return RegistryNames.blockId(block);
+    }
+
+    public static String blockNameOf(int id) {
+        return RegistryNames.blockName(id);
+    }
+
     BlockState state;
 
     ScriptBlockState(BlockState state) {
@@ -39,22 +51,23 @@ public class ScriptBlockState {
     }
 
     public String getBlock() {
-        return ScriptUtil.simplifyIdentifier(Registry.BLOCK.getId(state.getBlock()));
+        return RegistryNames.blockName(state.getBlock());
+    }
+
+    public int getId() {
+        return Block.getRawIdFromState(state);
+    }
+
+    public int getBlockId() {
+        return Registry.BLOCK.getRawId(state.getBlock());
     }
 
     public Object getProperty(String property) {
-        for (Property<?> propertyObj : state.getProperties()) {
-            if (propertyObj.getName().equals(property)) {
-                Object val = state.get(propertyObj);
-                if (val instanceof Boolean)
-                    return val;
-                if (val instanceof Number)
-                    return val;
-                else
-                    return propertyGetName(propertyObj, val);
-            }
-        }
-        return null;
+        return BlockProperties.of(state.getBlock()).get(state, property);
+    }
+
+    public Map<String, Object> getProperties() {
+        return BlockProperties.of(state.getBlock()).getAll(state);
     }
 
     public int getLuminance() {
@@ -78,7 +91,7 @@ public class ScriptBlockState {
     }
 
     public List<String> getStateProperties() {
-        return Lists.transform(new ArrayList<>(state.getProperties()), Property::getName);
+        return BlockProperties.of(state.getBlock()).getNames();
     }
 
     public String getLootTable() {
@@ -90,7 +103,11 @@ public class ScriptBlockState {
     }
 
     public String getItem() {
-        return ScriptUtil.simplifyIdentifier(Registry.ITEM.getId(state.getBlock().asItem()));
+        return RegistryNames.itemName(state.getBlock().asItem());
+    }
+
+    public int getItemId() {
+        return Registry.ITEM.getRawId(state.getBlock().asItem());
     }
 
     public int getMaterialId() {
@@ -147,16 +164,11 @@ public class ScriptBlockState {
     }
 
     public List<String> getTags() {
-        ClientPlayNetworkHandler networkHandler = MinecraftClient.getInstance().getNetworkHandler();
-        if (networkHandler == null) {
-            return new ArrayList<>();
-        }
-        return state.streamTags().map(tag -> ScriptUtil.simplifyIdentifier(tag.id())).toList();
+        return TagIndex.getTags(state);
     }
 
-    @SuppressWarnings("unchecked")
-    private static <T extends Comparable<T>> String propertyGetName(Property<T> prop, Object val) {
-        return prop.name((T) val);
+    public boolean hasTag(String tag) {
+        return TagIndex.isIn(state, tag);
     }
 
 }
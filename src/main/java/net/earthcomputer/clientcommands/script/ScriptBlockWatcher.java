@@ -0,0 +1,255 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+@SuppressWarnings("unused")
+public class ScriptBlockWatcher {
+    private static final int MAX_SECTIONS = 32 * 32 * 24;
+    // the most changed positions a watcher holds before further positions are dropped, in case the script stops polling
+    private static final int MAX_PENDING_CHANGES = 1 << 16;
+    private static final Object LOCK = new Object();
+    // chunk section pos -> watchers whose box intersects that section
+    private static final Long2ObjectMap<List<ScriptBlockWatcher>> watchersBySection = new Long2ObjectOpenHashMap<>();
+    private static final List<ScriptBlockWatcher> allWatchers = new ArrayList<>();
+
+    private final BlockBox box;
+    private final Predicate<BlockState> matcher;
+    // whether the matcher calls into the script, so it can't be called on the client thread
+    private final boolean matcherCallsScript;
+    private final ScriptManager.ThreadInstance owner;
+    private volatile boolean closed;
+
+    // the block state raw ids the matcher has been asked about, and which of those match. Guarded by this
+    private final BitSet knownStates = new BitSet();
+    private final BitSet matchingStates = new BitSet();
+
+    // pos -> {old state, new state}. Guarded by this
+    private Long2ObjectLinkedOpenHashMap<BlockState[]> currentTick = new Long2ObjectLinkedOpenHashMap<>();
+    private Long2ObjectLinkedOpenHashMap<BlockState[]> ready = new Long2ObjectLinkedOpenHashMap<>();
+    private int readyTicks;
+    private int dropped;
+
+    private ScriptBlockWatcher(BlockBox box, Predicate<BlockState> matcher, boolean matcherCallsScript, ScriptManager.ThreadInstance owner) {
+        this.box = box;
+        this.matcher = matcher;
+        this.matcherCallsScript = matcherCallsScript;
+        this.owner = owner;
+    }
+
+    static ScriptBlockWatcher create(BlockBox box, Predicate<BlockState> matcher, boolean matcherCallsScript) {
+        long sectionCount = (long) (ChunkSectionPos.getSectionCoord(box.getMaxX()) - ChunkSectionPos.getSectionCoord(box.getMinX()) + 1)
+                * (ChunkSectionPos.getSectionCoord(box.getMaxY()) - ChunkSectionPos.getSectionCoord(box.getMinY()) + 1)
+                * (ChunkSectionPos.getSectionCoord(box.getMaxZ()) - ChunkSectionPos.getSectionCoord(box.getMinZ()) + 1);
+        if (sectionCount > MAX_SECTIONS)
+            throw new IllegalArgumentException("Box too large");
+        ScriptBlockWatcher watcher = new ScriptBlockWatcher(box, matcher, matcherCallsScript, ScriptManager.currentThread());
+        synchronized (LOCK) {
+            allWatchers.add(watcher);
+            forEachSection(box, section -> watchersBySection.computeIfAbsent(section, k -> new ArrayList<>(1)).add(watcher));
+        }
+        return watcher;
+    }
+
+    public static void onBlockChange(BlockPos pos, BlockState oldState, BlockState newState) {
+        List<ScriptBlockWatcher> watchers;
+        synchronized (LOCK) {
+            if (watchersBySection.isEmpty()) {
+                return;
+            }
+            watchers = watchersBySection.get(ChunkSectionPos.asLong(ChunkSectionPos.getSectionCoord(pos.getX()), ChunkSectionPos.getSectionCoord(pos.getY()), ChunkSectionPos.getSectionCoord(pos.getZ())));
+            if (watchers == null) {
+                return;
+            }
+            watchers = new ArrayList<>(watchers);
+        }
+        for (ScriptBlockWatcher watcher : watchers) {
+            if (watcher.box.contains(pos)) {
+                watcher.addChange(pos.asLong(), oldState, newState);
+            }
+        }
+    }
+
+    public static void onTick() {
+        List<ScriptBlockWatcher> watchers;
+        synchronized (LOCK) {
+            if (allWatchers.isEmpty()) {
+                return;
+            }
+            watchers = new ArrayList<>(allWatchers);
+        }
+        for (ScriptBlockWatcher watcher : watchers) {
+            if (watcher.owner != null && (!watcher.owner.running || watcher.owner.isKilled())) {
+                watcher.close();
+            } else {
+                watcher.endTick();
+            }
+        }
+    }
+
+    private synchronized void addChange(long pos, BlockState oldState, BlockState newState) {
+        BlockState[] change = currentTick.get(pos);
+        if (change == null) {
+            // filter here, so that changes the script isn't interested in don't use up the space for the ones it is
+            if (!mayMatch(oldState) && !mayMatch(newState)) {
+                return;
+            }
+            if (currentTick.size() >= MAX_PENDING_CHANGES) {
+                dropped++;
+                return;
+            }
+            currentTick.put(pos, new BlockState[] {oldState, newState});
+        } else {
+            change[1] = newState;
+        }
+    }
+
+    private synchronized void endTick() {
+        if (currentTick.isEmpty()) {
+            return;
+        }
+        // coalesce with any batch the script hasn't picked up yet
+        for (Long2ObjectMap.Entry<BlockState[]> entry : currentTick.long2ObjectEntrySet()) {
+            BlockState[] existing = ready.get(entry.getLongKey());
+            if (existing == null) {
+                if (ready.size() >= MAX_PENDING_CHANGES) {
+                    dropped++;
+                    continue;
+                }
+                ready.put(entry.getLongKey(), entry.getValue());
+            } else {
+                existing[1] = entry.getValue()[1];
+            }
+        }
+        readyTicks++;
+        currentTick = new Long2ObjectLinkedOpenHashMap<>();
+    }
+
+    /**
+     * Returns the changes since the last poll, up to the end of the last tick, or null if there were none
+     */
+    public Object poll() {
+        Long2ObjectLinkedOpenHashMap<BlockState[]> changes;
+        int ticks;
+        int droppedChanges;
+        synchronized (this) {
+            if (ready.isEmpty() && dropped == 0) {
+                return null;
+            }
+            changes = ready;
+            ticks = readyTicks;
+            droppedChanges = dropped;
+            ready = new Long2ObjectLinkedOpenHashMap<>();
+            readyTicks = 0;
+            dropped = 0;
+        }
+
+        int[] positions = new int[changes.size() * 3];
+        int[] oldIds = new int[changes.size()];
+        int[] newIds = new int[changes.size()];
+        int count = 0;
+        for (Long2ObjectMap.Entry<BlockState[]> entry : changes.long2ObjectEntrySet()) {
+            BlockState oldState = entry.getValue()[0];
+            BlockState newState = entry.getValue()[1];
+            if (oldState == newState || (!matches(oldState) && !matches(newState))) {
+                continue;
+            }
+            long pos = entry.getLongKey();
+            positions[count * 3] = BlockPos.unpackLongX(pos);
+            positions[count * 3 + 1] = BlockPos.unpackLongY(pos);
+            positions[count * 3 + 2] = BlockPos.unpackLongZ(pos);
+            oldIds[count] = Block.getRawIdFromState(oldState);
+            newIds[count] = Block.getRawIdFromState(newState);
+            count++;
+        }
+        if (count == 0 && droppedChanges == 0) {
+            return null;
+        }
+        if (count < changes.size()) {
+            positions = Arrays.copyOf(positions, count * 3);
+            oldIds = Arrays.copyOf(oldIds, count);
+            newIds = Arrays.copyOf(newIds, count);
+        }
+        return BeanWrapper.wrap(new ScriptBlockChangeBatch(count, ticks, droppedChanges, positions, oldIds, newIds));
+    }
+
+    /**
+     * Called on the client thread, holding the monitor. A matcher which calls into the script can only be asked on the
+     * script thread, so states it hasn't been asked about yet are kept until the script polls
+     */
+    private boolean mayMatch(BlockState state) {
+        int id = Block.getRawIdFromState(state);
+        if (knownStates.get(id)) {
+            return matchingStates.get(id);
+        }
+        if (matcherCallsScript) {
+            return true;
+        }
+        boolean result = matcher.test(state);
+        knownStates.set(id);
+        matchingStates.set(id, result);
+        return result;
+    }
+
+    private boolean matches(BlockState state) {
+        // only called from the script thread, so the matcher may call into the script, but not holding the monitor
+        int id = Block.getRawIdFromState(state);
+        synchronized (this) {
+            if (knownStates.get(id)) {
+                return matchingStates.get(id);
+            }
+        }
+        boolean result = matcher.test(state);
+        synchronized (this) {
+            knownStates.set(id);
+            matchingStates.set(id, result);
+        }
+        return result;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void close() {
+        synchronized (LOCK) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            allWatchers.remove(this);
+            forEachSection(box, section -> {
+                List<ScriptBlockWatcher> watchers = watchersBySection.get(section);
+                if (watchers != null) {
+                    watchers.remove(this);
+                    if (watchers.isEmpty()) {
+                        watchersBySection.remove(section);
+                    }
+                }
+            });
+        }
+    }
+
+    private static void forEachSection(BlockBox box, LongConsumer consumer) {
+        for (int x = ChunkSectionPos.getSectionCoord(box.getMinX()); x <= ChunkSectionPos.getSectionCoord(box.getMaxX()); x++) {
+            for (int y = ChunkSectionPos.getSectionCoord(box.getMinY()); y <= ChunkSectionPos.getSectionCoord(box.getMaxY()); y++) {
+                for (int z = ChunkSectionPos.getSectionCoord(box.getMinZ()); z <= ChunkSectionPos.getSectionCoord(box.getMaxZ()); z++) {
+                    consumer.accept(ChunkSectionPos.asLong(x, y, z));
+                }
+            }
+        }
+    }
+}
@@ -14,6 +14,7 @@ import net.minecraft.entity.Entity;
 import net.minecraft.text.LiteralText;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -41,6 +42,15 @@ class ScriptBuiltins {
             .put("ItemStack", ScriptItemStack.class)
             .build();
 
+    private static final int MAX_CACHED_SELECTORS = 256;
+    // Selectors are immutable once parsed, so they can be shared. Guarded by itself
+    private static final Map<String, CEntitySelector> selectorCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CEntitySelector> eldest) {
+            return size() > MAX_CACHED_SELECTORS;
+        }
+    };
+
     public static Map<String, Object> getGlobalFunctions() {
         return GLOBAL_FUNCTIONS;
     }
@@ -58,24 +68,42 @@ class ScriptBuiltins {
             throw new IllegalStateException("Not ingame");
         }
         if (command.startsWith("@")) {
-            StringReader reader = new StringReader(command);
-            try {
-                CEntitySelector selector = CEntityArgumentType.entities().parse(reader);
-                if (reader.getRemainingLength() != 0)
-                    throw CommandSyntaxException.BUILT_IN_EXCEPTIONS.dispatcherUnknownCommand().createWithContext(reader);
-                //noinspection ConstantConditions
-                List<? extends Entity> entities = selector.getEntities((FabricClientCommandSource) new ClientCommandSource(MinecraftClient.getInstance().getNetworkHandler(), MinecraftClient.getInstance()));
-                List<Object> ret = new ArrayList<>(entities.size());
-                for (Entity entity : entities)
-                    ret.add(ScriptEntity.create(entity));
-                return ret;
-            } catch (CommandSyntaxException e) {
-                throw new IllegalArgumentException("Invalid selector syntax", e);
-            }
+            List<? extends Entity> entities = selectEntities(command);
+            List<Object> ret = new ArrayList<>(entities.size());
+            for (Entity entity : entities)
+                ret.add(ScriptEntity.create(entity));
+            return ret;
         }
         return ClientCommandInternals.executeCommand(command);
     }
 
+    static List<? extends Entity> selectEntities(String selectorString) {
+        try {
+            CEntitySelector selector = parseSelector(selectorString);
+            //noinspection ConstantConditions
+            return selector.getEntities((FabricClientCommandSource) new ClientCommandSource(MinecraftClient.getInstance().getNetworkHandler(), MinecraftClient.getInstance()));
+        } catch (CommandSyntaxException e) {
+            throw new IllegalArgumentException("Invalid selector syntax", e);
+        }
+    }
+
+    static CEntitySelector parseSelector(String selectorString) throws CommandSyntaxException {
+        synchronized (selectorCache) {
+            CEntitySelector selector = selectorCache.get(selectorString);
+            if (selector != null) {
+                return selector;
+            }
+        }
+        StringReader reader = new StringReader(selectorString);
+        CEntitySelector selector = CEntityArgumentType.entities().parse(reader);
+        if (reader.getRemainingLength() != 0)
+            throw CommandSyntaxException.BUILT_IN_EXCEPTIONS.dispatcherUnknownCommand().createWithContext(reader);
+        synchronized (selectorCache) {
+            selectorCache.put(selectorString, selector);
+        }
+        return selector;
+    }
+
     public static void print(String message) {
         if (MinecraftClient.getInstance().player == null) {
             throw new IllegalStateException("Not ingame");
@@ -0,0 +1,352 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.network.PlayerListEntry;
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.packet.c2s.play.ClickSlotC2SPacket;
+import net.minecraft.screen.AbstractRecipeScreenHandler;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.screen.slot.SlotActionType;
+import org.graalvm.polyglot.Value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Queues up inventory clicks and sends them several at a time, rather than waiting a tick between each click.
+ *
+ * <p>The client applies every click to its own copy of the inventory as it sends it, and tells the server which slots
+ * it changed. Since 1.17 the server only replies to a click if its result differs from the client's, and every click
+ * carries the screen handler's revision, the revision of the last update the client received. If that isn't the
+ * server's revision, the server sends the whole inventory instead of only the slots which differ.</p>
+ *
+ * <p>Each click keeps its own prediction of the slots it changed, together with the revision it was sent with. A slot
+ * update from the server is only compared with the predictions of the clicks sent before the client saw that revision,
+ * and slots none of them changed, such as a crafting result or a furnace filling its output, are left alone. The
+ * server doesn't acknowledge clicks it agrees with, so each batch of clicks is followed by a sync request, a click
+ * which does nothing sent with a revision the server can't have. The server answers it with the whole inventory once
+ * it has processed the batch, which confirms the batch if it matches the predictions. If the server disagrees instead,
+ * no more clicks are sent and the transaction asks for another sync and waits for it, so the script sees the server's
+ * copy of the inventory afterwards.</p>
+ */
+@SuppressWarnings("unused")
+public class ScriptClickTransaction {
+    private static final int DEFAULT_WINDOW = 8;
+    private static final int REVISION_MASK = 32767;
+    // the prediction key of the cursor stack
+    private static final int CURSOR = -1;
+    private static final List<ScriptClickTransaction> executing = new ArrayList<>();
+
+    private final ScriptInventory inventory;
+    private final int window;
+    private final int settleTicks;
+    private final List<Click> clicks = new ArrayList<>();
+
+    private int sent;
+    private int confirmed;
+    private boolean executed;
+
+    private volatile int syncId = -2;
+    // a slot the server fills in by itself, which the client doesn't predict
+    private volatile int resultSlot = -1;
+    // Guarded by this. The clicks the server hasn't confirmed yet, oldest first
+    private final Deque<SentClick> inFlight = new ArrayDeque<>();
+    // Guarded by this. Whether the server sent the whole inventory and it matched the predictions of all clicks in flight
+    private boolean batchConfirmed;
+    // Guarded by this. Whether the server sent the whole inventory since the last sync request
+    private boolean synced;
+    private volatile boolean diverged;
+
+    ScriptClickTransaction(ScriptInventory inventory, Value options) {
+        this.inventory = inventory;
+        this.window = options != null && options.hasMember("window") ? options.getMember("window").asInt() : DEFAULT_WINDOW;
+        if (window < 1)
+            throw new IllegalArgumentException("The window must be at least 1");
+        this.settleTicks = options != null && options.hasMember("settleTicks") ? options.getMember("settleTicks").asInt() : estimateSettleTicks() * 2;
+        if (settleTicks < 0)
+            throw new IllegalArgumentException("Negative settle ticks");
+    }
+
+    /**
+     * How many ticks it takes the server to answer a click. This is the round trip time plus a margin for the server
+     * tick the click lands in.
+     */
+    static int estimateSettleTicks() {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        assert player != null;
+        PlayerListEntry entry = player.networkHandler.getPlayerListEntry(player.getUuid());
+        int latency = entry == null ? 0 : entry.getLatency();
+        return latency / 50 + 2;
+    }
+
+    public void click(Integer slot) {
+        click(slot, null);
+    }
+
+    public void click(Integer slot, Value options) {
+        if (executed)
+            throw new IllegalStateException("Transaction has already been executed");
+        clicks.add(inventory.toClick(slot, options));
+    }
+
+    void addClicks(List<Click> clicks) {
+        if (executed)
+            throw new IllegalStateException("Transaction has already been executed");
+        this.clicks.addAll(clicks);
+    }
+
+    public int getSize() {
+        return clicks.size();
+    }
+
+    public int getSent() {
+        return sent;
+    }
+
+    public int getConfirmed() {
+        return confirmed;
+    }
+
+    public boolean isDiverged() {
+        return diverged;
+    }
+
+    /**
+     * Sends the queued clicks in batches of at most window clicks, waiting for the server to confirm each batch before
+     * sending the next. Blocks until all the clicks have been confirmed, or until the server disagrees with one of
+     * them. Returns whether all clicks were confirmed.
+     */
+    public boolean execute() {
+        if (executed)
+            throw new IllegalStateException("Transaction has already been executed");
+        executed = true;
+
+        MinecraftClient mc = MinecraftClient.getInstance();
+        ClientPlayerEntity player = mc.player;
+        assert player != null;
+        ScreenHandler handler = player.currentScreenHandler;
+        syncId = handler.syncId;
+        resultSlot = handler instanceof AbstractRecipeScreenHandler<?> recipeHandler ? recipeHandler.getCraftingResultSlotIndex() : -1;
+        synchronized (executing) {
+            executing.add(this);
+        }
+
+        boolean screenChanged = false;
+        try {
+            boolean awaitingBatch = false;
+            int batchSentTick = 0;
+            int tick = 0;
+            while (true) {
+                synchronized (this) {
+                    if (awaitingBatch && batchConfirmed) {
+                        confirmed += inFlight.size();
+                        inFlight.clear();
+                        awaitingBatch = false;
+                    }
+                }
+                if (diverged) {
+                    break;
+                }
+                if (player.currentScreenHandler != handler) {
+                    screenChanged = true;
+                    break;
+                }
+                if (awaitingBatch) {
+                    if (tick - batchSentTick > settleTicks) {
+                        // the server's copy of the inventory never matched, so it must have done something else
+                        diverged = true;
+                        break;
+                    }
+                } else if (sent < clicks.size()) {
+                    sendBatch(mc, player, handler);
+                    awaitingBatch = true;
+                    batchSentTick = tick;
+                } else {
+                    break;
+                }
+                ScriptManager.passTick();
+                tick++;
+            }
+
+            if (diverged && player.currentScreenHandler == handler) {
+                // make sure the script sees the server's copy of the inventory before it plans again
+                requestSync(player, handler);
+                for (int i = 0; i < settleTicks && !isSynced(); i++) {
+                    ScriptManager.passTick();
+                }
+            }
+        } finally {
+            synchronized (executing) {
+                executing.remove(this);
+            }
+        }
+
+        return !diverged && !screenChanged;
+    }
+
+    private void sendBatch(MinecraftClient mc, ClientPlayerEntity player, ScreenHandler handler) {
+        int batchEnd = Math.min(clicks.size(), sent + window);
+        while (sent < batchEnd || (sent < clicks.size() && isInQuickCraft(clicks.get(sent - 1)))) {
+            Click click = clicks.get(sent++);
+            ItemStack[] before = copyStacks(handler);
+            ItemStack cursorBefore = handler.getCursorStack().copy();
+            int revision = handler.getRevision();
+            mc.interactionManager.clickSlot(handler.syncId, click.slotId(), click.button(), click.type(), player);
+
+            Int2ObjectMap<ItemStack> predicted = new Int2ObjectOpenHashMap<>();
+            for (int i = 0; i < before.length; i++) {
+                ItemStack stack = handler.slots.get(i).getStack();
+                if (!ItemStack.areEqual(before[i], stack)) {
+                    predicted.put(i, stack.copy());
+                }
+            }
+            if (!ItemStack.areEqual(cursorBefore, handler.getCursorStack())) {
+                predicted.put(CURSOR, handler.getCursorStack().copy());
+            }
+            synchronized (this) {
+                inFlight.addLast(new SentClick(revision, predicted));
+                batchConfirmed = false;
+            }
+        }
+        requestSync(player, handler);
+    }
+
+    /**
+     * Whether the click is part of a drag which hasn't ended yet. The sync request would end the drag on the server
+     */
+    private static boolean isInQuickCraft(Click click) {
+        return click.type() == SlotActionType.QUICK_CRAFT && ScreenHandler.unpackQuickCraftStage(click.button()) != 2;
+    }
+
+    /**
+     * Sends a click which does nothing, with a revision which doesn't match the server's, so that the server answers
+     * with the whole inventory once it has processed the clicks before it. Middle clicking outside the window does
+     * nothing even in creative mode, and doesn't depend on the cursor stack, which the server may disagree about.
+     */
+    private void requestSync(ClientPlayerEntity player, ScreenHandler handler) {
+        synchronized (this) {
+            synced = false;
+        }
+        int staleRevision = (handler.getRevision() - 1) & REVISION_MASK;
+        player.networkHandler.sendPacket(new ClickSlotC2SPacket(handler.syncId, staleRevision, ScreenHandler.EMPTY_SPACE_SLOT_INDEX, 0,
+                SlotActionType.CLONE, handler.getCursorStack().copy(), Int2ObjectMaps.emptyMap()));
+    }
+
+    private synchronized boolean isSynced() {
+        return synced;
+    }
+
+    private static ItemStack[] copyStacks(ScreenHandler handler) {
+        ItemStack[] stacks = new ItemStack[handler.slots.size()];
+        for (int i = 0; i < stacks.length; i++) {
+            stacks[i] = handler.slots.get(i).getStack().copy();
+        }
+        return stacks;
+    }
+
+    static void onServerSlotUpdate(int syncId, int revision, int slot, ItemStack stack) {
+        forEachExecuting(transaction -> {
+            if (syncId == -1) {
+                transaction.checkSlot(revision, CURSOR, stack);
+            } else if (syncId == transaction.syncId) {
+                transaction.checkSlot(revision, slot, stack);
+            }
+        });
+    }
+
+    static void onServerInventory(int syncId, int revision, List<ItemStack> contents, ItemStack cursor) {
+        forEachExecuting(transaction -> {
+            if (syncId == transaction.syncId) {
+                transaction.checkInventory(revision, contents, cursor);
+            }
+        });
+    }
+
+    private static void forEachExecuting(Consumer<ScriptClickTransaction> action) {
+        List<ScriptClickTransaction> transactions;
+        synchronized (executing) {
+            if (executing.isEmpty()) {
+                return;
+            }
+            transactions = new ArrayList<>(executing);
+        }
+        transactions.forEach(action);
+    }
+
+    /**
+     * Whether a click sent with the given revision was sent before the client received the update with the other
+     * revision. Revisions wrap around, but never get far ahead of each other
+     */
+    private static boolean isSentBefore(int clickRevision, int updateRevision) {
+        int diff = (updateRevision - clickRevision) & REVISION_MASK;
+        return diff != 0 && diff <= REVISION_MASK / 2;
+    }
+
+    /**
+     * Checks a slot the server sent against the prediction of the clicks sent before the client saw its revision
+     */
+    private synchronized void checkSlot(int revision, int slot, ItemStack stack) {
+        if (slot == resultSlot) {
+            return;
+        }
+        ItemStack expected = null;
+        for (SentClick click : inFlight) {
+            if (!isSentBefore(click.revision(), revision)) {
+                // the client already had this update when it sent the rest of the clicks
+                break;
+            }
+            ItemStack predicted = click.predicted().get(slot);
+            if (predicted != null) {
+                expected = predicted;
+            }
+        }
+        // if no click changed the slot, the server changed it by itself and the client already agrees
+        if (expected != null && !ItemStack.areEqual(stack, expected)) {
+            diverged = true;
+        }
+    }
+
+    /**
+     * Checks the whole inventory the server sent, which it does in answer to a sync request or to a click sent with an
+     * old revision. If it matches the latest prediction of every slot the clicks in flight changed, the server has
+     * processed all of them and agrees
+     */
+    private synchronized void checkInventory(int revision, List<ItemStack> contents, ItemStack cursor) {
+        synced = true;
+        if (inFlight.isEmpty() || !isSentBefore(inFlight.getLast().revision(), revision)) {
+            return;
+        }
+        Int2ObjectMap<ItemStack> expected = new Int2ObjectOpenHashMap<>();
+        for (SentClick click : inFlight) {
+            expected.putAll(click.predicted());
+        }
+        for (Int2ObjectMap.Entry<ItemStack> entry : expected.int2ObjectEntrySet()) {
+            int slot = entry.getIntKey();
+            if (slot == resultSlot) {
+                continue;
+            }
+            ItemStack actual = slot == CURSOR ? cursor : slot < contents.size() ? contents.get(slot) : ItemStack.EMPTY;
+            if (!ItemStack.areEqual(actual, entry.getValue())) {
+                // either a resync for a click in the middle of the batch, or the server disagrees. The answer to the
+                // sync request comes last, so keep waiting for it
+                return;
+            }
+        }
+        batchConfirmed = true;
+    }
+
+    record Click(int slotId, int button, SlotActionType type) {}
+
+    /**
+     * A click the server hasn't confirmed yet, with the revision it was sent with and the stacks of the slots it
+     * changed on the client
+     */
+    private record SentClick(int revision, Int2ObjectMap<ItemStack> predicted) {}
+}
@@ -0,0 +1,42 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.item.Item;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtString;
+
+@SuppressWarnings("unused")
+public class ScriptCraftStep {
+    private final CraftPlanner.Step step;
+
+    ScriptCraftStep(CraftPlanner.Step step) {
+        this.step = step;
+    }
+
+    public String getResult() {
+        return RegistryNames.itemName(step.recipe().output);
+    }
+
+    public int getCrafts() {
+        return step.crafts();
+    }
+
+    /**
+     * The number of items the crafts make
+     */
+    public int getCount() {
+        return step.crafts() * step.recipe().outputCount;
+    }
+
+    public String[] getPattern() {
+        return step.pattern();
+    }
+
+    public Object getIngredients() {
+        NbtCompound ingredients = new NbtCompound();
+        Item[] items = step.ingredients();
+        for (int group = 0; group < items.length; group++) {
+            ingredients.put(String.valueOf((char) ('A' + group)), NbtString.of(RegistryNames.itemName(items[group])));
+        }
+        return ScriptUtil.fromNbt(ingredients);
+    }
+}
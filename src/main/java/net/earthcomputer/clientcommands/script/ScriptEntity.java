@@ -5,18 +5,32 @@ import net.minecraft.client.world.ClientWorld;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.registry.Registry;
+import org.graalvm.polyglot.Value;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 @SuppressWarnings("unused")
 public class ScriptEntity {
 
+    // Wrapping is comparatively expensive and selectors are often run every tick, so reuse wrappers while the entity
+    // is alive. The wrapper only weakly references its entity, so this doesn't keep entities alive. Wrappers are
+    // mutable, so each script thread gets its own, which also means the map needs no locking.
+    private static final ThreadLocal<Map<Entity, Object>> wrappers = ThreadLocal.withInitial(WeakHashMap::new);
+
     private WeakReference<Entity> entity;
     private int entityId;
 
     static Object create(Entity entity) {
-        return BeanWrapper.wrap(createUnchecked(entity));
+        if (entity == null) {
+            return BeanWrapper.wrap(createUnchecked(null));
+        }
+        return wrappers.get().computeIfAbsent(entity, k -> BeanWrapper.wrap(createUnchecked(k)));
     }
 
     static ScriptEntity createUnchecked(Entity entity) {
@@ -109,6 +123,22 @@ public class ScriptEntity {
         return ScriptUtil.fromNbt(getEntity().writeNbt(new NbtCompound()));
     }
 
+    public Object getNbt(Value paths) {
+        return NbtPaths.projectEntity(paths, getEntity());
+    }
+
+    public List<Object> predictPositions(int ticks) {
+        return toScriptPositions(EntityPredictor.predict(getEntity(), ticks));
+    }
+
+    static List<Object> toScriptPositions(Vec3d[] positions) {
+        List<Object> ret = new ArrayList<>(positions.length);
+        for (Vec3d pos : positions) {
+            ret.add(BeanWrapper.wrap(new ScriptPosition(pos)));
+        }
+        return ret;
+    }
+
     @Override
     public int hashCode() {
         return entity.hashCode();
@@ -0,0 +1,77 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.Entity;
+
+@SuppressWarnings("unused")
+public class ScriptEntityEventBatch {
+    private final int count;
+    private final int ticks;
+    private final int dropped;
+    private final String[] kinds;
+    private final int[] ids;
+    private final String[] types;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+
+    ScriptEntityEventBatch(int count, int ticks, int dropped, String[] kinds, int[] ids, String[] types, double[] x, double[] y, double[] z) {
+        this.count = count;
+        this.ticks = ticks;
+        this.dropped = dropped;
+        this.kinds = kinds;
+        this.ids = ids;
+        this.types = types;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    public int getDropped() {
+        return dropped;
+    }
+
+    public String[] getKinds() {
+        return kinds;
+    }
+
+    public int[] getIds() {
+        return ids;
+    }
+
+    public String[] getTypes() {
+        return types;
+    }
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    public double[] getZ() {
+        return z;
+    }
+
+    /**
+     * Returns the entity of the given event, or null if it's no longer in the world
+     */
+    public Object getEntity(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException(index);
+        ClientWorld world = MinecraftClient.getInstance().world;
+        Entity entity = world == null ? null : world.getEntityById(ids[index]);
+        return entity == null ? null : ScriptEntity.create(entity);
+    }
+}
@@ -0,0 +1,265 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The positions and velocities of all entities in the world at the end of a tick, stored as columns. While scripts
+ * keep asking for snapshots, one is built on the client thread at the end of each tick and shared by all of them.
+ */
+@SuppressWarnings("unused")
+public class ScriptEntitySnapshot {
+    // keep building snapshots for this long after the last request, so that scripts asking every tick never wait
+    private static final int KEEP_BUILDING_TICKS = 20;
+
+    private static volatile ScriptEntitySnapshot latest;
+    private static volatile int tick;
+    private static volatile int lastRequestTick = Integer.MIN_VALUE / 2;
+
+    private final int snapshotTick;
+    private final int count;
+    private final int[] ids;
+    private final String[] types;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final double[] motionX;
+    private final double[] motionY;
+    private final double[] motionZ;
+    private final float[] yaw;
+    private final float[] pitch;
+    // entity id -> index. Only present on full snapshots
+    private final Int2IntMap indexById;
+
+    private ScriptEntitySnapshot(int snapshotTick, int count, Int2IntMap indexById) {
+        this.snapshotTick = snapshotTick;
+        this.count = count;
+        this.ids = new int[count];
+        this.types = new String[count];
+        this.x = new double[count];
+        this.y = new double[count];
+        this.z = new double[count];
+        this.motionX = new double[count];
+        this.motionY = new double[count];
+        this.motionZ = new double[count];
+        this.yaw = new float[count];
+        this.pitch = new float[count];
+        this.indexById = indexById;
+    }
+
+    static void onTick() {
+        tick++;
+        ClientWorld world = MinecraftClient.getInstance().world;
+        if (world != null && tick - lastRequestTick <= KEEP_BUILDING_TICKS) {
+            latest = build(world, tick);
+        } else {
+            latest = null;
+        }
+    }
+
+    /**
+     * Returns the snapshot of the last tick
+     */
+    static ScriptEntitySnapshot get(ClientWorld world) {
+        int currentTick = tick;
+        lastRequestTick = currentTick;
+        ScriptEntitySnapshot snapshot = latest;
+        if (snapshot == null || snapshot.snapshotTick != currentTick) {
+            // Nobody asked last tick. Scripts run while the client thread waits for them, so it's safe to build it here
+            latest = snapshot = build(world, currentTick);
+        }
+        return snapshot;
+    }
+
+    private static ScriptEntitySnapshot build(ClientWorld world, int tick) {
+        List<Entity> entities = new ArrayList<>(world.getRegularEntityCount());
+        for (Entity entity : world.getEntities()) {
+            entities.add(entity);
+        }
+        Int2IntMap indexById = new Int2IntOpenHashMap(entities.size());
+        indexById.defaultReturnValue(-1);
+        ScriptEntitySnapshot snapshot = new ScriptEntitySnapshot(tick, entities.size(), indexById);
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
+            Vec3d velocity = entity.getVelocity();
+            snapshot.ids[i] = entity.getId();
+            snapshot.types[i] = RegistryNames.entityTypeName(entity.getType());
+            snapshot.x[i] = entity.getX();
+            snapshot.y[i] = entity.getY();
+            snapshot.z[i] = entity.getZ();
+            snapshot.motionX[i] = velocity.x;
+            snapshot.motionY[i] = velocity.y;
+            snapshot.motionZ[i] = velocity.z;
+            snapshot.yaw[i] = entity.getYaw();
+            snapshot.pitch[i] = entity.getPitch();
+            indexById.put(entity.getId(), i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the rows of the snapshot within the given distance of the given position
+     */
+    ScriptEntitySnapshot withinRange(double centerX, double centerY, double centerZ, double range) {
+        double rangeSq = range * range;
+        IntList indices = new IntArrayList();
+        for (int i = 0; i < count; i++) {
+            double dx = x[i] - centerX, dy = y[i] - centerY, dz = z[i] - centerZ;
+            if (dx * dx + dy * dy + dz * dz <= rangeSq) {
+                indices.add(i);
+            }
+        }
+        return select(indices);
+    }
+
+    /**
+     * Returns the rows of the snapshot for the given entities, skipping entities which aren't in the snapshot
+     */
+    ScriptEntitySnapshot forEntities(List<? extends Entity> entities) {
+        IntList indices = new IntArrayList(entities.size());
+        for (Entity entity : entities) {
+            int index = indexById.get(entity.getId());
+            if (index != -1) {
+                indices.add(index);
+            }
+        }
+        return select(indices);
+    }
+
+    private ScriptEntitySnapshot select(IntList indices) {
+        ScriptEntitySnapshot ret = new ScriptEntitySnapshot(snapshotTick, indices.size(), null);
+        for (int i = 0; i < indices.size(); i++) {
+            int index = indices.getInt(i);
+            ret.ids[i] = ids[index];
+            ret.types[i] = types[index];
+            ret.x[i] = x[index];
+            ret.y[i] = y[index];
+            ret.z[i] = z[index];
+            ret.motionX[i] = motionX[index];
+            ret.motionY[i] = motionY[index];
+            ret.motionZ[i] = motionZ[index];
+            ret.yaw[i] = yaw[index];
+            ret.pitch[i] = pitch[index];
+        }
+        return ret;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    // The arrays are shared by every script reading this snapshot, so scripts only ever get copies of them
+    public int[] getIds() {
+        return ids.clone();
+    }
+
+    public String[] getTypes() {
+        return types.clone();
+    }
+
+    public double[] getX() {
+        return x.clone();
+    }
+
+    public double[] getY() {
+        return y.clone();
+    }
+
+    public double[] getZ() {
+        return z.clone();
+    }
+
+    public double[] getMotionX() {
+        return motionX.clone();
+    }
+
+    public double[] getMotionY() {
+        return motionY.clone();
+    }
+
+    public double[] getMotionZ() {
+        return motionZ.clone();
+    }
+
+    public float[] getYaw() {
+        return yaw.clone();
+    }
+
+    public float[] getPitch() {
+        return pitch.clone();
+    }
+
+    public int getIdAt(int index) {
+        checkIndex(index);
+        return ids[index];
+    }
+
+    public String getTypeAt(int index) {
+        checkIndex(index);
+        return types[index];
+    }
+
+    public double getXAt(int index) {
+        checkIndex(index);
+        return x[index];
+    }
+
+    public double getYAt(int index) {
+        checkIndex(index);
+        return y[index];
+    }
+
+    public double getZAt(int index) {
+        checkIndex(index);
+        return z[index];
+    }
+
+    public double getMotionXAt(int index) {
+        checkIndex(index);
+        return motionX[index];
+    }
+
+    public double getMotionYAt(int index) {
+        checkIndex(index);
+        return motionY[index];
+    }
+
+    public double getMotionZAt(int index) {
+        checkIndex(index);
+        return motionZ[index];
+    }
+
+    public float getYawAt(int index) {
+        checkIndex(index);
+        return yaw[index];
+    }
+
+    public float getPitchAt(int index) {
+        checkIndex(index);
+        return pitch[index];
+    }
+
+    /**
+     * Returns the entity at the given index, or null if it's no longer in the world
+     */
+    public Object getEntity(int index) {
+        checkIndex(index);
+        ClientWorld world = MinecraftClient.getInstance().world;
+        Entity entity = world == null ? null : world.getEntityById(ids[index]);
+        return entity == null ? null : ScriptEntity.create(entity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException(index);
+    }
+}
@@ -0,0 +1,209 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+@SuppressWarnings("unused")
+public class ScriptEntityWatcher {
+    private static final List<ScriptEntityWatcher> allWatchers = new ArrayList<>();
+    // the most entities a watcher holds events for before further events are dropped, in case the script stops polling
+    private static final int MAX_PENDING_EVENTS = 4096;
+    // only accessed on the client thread
+    private static final IntSet addedThisTick = new IntOpenHashSet();
+
+    private final Box box;
+    private final Predicate<Entity> matcher;
+    private final double moveThresholdSq;
+    private final ScriptManager.ThreadInstance owner;
+    private volatile boolean closed;
+
+    // entity id -> last reported event. Only accessed on the client thread
+    private final Int2ObjectMap<Event> tracked = new Int2ObjectOpenHashMap<>();
+
+    // entity id -> the net event since the last poll, in the order the entities were first changed. Guarded by this
+    private Int2ObjectLinkedOpenHashMap<Event> pending = new Int2ObjectLinkedOpenHashMap<>();
+    private int pendingTicks;
+    private int dropped;
+
+    private ScriptEntityWatcher(Box box, Predicate<Entity> matcher, double moveThreshold, ScriptManager.ThreadInstance owner) {
+        this.box = box;
+        this.matcher = matcher;
+        this.moveThresholdSq = moveThreshold * moveThreshold;
+        this.owner = owner;
+    }
+
+    static ScriptEntityWatcher create(Box box, Predicate<Entity> matcher, double moveThreshold) {
+        if (moveThreshold < 0)
+            throw new IllegalArgumentException("Negative move threshold");
+        ScriptEntityWatcher watcher = new ScriptEntityWatcher(box, matcher, moveThreshold, ScriptManager.currentThread());
+        synchronized (allWatchers) {
+            allWatchers.add(watcher);
+        }
+        return watcher;
+    }
+
+    static void onEntityAdded(Entity entity) {
+        addedThisTick.add(entity.getId());
+    }
+
+    static void onTick() {
+        List<ScriptEntityWatcher> watchers;
+        synchronized (allWatchers) {
+            watchers = allWatchers.isEmpty() ? null : new ArrayList<>(allWatchers);
+        }
+        ClientWorld world = MinecraftClient.getInstance().world;
+        if (watchers != null && world != null) {
+            for (ScriptEntityWatcher watcher : watchers) {
+                if (watcher.owner != null && (!watcher.owner.running || watcher.owner.isKilled())) {
+                    watcher.close();
+                } else {
+                    watcher.update(world);
+                }
+            }
+        }
+        addedThisTick.clear();
+    }
+
+    private void update(ClientWorld world) {
+        List<Event> events = new ArrayList<>();
+        IntSet seen = new IntOpenHashSet();
+        for (Entity entity : world.getOtherEntities(null, box, matcher)) {
+            int id = entity.getId();
+            seen.add(id);
+            Vec3d pos = entity.getPos();
+            Event last = tracked.get(id);
+            Event event = null;
+            if (last == null) {
+                event = new Event(addedThisTick.contains(id) ? "spawn" : "enter", id, RegistryNames.entityTypeName(entity.getType()), pos);
+            } else if (!pos.equals(last.pos()) && pos.squaredDistanceTo(last.pos()) >= moveThresholdSq) {
+                event = new Event("move", id, last.type(), pos);
+            }
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        for (Event last : tracked.values()) {
+            if (!seen.contains(last.id())) {
+                // the entity is either still in the world but outside the box, or gone from the world entirely
+                Entity entity = world.getEntityById(last.id());
+                if (entity == null || entity.isRemoved()) {
+                    events.add(new Event("remove", last.id(), last.type(), last.pos()));
+                } else {
+                    events.add(new Event("leave", last.id(), last.type(), entity.getPos()));
+                }
+            }
+        }
+
+        List<Event> accepted = new ArrayList<>(events.size());
+        synchronized (this) {
+            for (Event event : events) {
+                Event previous = pending.get(event.id());
+                if (previous == null) {
+                    if (pending.size() >= MAX_PENDING_EVENTS) {
+                        dropped++;
+                    } else {
+                        pending.put(event.id(), event);
+                        accepted.add(event);
+                    }
+                    continue;
+                }
+                Event merged = merge(previous, event);
+                if (merged == null) {
+                    pending.remove(event.id());
+                } else {
+                    pending.put(event.id(), merged);
+                }
+                accepted.add(event);
+            }
+            pendingTicks++;
+        }
+
+        // Only events the script will see update what it knows about. A dropped event leaves the entity as it was, so
+        // the event is worked out again next tick, rather than the script hearing about a leave without an enter
+        for (Event event : accepted) {
+            if (event.kind().equals("leave") || event.kind().equals("remove")) {
+                tracked.remove(event.id());
+            } else {
+                tracked.put(event.id(), event);
+            }
+        }
+    }
+
+    /**
+     * Combines two events of the same entity into the one event the script would see if it polled after both, or
+     * null if they cancel out
+     */
+    private static Event merge(Event previous, Event event) {
+        return switch (previous.kind()) {
+            // the script hasn't heard of the entity yet, so it either still appears, just somewhere else, or never did
+            case "spawn", "enter" -> event.kind().equals("move") ? new Event(previous.kind(), event.id(), event.type(), event.pos()) : null;
+            // the entity was in the box when the script last polled, and either still is or isn't any more
+            case "leave" -> new Event("move", event.id(), event.type(), event.pos());
+            default -> event;
+        };
+    }
+
+    /**
+     * Returns the events since the last poll, up to the end of the last tick, or null if there were none
+     */
+    public Object poll() {
+        List<Event> events;
+        int ticks;
+        int droppedEvents;
+        synchronized (this) {
+            if (pending.isEmpty() && dropped == 0) {
+                pendingTicks = 0;
+                return null;
+            }
+            events = new ArrayList<>(pending.values());
+            ticks = pendingTicks;
+            droppedEvents = dropped;
+            pending = new Int2ObjectLinkedOpenHashMap<>();
+            pendingTicks = 0;
+            dropped = 0;
+        }
+
+        int count = events.size();
+        String[] kinds = new String[count];
+        int[] ids = new int[count];
+        String[] types = new String[count];
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] z = new double[count];
+        for (int i = 0; i < count; i++) {
+            Event event = events.get(i);
+            kinds[i] = event.kind();
+            ids[i] = event.id();
+            types[i] = event.type();
+            x[i] = event.pos().x;
+            y[i] = event.pos().y;
+            z[i] = event.pos().z;
+        }
+        return BeanWrapper.wrap(new ScriptEntityEventBatch(count, ticks, droppedEvents, kinds, ids, types, x, y, z));
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void close() {
+        synchronized (allWatchers) {
+            closed = true;
+            allWatchers.remove(this);
+        }
+    }
+
+    private record Event(String kind, int id, String type, Vec3d pos) {}
+}
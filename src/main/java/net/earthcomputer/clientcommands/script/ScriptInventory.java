@@ -19,10 +19,8 @@ import org.graalvm.polyglot.Value;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 @SuppressWarnings("unused")
 public class ScriptInventory {
@@ -71,11 +69,125 @@ public class ScriptInventory {
         return ret;
     }
 
+    /**
+     * The number of item stacks in {@link #getItems()}
+     */
+    int getItemCount() {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        if (container == player.playerScreenHandler) {
+            return player.getInventory().size() + 5;
+        } else {
+            return slotIdMap().getSlots().size();
+        }
+    }
+
+    /**
+     * The item stack at the given index of {@link #getItems()}, without copying or serializing it
+     */
+    ItemStack getItemStack(int index) {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        if (container == player.playerScreenHandler) {
+            int size = player.getInventory().size();
+            return index < size ? player.getInventory().getStack(index) : container.slots.get(index - size).getStack();
+        } else {
+            return slotIdMap().getSlots().get(index).getStack();
+        }
+    }
+
+    /**
+     * Whether this is a container which has since been closed, so its items can no longer change
+     */
+    boolean isClosed() {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        return player == null || container != player.playerScreenHandler && container != player.currentScreenHandler;
+    }
+
+    public boolean sort() {
+        return sort(null);
+    }
+
+    public boolean sort(Value options) {
+        return planSort0(options).execute();
+    }
+
+    public Object planSort() {
+        return planSort(null);
+    }
+
+    public Object planSort(Value options) {
+        return BeanWrapper.wrap(planSort0(options));
+    }
+
+    private ScriptClickTransaction planSort0(Value options) {
+        InventoryPlanner planner = createPlanner(options);
+        planner.planSort();
+        return createPlannedTransaction(planner, options);
+    }
+
+    public Object planLayout(Value layout) {
+        return planLayout(layout, null);
+    }
+
+    public Object planLayout(Value layout, Value options) {
+        if (!layout.hasArrayElements())
+            throw new IllegalArgumentException("Cannot interpret " + layout + " as an array of item predicates");
+        InventoryPlanner planner = createPlanner(options);
+        int size = planner.getSlotCount();
+        if (layout.getArraySize() > size)
+            throw new IllegalArgumentException("Layout has more entries than there are slots");
+        @SuppressWarnings("unchecked")
+        Predicate<ItemStack>[] wanted = new Predicate[size];
+        for (int i = 0; i < layout.getArraySize(); i++) {
+            Value entry = layout.getArrayElement(i);
+            wanted[i] = entry == null || entry.isNull() ? null : ScriptUtil.asItemStackPredicate(entry);
+        }
+        planner.planLayout(wanted);
+        return BeanWrapper.wrap(createPlannedTransaction(planner, options));
+    }
+
+    private InventoryPlanner createPlanner(Value options) {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        assert player != null;
+        if (!player.currentScreenHandler.getCursorStack().isEmpty())
+            throw new IllegalStateException("Cannot plan clicks while holding an item on the cursor");
+        if (isClosed())
+            throw new IllegalStateException("Container is closed");
+
+        // by default, the player's main inventory, or all of a container
+        int from = options != null && options.hasMember("from") ? options.getMember("from").asInt() : container == player.playerScreenHandler ? 9 : 0;
+        int to = options != null && options.hasMember("to") ? options.getMember("to").asInt() : container == player.playerScreenHandler ? 35 : getItemCount() - 1;
+        SlotIdMap slotIds = slotIdMap();
+        List<Slot> slots = new ArrayList<>();
+        for (int id = from; id <= to; id++) {
+            Slot slot = slotIds.getSlot(id);
+            if (slot == null)
+                throw new IllegalArgumentException("Slot " + id + " not in open container");
+            slots.add(slot);
+        }
+        return new InventoryPlanner(slots, player.getInventory());
+    }
+
+    private ScriptClickTransaction createPlannedTransaction(InventoryPlanner planner, Value options) {
+        ScriptClickTransaction transaction = new ScriptClickTransaction(this, options);
+        transaction.addClicks(planner.getClicks());
+        return transaction;
+    }
+
+    public Object watch() {
+        return BeanWrapper.wrap(ScriptInventoryWatcher.create(this));
+    }
+
     public void click(Integer slot) {
         click(slot, null);
     }
 
     public void click(Integer slot, Value options) {
+        ScriptClickTransaction.Click click = toClick(slot, options);
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        MinecraftClient.getInstance().interactionManager.clickSlot(player.currentScreenHandler.syncId, click.slotId(), click.button(), click.type(), player);
+    }
+
+    ScriptClickTransaction.Click toClick(Integer slot, Value options) {
         String typeStr = options != null && options.hasMember("type") ? ScriptUtil.asString(options.getMember("type")) : null;
         SlotActionType type = typeStr == null ? SlotActionType.PICKUP :
                 Arrays.stream(SlotActionType.values()).filter(it -> it.name().equalsIgnoreCase(typeStr)).findAny().orElse(SlotActionType.PICKUP);
@@ -105,8 +217,15 @@ public class ScriptInventory {
             slotId = theSlot.id;
         }
 
-        ClientPlayerEntity player = MinecraftClient.getInstance().player;
-        MinecraftClient.getInstance().interactionManager.clickSlot(player.currentScreenHandler.syncId, slotId, mouseButton, type, player);
+        return new ScriptClickTransaction.Click(slotId, mouseButton, type);
+    }
+
+    public Object transaction() {
+        return transaction(null);
+    }
+
+    public Object transaction(Value options) {
+        return BeanWrapper.wrap(new ScriptClickTransaction(this, options));
     }
 
     public Integer findSlot(Value item) {
@@ -116,13 +235,14 @@ public class ScriptInventory {
     public Integer findSlot(Value item, boolean reverse) {
         Predicate<ItemStack> itemPredicate = ScriptUtil.asItemStackPredicate(item);
 
-        List<Slot> slots = getSlots();
+        SlotIdMap slotIds = slotIdMap();
+        List<Slot> slots = slotIds.getSlots();
         if (reverse)
             slots = Lists.reverse(slots);
 
         for (Slot slot : slots) {
             if (itemPredicate.test(slot.getStack())) {
-                return getIdForSlot(slot);
+                return slotIds.getId(slot);
             }
         }
 
@@ -136,22 +256,23 @@ public class ScriptInventory {
     public List<Integer> findSlots(Value item, int count, boolean reverse) {
         Predicate<ItemStack> itemPredicate = ScriptUtil.asItemStackPredicate(item);
 
-        List<Slot> slots = getSlots();
+        SlotIdMap slotIds = slotIdMap();
+        List<Slot> slots = slotIds.getSlots();
         if (reverse)
             slots = Lists.reverse(slots);
 
-        List<Integer> slotIds = new ArrayList<>();
+        List<Integer> ret = new ArrayList<>();
         int itemsFound = 0;
         for (Slot slot : slots) {
             if (itemPredicate.test(slot.getStack())) {
-                slotIds.add(getIdForSlot(slot));
+                ret.add(slotIds.getId(slot));
                 itemsFound += slot.getStack().getCount();
                 if (count != -1 && itemsFound >= count)
                     break;
             }
         }
 
-        return slotIds;
+        return ret;
     }
 
     public int moveItems(Value item, int count) {
@@ -183,74 +304,18 @@ public class ScriptInventory {
         return itemsFound;
     }
 
-    private Slot getSlot(int id) {
+    private SlotIdMap slotIdMap() {
         ClientPlayerEntity player = MinecraftClient.getInstance().player;
         assert player != null;
-
-        if (container == player.playerScreenHandler) {
-            if (id < player.getInventory().size()) {
-                for (Slot slot : player.currentScreenHandler.slots) {
-                    if (slot.inventory == player.getInventory() && slot.getIndex() == id) {
-                        return slot;
-                    }
-                }
-            }
-            if (container == player.currentScreenHandler) {
-                return container.getSlot(id - player.getInventory().size());
-            }
-        } else {
-            int containerId = 0;
-            for (int i = 0; i < container.slots.size(); i++) {
-                Slot slot = container.getSlot(i);
-                if (slot.inventory != player.getInventory()) {
-                    if (id == containerId)
-                        return slot;
-                    containerId++;
-                }
-            }
-        }
-
-        return null;
+        return SlotIdMap.get(container, player);
     }
 
-    private int getIdForSlot(Slot slot) {
-        ClientPlayerEntity player = MinecraftClient.getInstance().player;
-        assert player != null;
-
-        if (container == player.playerScreenHandler) {
-            if (slot.inventory == player.getInventory()) {
-                return slot.getIndex();
-            } else {
-                return slot.getIndex() + player.getInventory().size();
-            }
-        } else {
-            int containerId = 0;
-            for (int i = 0; i < container.slots.size(); i++) {
-                Slot otherSlot = container.getSlot(i);
-                if (otherSlot.inventory != player.getInventory()) {
-                    if (otherSlot == slot)
-                        return containerId;
-                    containerId++;
-                }
-            }
-            return -1;
-        }
+    private Slot getSlot(int id) {
+        return slotIdMap().getSlot(id);
     }
 
     private List<Slot> getSlots() {
-        ClientPlayerEntity player = MinecraftClient.getInstance().player;
-        assert player != null;
-
-        if (container == player.playerScreenHandler) {
-            return player.currentScreenHandler.slots.stream()
-                    .filter(slot -> slot.inventory == player.getInventory())
-                    .sorted(Comparator.comparingInt(this::getIdForSlot))
-                    .collect(Collectors.toList());
-        } else {
-            return container.slots.stream()
-                    .filter(slot -> slot.inventory != player.getInventory())
-                    .collect(Collectors.toList());
-        }
+        return slotIdMap().getSlots();
     }
 
     @Override
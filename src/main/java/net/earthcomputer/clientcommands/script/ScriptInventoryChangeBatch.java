@@ -0,0 +1,38 @@
+package net.earthcomputer.clientcommands.script;
+
+@SuppressWarnings("unused")
+public class ScriptInventoryChangeBatch {
+    private final int count;
+    private final int ticks;
+    private final int[] slots;
+    private final Object[] oldItems;
+    private final Object[] newItems;
+
+    ScriptInventoryChangeBatch(int count, int ticks, int[] slots, Object[] oldItems, Object[] newItems) {
+        this.count = count;
+        this.ticks = ticks;
+        this.slots = slots;
+        this.oldItems = oldItems;
+        this.newItems = newItems;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    public int[] getSlots() {
+        return slots;
+    }
+
+    public Object[] getOldItems() {
+        return oldItems;
+    }
+
+    public Object[] getNewItems() {
+        return newItems;
+    }
+}
@@ -0,0 +1,147 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the stacks of an inventory with their previous values at the end of each tick, and collects the slots that
+ * changed until the script polls them. Nothing is allocated on ticks where nothing changed.
+ */
+@SuppressWarnings("unused")
+public class ScriptInventoryWatcher {
+    private static final List<ScriptInventoryWatcher> allWatchers = new ArrayList<>();
+
+    private final ScriptInventory inventory;
+    private final ScriptManager.ThreadInstance owner;
+    private volatile boolean closed;
+
+    // the stacks as of the last tick. Only accessed on the client thread
+    private ItemStack[] lastStacks;
+
+    // Guarded by this
+    private List<Change> pending = new ArrayList<>();
+    // slot -> index of its change in pending, so that repeated changes are merged until the next poll
+    private final Int2IntMap pendingSlots = new Int2IntOpenHashMap();
+    private int pendingTicks;
+
+    private ScriptInventoryWatcher(ScriptInventory inventory, ScriptManager.ThreadInstance owner) {
+        this.inventory = inventory;
+        this.owner = owner;
+        pendingSlots.defaultReturnValue(-1);
+        lastStacks = new ItemStack[inventory.getItemCount()];
+        for (int i = 0; i < lastStacks.length; i++) {
+            lastStacks[i] = inventory.getItemStack(i).copy();
+        }
+    }
+
+    static ScriptInventoryWatcher create(ScriptInventory inventory) {
+        ScriptInventoryWatcher watcher = new ScriptInventoryWatcher(inventory, ScriptManager.currentThread());
+        synchronized (allWatchers) {
+            allWatchers.add(watcher);
+        }
+        return watcher;
+    }
+
+    static void onTick() {
+        synchronized (allWatchers) {
+            // iterate backwards so that watchers can be closed while iterating
+            for (int i = allWatchers.size() - 1; i >= 0; i--) {
+                ScriptInventoryWatcher watcher = allWatchers.get(i);
+                if (watcher.inventory.isClosed() || watcher.owner != null && (!watcher.owner.running || watcher.owner.isKilled())) {
+                    watcher.close();
+                } else {
+                    watcher.update();
+                }
+            }
+        }
+    }
+
+    private void update() {
+        int count = inventory.getItemCount();
+        if (count != lastStacks.length) {
+            // the creative screen can change which slots there are
+            ItemStack[] newStacks = new ItemStack[count];
+            System.arraycopy(lastStacks, 0, newStacks, 0, Math.min(count, lastStacks.length));
+            for (int i = lastStacks.length; i < count; i++) {
+                newStacks[i] = ItemStack.EMPTY;
+            }
+            lastStacks = newStacks;
+        }
+
+        for (int slot = 0; slot < count; slot++) {
+            ItemStack stack = inventory.getItemStack(slot);
+            if (!ItemStack.areEqual(stack, lastStacks[slot])) {
+                ItemStack copy = stack.copy();
+                synchronized (this) {
+                    int index = pendingSlots.get(slot);
+                    if (index == -1) {
+                        pendingSlots.put(slot, pending.size());
+                        pending.add(new Change(slot, lastStacks[slot], copy));
+                    } else {
+                        pending.set(index, new Change(slot, pending.get(index).oldStack(), copy));
+                    }
+                }
+                lastStacks[slot] = copy;
+            }
+        }
+
+        synchronized (this) {
+            pendingTicks++;
+        }
+    }
+
+    /**
+     * Returns the changes since the last poll, up to the end of the last tick, or null if there were none
+     */
+    public Object poll() {
+        List<Change> changes;
+        int ticks;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                pendingTicks = 0;
+                return null;
+            }
+            changes = pending;
+            ticks = pendingTicks;
+            pending = new ArrayList<>();
+            pendingSlots.clear();
+            pendingTicks = 0;
+        }
+
+        // a slot may have changed and then changed back
+        changes.removeIf(change -> ItemStack.areEqual(change.oldStack(), change.newStack()));
+        if (changes.isEmpty()) {
+            return null;
+        }
+
+        int count = changes.size();
+        int[] slots = new int[count];
+        Object[] oldItems = new Object[count];
+        Object[] newItems = new Object[count];
+        for (int i = 0; i < count; i++) {
+            Change change = changes.get(i);
+            slots[i] = change.slot();
+            oldItems[i] = ScriptUtil.fromNbt(change.oldStack().writeNbt(new NbtCompound()));
+            newItems[i] = ScriptUtil.fromNbt(change.newStack().writeNbt(new NbtCompound()));
+        }
+        return BeanWrapper.wrap(new ScriptInventoryChangeBatch(count, ticks, slots, oldItems, newItems));
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void close() {
+        synchronized (allWatchers) {
+            closed = true;
+            allWatchers.remove(this);
+        }
+    }
+
+    private record Change(int slot, ItemStack oldStack, ItemStack newStack) {}
+}
@@ -1,7 +1,5 @@
 package net.earthcomputer.clientcommands.script;
 
-import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.item.FoodComponent;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NbtCompound;
@@ -10,7 +8,6 @@ import net.minecraft.util.Identifier;
 import net.minecraft.util.registry.Registry;
 import org.graalvm.polyglot.Value;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @SuppressWarnings("unused")
@@ -37,10 +34,26 @@ public class ScriptItemStack {
         return BeanWrapper.wrap(ofUnchecked(obj));
     }
 
+    public static int itemIdOf(String item) {
+        return RegistryNames.itemId(item);
+    }
+
+    public static String itemNameOf(int id) {
+        return RegistryNames.itemName(id);
+    }
+
     public Object getStack() {
         return ScriptUtil.fromNbtCompound(stack.writeNbt(new NbtCompound()));
     }
 
+    public String getItem() {
+        return RegistryNames.itemName(stack.getItem());
+    }
+
+    public int getItemId() {
+        return Registry.ITEM.getRawId(stack.getItem());
+    }
+
     public float getMiningSpeed(String block) {
         return getMiningSpeed(ScriptBlockState.uncheckedDefaultState(block));
     }
@@ -95,11 +108,11 @@ public class ScriptItemStack {
     }
 
     public List<String> getTags() {
-        ClientPlayNetworkHandler networkHandler = MinecraftClient.getInstance().getNetworkHandler();
-        if (networkHandler == null) {
-            return new ArrayList<>();
-        }
-        return stack.streamTags().map(tag -> ScriptUtil.simplifyIdentifier(tag.id())).toList();
+        return TagIndex.getTags(stack.getItem());
+    }
+
+    public boolean hasTag(String tag) {
+        return TagIndex.isIn(stack.getItem(), tag);
     }
 
 }
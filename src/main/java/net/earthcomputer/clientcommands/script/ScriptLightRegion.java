@@ -0,0 +1,212 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.LightType;
+import net.minecraft.world.chunk.ChunkNibbleArray;
+import net.minecraft.world.chunk.light.ChunkLightingView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SuppressWarnings("unused")
+public class ScriptLightRegion {
+    private static final int MAX_VOLUME = 256 * 256 * 256;
+
+    // reads which scripts are waiting for the end of the tick for. Guarded by itself
+    private static final List<PendingRead> pendingReads = new ArrayList<>();
+    private static volatile int tick;
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final byte[] levels;
+    // the tick at the end of which the levels were read, or -1 if they were read while a script was running
+    private final int readTick;
+
+    private ScriptLightRegion(int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ, byte[] levels, int readTick) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.levels = levels;
+        this.readTick = readTick;
+    }
+
+    static LightType parseLightType(String type) {
+        return switch (type) {
+            case "block" -> LightType.BLOCK;
+            case "sky" -> LightType.SKY;
+            default -> throw new IllegalArgumentException("No such light type: " + type);
+        };
+    }
+
+    /**
+     * Called on the client thread at the end of each tick, after {@link WorldSnapshot} has copied its sections, so that
+     * the light levels read here match the block states of a snapshot captured before the next tick
+     */
+    static void onTick() {
+        tick++;
+        List<PendingRead> reads;
+        synchronized (pendingReads) {
+            if (pendingReads.isEmpty()) {
+                return;
+            }
+            reads = new ArrayList<>(pendingReads);
+            pendingReads.clear();
+        }
+        for (PendingRead read : reads) {
+            read.result = read(read.world, read.type, read.x1, read.y1, read.z1, read.x2, read.y2, read.z2, tick);
+        }
+    }
+
+    /**
+     * Reads the light levels as they are now. They may be from a later tick than a {@link WorldSnapshot} of the same area
+     */
+    static ScriptLightRegion read(ClientWorld world, LightType type, int x1, int y1, int z1, int x2, int y2, int z2) {
+        return read(world, type, x1, y1, z1, x2, y2, z2, -1);
+    }
+
+    /**
+     * Reads the light levels on the client thread at the end of the current tick, waiting for it. Must be called from a
+     * script thread
+     */
+    static ScriptLightRegion readAtEndOfTick(ClientWorld world, LightType type, int x1, int y1, int z1, int x2, int y2, int z2) {
+        checkVolume(x1, y1, z1, x2, y2, z2);
+        PendingRead read = new PendingRead(world, type, x1, y1, z1, x2, y2, z2);
+        synchronized (pendingReads) {
+            pendingReads.add(read);
+        }
+        while (read.result == null) {
+            ScriptManager.passTick();
+        }
+        return read.result;
+    }
+
+    /**
+     * Whether no tick has ended since the levels were read at the end of a tick, so that they match the block states of
+     * a {@link WorldSnapshot} captured now
+     */
+    boolean isFromLastTick() {
+        return readTick == tick;
+    }
+
+    private static void checkVolume(int x1, int y1, int z1, int x2, int y2, int z2) {
+        long sizeX = Math.abs((long) x2 - x1) + 1, sizeY = Math.abs((long) y2 - y1) + 1, sizeZ = Math.abs((long) z2 - z1) + 1;
+        if (sizeX * sizeY * sizeZ > MAX_VOLUME) {
+            throw new IllegalArgumentException("Region too large");
+        }
+    }
+
+    private static ScriptLightRegion read(ClientWorld world, LightType type, int x1, int y1, int z1, int x2, int y2, int z2, int readTick) {
+        checkVolume(x1, y1, z1, x2, y2, z2);
+        int minX = Math.min(x1, x2), minY = Math.min(y1, y2), minZ = Math.min(z1, z2);
+        int maxX = Math.max(x1, x2), maxY = Math.max(y1, y2), maxZ = Math.max(z1, z2);
+        int sizeX = maxX - minX + 1, sizeY = maxY - minY + 1, sizeZ = maxZ - minZ + 1;
+
+        ChunkLightingView view = world.getLightingProvider().get(type);
+        byte[] levels = new byte[sizeX * sizeY * sizeZ];
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+
+        for (int sectionX = ChunkSectionPos.getSectionCoord(minX); sectionX <= ChunkSectionPos.getSectionCoord(maxX); sectionX++) {
+            for (int sectionY = ChunkSectionPos.getSectionCoord(minY); sectionY <= ChunkSectionPos.getSectionCoord(maxY); sectionY++) {
+                for (int sectionZ = ChunkSectionPos.getSectionCoord(minZ); sectionZ <= ChunkSectionPos.getSectionCoord(maxZ); sectionZ++) {
+                    ChunkNibbleArray nibbles = view.getLightSection(ChunkSectionPos.from(sectionX, sectionY, sectionZ));
+                    boolean hasNibbles = nibbles != null && !nibbles.isUninitialized();
+                    // a missing block light section is dark, but a missing sky light section takes its light from above
+                    if (!hasNibbles && type == LightType.BLOCK) {
+                        continue;
+                    }
+
+                    int fromX = Math.max(minX, ChunkSectionPos.getBlockCoord(sectionX)), toX = Math.min(maxX, ChunkSectionPos.getBlockCoord(sectionX) + 15);
+                    int fromY = Math.max(minY, ChunkSectionPos.getBlockCoord(sectionY)), toY = Math.min(maxY, ChunkSectionPos.getBlockCoord(sectionY) + 15);
+                    int fromZ = Math.max(minZ, ChunkSectionPos.getBlockCoord(sectionZ)), toZ = Math.min(maxZ, ChunkSectionPos.getBlockCoord(sectionZ) + 15);
+                    for (int y = fromY; y <= toY; y++) {
+                        for (int z = fromZ; z <= toZ; z++) {
+                            int index = ((y - minY) * sizeZ + (z - minZ)) * sizeX + (fromX - minX);
+                            for (int x = fromX; x <= toX; x++, index++) {
+                                levels[index] = (byte) (hasNibbles ? nibbles.get(x & 15, y & 15, z & 15) : view.getLightLevel(pos.set(x, y, z)));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return new ScriptLightRegion(minX, minY, minZ, sizeX, sizeY, sizeZ, levels, readTick);
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    /**
+     * The light levels in y, z, x order, i.e. the index of (x, y, z) is
+     * ((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX)
+     */
+    public byte[] getLevels() {
+        return levels;
+    }
+
+    public int getIndex(int x, int y, int z) {
+        x -= minX;
+        y -= minY;
+        z -= minZ;
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+            return -1;
+        }
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    public int getLevel(int x, int y, int z) {
+        int index = getIndex(x, y, z);
+        if (index == -1) {
+            throw new IndexOutOfBoundsException("Position is outside of the region");
+        }
+        return levels[index];
+    }
+
+    private static final class PendingRead {
+        final ClientWorld world;
+        final LightType type;
+        final int x1, y1, z1, x2, y2, z2;
+        volatile ScriptLightRegion result;
+
+        PendingRead(ClientWorld world, LightType type, int x1, int y1, int z1, int x2, int y2, int z2) {
+            this.world = world;
+            this.type = type;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.z1 = z1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.z2 = z2;
+        }
+    }
+}
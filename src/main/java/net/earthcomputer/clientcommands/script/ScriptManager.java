@@ -12,6 +12,8 @@ import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.input.Input;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.command.CommandSource;
+import net.minecraft.entity.Entity;
+import net.minecraft.item.ItemStack;
 import net.minecraft.text.TranslatableText;
 import org.apache.commons.io.FileUtils;
 import org.graalvm.polyglot.Context;
@@ -348,6 +350,35 @@ public class ScriptManager {
         }
     }
 
+    public static void onClientTick() {
+        ScriptBlockWatcher.onTick();
+        WorldSnapshot.onTick();
+        ScriptLightRegion.onTick();
+        SectionVersions.onTick();
+        ScriptEntityWatcher.onTick();
+        ScriptEntitySnapshot.onTick();
+        ScriptInventoryWatcher.onTick();
+        ContainerMemory.onTick();
+    }
+
+    public static void onEntityAdded(Entity entity) {
+        ScriptEntityWatcher.onEntityAdded(entity);
+    }
+
+    public static void onChunkChange(int chunkX, int chunkZ) {
+        WorldSnapshot.onChunkChange(chunkX, chunkZ);
+        SectionVersions.onChunkChange(chunkX, chunkZ);
+    }
+
+    public static void onServerSlotUpdate(int syncId, int revision, int slot, ItemStack stack) {
+        ScriptClickTransaction.onServerSlotUpdate(syncId, revision, slot, stack);
+    }
+
+    public static void onServerInventory(int syncId, int revision, List<ItemStack> contents, ItemStack cursor) {
+        ScriptClickTransaction.onServerInventory(syncId, revision, contents, cursor);
+        ContainerMemory.onServerInventory(syncId);
+    }
+
     static void blockInput(boolean blockInput) {
         requireCurrentThread().blockingInput = blockInput;
     }
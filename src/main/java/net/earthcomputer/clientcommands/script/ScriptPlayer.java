@@ -1,6 +1,9 @@
 package net.earthcomputer.clientcommands.script;
 
 import com.google.common.collect.ImmutableSet;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import net.earthcomputer.clientcommands.MathUtil;
 import net.earthcomputer.clientcommands.features.PathfindingHints;
 import net.earthcomputer.clientcommands.features.PlayerPathfinder;
@@ -16,8 +19,13 @@ import net.minecraft.entity.ai.pathing.Path;
 import net.minecraft.entity.ai.pathing.PathNode;
 import net.minecraft.entity.ai.pathing.PathNodeType;
 import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.network.packet.c2s.play.PlayerMoveC2SPacket;
+import net.minecraft.recipe.CraftingRecipe;
+import net.minecraft.recipe.Ingredient;
+import net.minecraft.recipe.RecipeMatcher;
+import net.minecraft.recipe.RecipeType;
 import net.minecraft.screen.AbstractRecipeScreenHandler;
 import net.minecraft.screen.CraftingScreenHandler;
 import net.minecraft.screen.PlayerScreenHandler;
@@ -36,20 +44,39 @@ import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.BlockView;
 import net.minecraft.world.World;
 import org.graalvm.polyglot.Value;
+import org.slf4j.Logger;
 
+import java.util.Collection;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.BooleanSupplier;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 @SuppressWarnings("unused")
 public class ScriptPlayer extends ScriptLivingEntity {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
     static final ScriptPlayer INSTANCE = new ScriptPlayer();
 
+    // how far the player walks in a tick, used to estimate when it will reach a moving target
+    private static final double WALK_SPEED = 0.216;
+    // how far ahead to lead a moving target when pathfinding to it
+    private static final int MAX_PATH_LEAD_TICKS = 40;
+
+    private static final PathNodeType[] PATH_NODE_TYPES = PathNodeType.values();
+    private static final Map<String, PathNodeType> PATH_NODE_TYPES_BY_NAME = new HashMap<>();
+    static {
+        for (PathNodeType type : PATH_NODE_TYPES) {
+            PATH_NODE_TYPES_BY_NAME.put(type.name().toLowerCase(Locale.ROOT), type);
+        }
+    }
+
     ScriptPlayer() {
         super(null);
     }
@@ -88,6 +115,13 @@ public class ScriptPlayer extends ScriptLivingEntity {
     }
 
     public boolean moveTo(double x, double z, boolean smart) {
+        return moveTo0(x, z, smart, null);
+    }
+
+    /**
+     * Runs eachTick, if given, once on every tick spent moving, before passing the tick
+     */
+    private boolean moveTo0(double x, double z, boolean smart, Runnable eachTick) {
         if (getEntity().squaredDistanceTo(x, getY(), z) < 0.01) {
             snapTo(x, getY(), z);
             return true;
@@ -121,6 +155,9 @@ public class ScriptPlayer extends ScriptLivingEntity {
                                 || getEntity().getBoundingBox().offset(x - getX(), 0, z - getZ()).intersects(new Box(pos))) {
                             boolean wasJumping = ScriptManager.getScriptInput().jumping;
                             ScriptManager.getScriptInput().jumping = true;
+                            if (eachTick != null) {
+                                eachTick.run();
+                            }
                             ScriptManager.passTick();
                             ScriptManager.getScriptInput().jumping = wasJumping;
                         }
@@ -128,6 +165,9 @@ public class ScriptPlayer extends ScriptLivingEntity {
                 }
             }
             lookAt(x, getY() + getEyeHeight(), z);
+            if (eachTick != null) {
+                eachTick.run();
+            }
             ScriptManager.passTick();
 
             tickCounter++;
@@ -165,7 +205,7 @@ public class ScriptPlayer extends ScriptLivingEntity {
         ScriptEntity scriptEntity = ScriptUtil.unwrap(thing, ScriptEntity.class);
         if (scriptEntity != null) {
             Entity entity = scriptEntity.getEntity();
-            return pathTo0(entity::getBlockPos, hints, true);
+            return pathTo0(() -> new BlockPos(predictArrival(entity)), hints, true);
         } else {
             ScriptFunction func = ScriptUtil.asFunction(thing);
             return pathTo0(() -> {
@@ -178,6 +218,17 @@ public class ScriptPlayer extends ScriptLivingEntity {
         }
     }
 
+    /**
+     * Predicts where the entity will be by the time the player could walk to it
+     */
+    private Vec3d predictArrival(Entity entity) {
+        int ticks = Math.min(MAX_PATH_LEAD_TICKS, (int) (getEntity().distanceTo(entity) / WALK_SPEED));
+        if (ticks == 0)
+            return entity.getPos();
+        Vec3d[] positions = EntityPredictor.predict(entity, ticks);
+        return positions[ticks - 1];
+    }
+
     private boolean pathTo0(Supplier<BlockPos> target, Value hints, boolean movingTarget) {
         ScriptFunction nodeTypeFunction = hints != null && hints.hasMember("nodeTypeFunction") ? ScriptUtil.asFunction(hints.getMember("nodeTypeFunction")) : null;
         ScriptFunction penaltyFunction = hints != null && hints.hasMember("penaltyFunction") ? ScriptUtil.asFunction(hints.getMember("penaltyFunction")) : null;
@@ -185,45 +236,51 @@ public class ScriptPlayer extends ScriptLivingEntity {
         int reachDistance = hints != null && hints.hasMember("reachDistance") ? hints.getMember("reachDistance").asInt() : 0;
         Float maxPathLength = hints != null && hints.hasMember("maxPathLength") ? hints.getMember("maxPathLength").asFloat() : null;
 
+        // the target of the path being followed, and the target of the latest search
         BlockPos[] targetPos = {target.get()};
+        BlockPos[] searchTarget = {targetPos[0]};
+
+        // The script functions are slow to call, so their results are remembered until a nearby block changes
+        PathfindingHintCache hintCache = new PathfindingHintCache();
 
         PathfindingHints javaHints = new PathfindingHints() {
             @Override
             public PathNodeType getNodeType(BlockView world, BlockPos pos) {
                 if (nodeTypeFunction == null)
                     return null;
+                return hintCache.getNodeType(pos, this::computeNodeType);
+            }
 
+            private PathNodeType computeNodeType(BlockPos pos) {
                 Value typeObj = nodeTypeFunction.call(pos.getX(), pos.getY(), pos.getZ());
                 if (typeObj == null || typeObj.isNull())
                     return null;
 
                 String typeName = ScriptUtil.asString(typeObj);
-                try {
-                    return PathNodeType.valueOf(typeName.toUpperCase(Locale.ROOT));
-                } catch (IllegalArgumentException e) {
+                PathNodeType type = PATH_NODE_TYPES_BY_NAME.get(typeName.toLowerCase(Locale.ROOT));
+                if (type == null)
                     throw new IllegalArgumentException("Unknown path node type \"" + typeName + "\"");
-                }
+                return type;
             }
 
             @Override
             public float getPathfindingPenalty(PathNodeType type) {
                 if (penaltyFunction == null)
                     return type.getDefaultPenalty();
+                return hintCache.getPenalty(type, this::computePenalty);
+            }
 
+            private float computePenalty(PathNodeType type) {
                 String typeName = type.name().toLowerCase(Locale.ROOT);
                 Value penaltyObj = penaltyFunction.call(typeName);
-
-                if (penaltyObj == null || penaltyObj.isNull())
-                    return type.getDefaultPenalty();
-
-                return penaltyObj.asFloat();
+                return penaltyObj == null || penaltyObj.isNull() ? type.getDefaultPenalty() : penaltyObj.asFloat();
             }
 
             @Override
             public float getFollowRange() {
                 if (followRange != null)
                     return followRange;
-                return (float) Math.sqrt(getEntity().squaredDistanceTo(targetPos[0].getX() + 0.5, targetPos[0].getY() + 0.5, targetPos[0].getZ() + 0.5)) * 2;
+                return (float) Math.sqrt(getEntity().squaredDistanceTo(searchTarget[0].getX() + 0.5, searchTarget[0].getY() + 0.5, searchTarget[0].getZ() + 0.5)) * 2;
             }
 
             @Override
@@ -235,7 +292,7 @@ public class ScriptPlayer extends ScriptLivingEntity {
             public float getMaxPathLength() {
                 if (maxPathLength != null)
                     return maxPathLength;
-                return (float) Math.sqrt(getEntity().squaredDistanceTo(targetPos[0].getX() + 0.5, targetPos[0].getY() + 0.5, targetPos[0].getZ() + 0.5)) * 2;
+                return (float) Math.sqrt(getEntity().squaredDistanceTo(searchTarget[0].getX() + 0.5, searchTarget[0].getY() + 0.5, searchTarget[0].getZ() + 0.5)) * 2;
             }
         };
 
@@ -245,6 +302,9 @@ public class ScriptPlayer extends ScriptLivingEntity {
         IBlockChangeListener blockChangeListener = new IBlockChangeListener() {
             @Override
             public void onBlockChange(BlockPos pos, BlockState oldState, BlockState newState) {
+                if (nodeTypeFunction != null || penaltyFunction != null) {
+                    hintCache.onBlockChange(pos);
+                }
                 if (path[0] == null || path[0].isFinished() || path[0].getLength() == 0)
                     return;
                 PathNode end = path[0].getEnd();
@@ -256,26 +316,91 @@ public class ScriptPlayer extends ScriptLivingEntity {
         };
         IBlockChangeListener.LISTENERS.add(blockChangeListener);
 
+        // Searches which don't call into the script are run a slice per tick while the current path is followed
+        AsyncPathfinder asyncPathfinder = nodeTypeFunction == null && penaltyFunction == null ? new AsyncPathfinder() : null;
+        Runnable eachTick = asyncPathfinder == null ? null : asyncPathfinder::runSlice;
+        CompletableFuture<Path> pendingPath = null;
+
         try {
-            while (path[0] != null && !path[0].isFinished()) {
+            while (true) {
+                if (pendingPath != null && (pendingPath.isDone() || path[0] == null || path[0].isFinished())) {
+                    // wait for the new path if there's nothing left to follow
+                    while (!pendingPath.isDone()) {
+                        asyncPathfinder.runSlice();
+                        if (!pendingPath.isDone()) {
+                            ScriptManager.passTick();
+                        }
+                    }
+                    Path newPath = null;
+                    boolean failed = false;
+                    try {
+                        newPath = pendingPath.join();
+                    } catch (CompletionException e) {
+                        // keep following the old path, and try again after the next node
+                        LOGGER.warn("Path search failed", e.getCause());
+                        failed = true;
+                    }
+                    pendingPath = null;
+                    if (failed) {
+                        needsRecalc[0] = true;
+                    } else {
+                        // the player has moved on since the search started
+                        if (newPath != null) {
+                            newPath.setCurrentNodeIndex(findNearestNode(newPath));
+                        }
+                        path[0] = newPath;
+                        targetPos[0] = searchTarget[0];
+                    }
+                }
+                if (path[0] == null || path[0].isFinished())
+                    break;
+
                 Vec3d currentPosition = path[0].getNode(path[0].getCurrentNodeIndex()).getPos();
-                if (!moveTo(currentPosition.getX() + 0.5, currentPosition.getZ() + 0.5))
+                if (!moveTo0(currentPosition.getX() + 0.5, currentPosition.getZ() + 0.5, true, eachTick))
                     return false;
                 path[0].setCurrentNodeIndex(path[0].getCurrentNodeIndex() + 1);
                 if (movingTarget || needsRecalc[0]) {
                     BlockPos newTargetPos = target.get();
-                    if (!newTargetPos.equals(targetPos[0]) || needsRecalc[0]) {
-                        targetPos[0] = newTargetPos;
+                    // only recalculate if the target has moved a significant distance relative to how far away it is
+                    double tolerance = path[0] == null ? 0 : Math.max(1, (path[0].getLength() - path[0].getCurrentNodeIndex()) / 4.0);
+                    if (newTargetPos.getSquaredDistance(searchTarget[0]) > tolerance * tolerance || needsRecalc[0]) {
+                        searchTarget[0] = newTargetPos;
                         needsRecalc[0] = false;
-                        path[0] = PlayerPathfinder.findPathToAny(ImmutableSet.of(targetPos[0]), javaHints);
+                        if (asyncPathfinder != null) {
+                            pendingPath = asyncPathfinder.submit(newTargetPos, javaHints);
+                        } else {
+                            targetPos[0] = newTargetPos;
+                            hintCache.applyBlockChanges();
+                            path[0] = PlayerPathfinder.findPathToAny(ImmutableSet.of(targetPos[0]), javaHints);
+                        }
                     }
                 }
             }
         } finally {
             IBlockChangeListener.LISTENERS.remove(blockChangeListener);
+            if (asyncPathfinder != null) {
+                asyncPathfinder.cancel();
+            }
         }
 
-        return path[0] != null && path[0].getEnd() != null && path[0].getEnd().getPos().equals(targetPos[0]);
+        return path[0] != null && path[0].getEnd() != null && path[0].getEnd().getBlockPos().equals(targetPos[0]);
+    }
+
+    /**
+     * The index of the node of the path closest to the player
+     */
+    private int findNearestNode(Path path) {
+        BlockPos playerPos = getEntity().getBlockPos();
+        int nearest = 0;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < path.getLength(); i++) {
+            double distance = path.getNode(i).getBlockPos().getSquaredDistance(playerPos);
+            if (distance < nearestDistance) {
+                nearest = i;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
     }
 
     public void setYaw(float yaw) {
@@ -297,12 +422,40 @@ public class ScriptPlayer extends ScriptLivingEntity {
     }
 
     public void lookAt(ScriptEntity entity) {
-        if (entity instanceof ScriptLivingEntity) {
-            double eyeHeight = ((ScriptLivingEntity) entity).getEyeHeight();
-            lookAt(entity.getX(), entity.getY() + eyeHeight, entity.getZ());
-        } else {
-            lookAt(entity.getX(), entity.getY(), entity.getZ());
+        lookAt(entity, 0);
+    }
+
+    public void lookAt(ScriptEntity entity, int leadTicks) {
+        Vec3d pos = entity.getEntity().getPos();
+        if (leadTicks > 0) {
+            Vec3d[] positions = EntityPredictor.predict(entity.getEntity(), leadTicks);
+            pos = positions[leadTicks - 1];
         }
+        lookAt(pos.x, pos.y + getAimHeight(entity), pos.z);
+    }
+
+    public Object getInterceptPoint(ScriptEntity entity, double speed) {
+        return getInterceptPoint(entity, speed, 100);
+    }
+
+    /**
+     * Returns the first point at which a projectile shot from the player's eyes with the given speed could hit the
+     * entity, or null if it can't within maxTicks
+     */
+    public Object getInterceptPoint(ScriptEntity entity, double speed, int maxTicks) {
+        if (speed <= 0)
+            throw new IllegalArgumentException("Speed must be positive");
+        double aimHeight = getAimHeight(entity);
+        Vec3d[] positions = EntityPredictor.predict(entity.getEntity(), maxTicks);
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = positions[i].add(0, aimHeight, 0);
+        }
+        int tick = EntityPredictor.findInterceptTick(positions, getEntity().getEyePos(), speed);
+        return tick == -1 ? null : BeanWrapper.wrap(new ScriptPosition(positions[tick]));
+    }
+
+    private static double getAimHeight(ScriptEntity entity) {
+        return entity instanceof ScriptLivingEntity living ? living.getEyeHeight() : 0;
     }
 
     public void syncRotation() {
@@ -373,6 +526,10 @@ public class ScriptPlayer extends ScriptLivingEntity {
     }
 
     public int craft(Value result, int count, String[] pattern, Value ingredients) {
+        return craft(result, count, pattern, ingredients, null);
+    }
+
+    public int craft(Value result, int count, String[] pattern, Value ingredients, Value options) {
         // Convert js input to something we can handle in Java
 
         Predicate<ItemStack> resultPredicate = ScriptUtil.asItemStackPredicate(result);
@@ -399,6 +556,14 @@ public class ScriptPlayer extends ScriptLivingEntity {
         if (ingredientPredicates.isEmpty())
             throw new IllegalArgumentException("Empty pattern");
 
+        boolean useRecipeBook = options == null || !options.hasMember("recipeBook") || options.getMember("recipeBook").asBoolean();
+        CraftProgress progress = new CraftProgress(options != null && options.hasMember("onProgress") ? ScriptUtil.asFunction(options.getMember("onProgress")) : null);
+
+        return craft0(resultPredicate, count, pattern, patternWidth, ingredientPredicates, useRecipeBook, progress);
+    }
+
+    private int craft0(Predicate<ItemStack> resultPredicate, int count, String[] pattern, int patternWidth,
+                       Map<Character, Predicate<ItemStack>> ingredientPredicates, boolean useRecipeBook, CraftProgress progress) {
         // Check if we are actually in a container with a crafting grid, or return if the recipe is too big for the grid
         if (!(getEntity().currentScreenHandler instanceof CraftingScreenHandler) && !(getEntity().currentScreenHandler instanceof PlayerScreenHandler)) {
             return 0;
@@ -416,28 +581,254 @@ public class ScriptPlayer extends ScriptLivingEntity {
 
         emptyCraftingGrid(container, resultSlotIndex, craftingSlotCount, interactionManager);
 
+        int crafted = 0;
+        if (useRecipeBook) {
+            CraftingRecipe recipe = findRecipeBookRecipe(container, resultPredicate, ingredientPredicates.values());
+            if (recipe != null) {
+                crafted = craftWithRecipeBook(container, recipe, resultPredicate, ingredientPredicates.values(), count, progress, interactionManager);
+                if (crafted < count) {
+                    // the recipe book may have left ingredients in the grid, which don't match the script's pattern
+                    emptyCraftingGrid(container, resultSlotIndex, craftingSlotCount, interactionManager);
+                }
+            }
+        }
+        if (crafted < count && isCraftingGridEmpty(container, resultSlotIndex, craftingSlotCount)) {
+            // the recipe book couldn't be used, or it ran out of ingredients it was allowed to use
+            crafted += craftManually(container, resultPredicate, count - crafted, crafted, pattern, patternWidth, ingredientPredicates, progress, interactionManager);
+        }
+
+        emptyCraftingGrid(container, resultSlotIndex, craftingSlotCount, interactionManager);
+
+        return crafted;
+    }
+
+    public List<Object> planCraft(String item, int count) {
+        CraftPlanner planner = createCraftPlanner();
+        List<CraftPlanner.Step> plan = planner.plan(ScriptUtil.asItem(item), count);
+        if (plan == null)
+            return null;
+        List<Object> ret = new ArrayList<>(plan.size());
+        for (CraftPlanner.Step step : plan) {
+            ret.add(BeanWrapper.wrap(new ScriptCraftStep(step)));
+        }
+        return ret;
+    }
+
+    public boolean craftRecursively(String item, int count) {
+        return craftRecursively(item, count, null);
+    }
+
+    public boolean craftRecursively(String item, int count, Value options) {
+        boolean useRecipeBook = options == null || !options.hasMember("recipeBook") || options.getMember("recipeBook").asBoolean();
+        CraftProgress progress = new CraftProgress(options != null && options.hasMember("onProgress") ? ScriptUtil.asFunction(options.getMember("onProgress")) : null);
+
+        List<CraftPlanner.Step> plan = createCraftPlanner().plan(ScriptUtil.asItem(item), count);
+        if (plan == null)
+            return false;
+        for (CraftPlanner.Step step : plan) {
+            Item output = step.recipe().output;
+            Map<Character, Predicate<ItemStack>> ingredientPredicates = new HashMap<>();
+            for (int group = 0; group < step.ingredients().length; group++) {
+                Item ingredient = step.ingredients()[group];
+                ingredientPredicates.put((char) ('A' + group), stack -> stack.getItem() == ingredient);
+            }
+            if (craft0(stack -> stack.getItem() == output, step.crafts(), step.pattern(), step.recipe().width, ingredientPredicates, useRecipeBook, progress) < step.crafts())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Plans with the grid of the open crafting table, or the player's own grid if no crafting table is open
+     */
+    private CraftPlanner createCraftPlanner() {
+        boolean craftingTable = getEntity().currentScreenHandler instanceof CraftingScreenHandler;
+        int gridSize = craftingTable ? 3 : 2;
+        return new CraftPlanner(getEntity().getInventory().main, gridSize, gridSize);
+    }
+
+    /**
+     * Finds an unlocked recipe that produces the result, fits in the grid, and can currently be crafted from the
+     * player's inventory using items that match the ingredients
+     */
+    private CraftingRecipe findRecipeBookRecipe(AbstractRecipeScreenHandler<?> container, Predicate<ItemStack> resultPredicate, Collection<Predicate<ItemStack>> ingredientPredicates) {
+        ClientPlayerEntity player = getEntity();
+        RecipeMatcher matcher = new RecipeMatcher();
+        player.getInventory().populateRecipeFinder(matcher);
+
+        recipeLoop:
+        for (CraftingRecipe recipe : player.networkHandler.getRecipeManager().listAllOfType(RecipeType.CRAFTING)) {
+            if (recipe.isIgnoredInRecipeBook() || !player.getRecipeBook().contains(recipe))
+                continue;
+            if (!recipe.fits(container.getCraftingWidth(), container.getCraftingHeight()) || !resultPredicate.test(recipe.getOutput()))
+                continue;
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                if (ingredient.isEmpty())
+                    continue;
+                boolean allowed = false;
+                for (ItemStack stack : ingredient.getMatchingStacks()) {
+                    if (ingredientPredicates.stream().anyMatch(predicate -> predicate.test(stack))) {
+                        allowed = true;
+                        break;
+                    }
+                }
+                if (!allowed)
+                    continue recipeLoop;
+            }
+            if (matcher.match(recipe, null))
+                return recipe;
+        }
+        return null;
+    }
+
+    /**
+     * Has the server fill the crafting grid with as many crafts as are needed using the recipe book, then shift-clicks
+     * the result to craft the whole grid at once. The server crafts a shift-clicked result repeatedly while the client
+     * only predicts the first craft, so the number of crafts is worked out from the results arriving in the inventory.
+     */
+    private int craftWithRecipeBook(AbstractRecipeScreenHandler<?> container, CraftingRecipe recipe, Predicate<ItemStack> resultPredicate,
+                                    Collection<Predicate<ItemStack>> ingredientPredicates, int count, CraftProgress progress,
+                                    ClientPlayerInteractionManager interactionManager) {
+        int resultSlotIndex = container.getCraftingResultSlotIndex();
+        int craftingSlotCount = container.getCraftingSlotCount();
+        Slot resultSlot = container.getSlot(resultSlotIndex);
+        int settleTicks = ScriptClickTransaction.estimateSettleTicks();
+
+        // a full fill is limited by the smallest max stack size of the ingredients
+        int maxFill = 64;
+        for (Ingredient ingredient : recipe.getIngredients()) {
+            for (ItemStack stack : ingredient.getMatchingStacks()) {
+                maxFill = Math.min(maxFill, stack.getMaxCount());
+            }
+        }
+
+        int crafted = 0;
+        while (crafted < count) {
+            RecipeMatcher matcher = new RecipeMatcher();
+            getEntity().getInventory().populateRecipeFinder(matcher);
+            container.populateRecipeFinder(matcher);
+            int expectedFill = Math.min(Math.min(count - crafted, maxFill), matcher.countCrafts(recipe, null));
+            if (expectedFill <= 0)
+                break;
+
+            if (expectedFill == maxFill) {
+                interactionManager.clickRecipe(container.syncId, recipe, true);
+            } else {
+                // each click on a recipe that's already in the grid adds another craft's worth of ingredients
+                for (int i = 0; i < expectedFill; i++) {
+                    interactionManager.clickRecipe(container.syncId, recipe, false);
+                }
+            }
+
+            int timeout = 0;
+            while (!resultPredicate.test(resultSlot.getStack()) || countGridCrafts(container, resultSlotIndex, craftingSlotCount) < expectedFill) {
+                if (timeout++ > settleTicks + 20)
+                    break;
+                progress.passTick(crafted);
+            }
+            if (!resultPredicate.test(resultSlot.getStack()))
+                break;
+
+            // the recipe book may have picked items the script didn't allow
+            for (int slotIndex = resultSlotIndex + 1; slotIndex < resultSlotIndex + craftingSlotCount; slotIndex++) {
+                ItemStack stack = container.getSlot(slotIndex).getStack();
+                if (!stack.isEmpty() && ingredientPredicates.stream().noneMatch(predicate -> predicate.test(stack))) {
+                    emptyCraftingGrid(container, resultSlotIndex, craftingSlotCount, interactionManager);
+                    return crafted;
+                }
+            }
+
+            ItemStack resultStack = resultSlot.getStack().copy();
+            int gridCrafts = countGridCrafts(container, resultSlotIndex, craftingSlotCount);
+            int countBefore = countPlayerInvItems(container, resultStack);
+            if (!container.getCursorStack().isEmpty()) {
+                craftInsertIntoPlayerInv(container, interactionManager);
+            }
+            interactionManager.clickSlot(container.syncId, resultSlotIndex, 0, SlotActionType.QUICK_MOVE, getEntity());
+
+            int roundCrafts;
+            timeout = 0;
+            while (true) {
+                roundCrafts = (countPlayerInvItems(container, resultStack) - countBefore) / resultStack.getCount();
+                if (roundCrafts >= gridCrafts || timeout++ > settleTicks)
+                    break;
+                progress.passTick(crafted + roundCrafts);
+            }
+            crafted += roundCrafts;
+            if (roundCrafts < gridCrafts) {
+                // the inventory is full
+                break;
+            }
+        }
+
+        return crafted;
+    }
+
+    /**
+     * The number of crafts the items in the grid are enough for
+     */
+    private static int countGridCrafts(AbstractRecipeScreenHandler<?> container, int resultSlotIndex, int craftingSlotCount) {
+        int crafts = Integer.MAX_VALUE;
+        for (int slotIndex = resultSlotIndex + 1; slotIndex < resultSlotIndex + craftingSlotCount; slotIndex++) {
+            ItemStack stack = container.getSlot(slotIndex).getStack();
+            if (!stack.isEmpty()) {
+                crafts = Math.min(crafts, stack.getCount());
+            }
+        }
+        return crafts == Integer.MAX_VALUE ? 0 : crafts;
+    }
+
+    private int countPlayerInvItems(AbstractRecipeScreenHandler<?> container, ItemStack template) {
+        int count = 0;
+        for (Slot slot : container.slots) {
+            if (isPlayerInvSlot(container, slot) && ItemStack.canCombine(slot.getStack(), template)) {
+                count += slot.getStack().getCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Places the ingredients one craft at a time. The grid slots each ingredient goes in are worked out once, and so are
+     * the player inventory slots each ingredient can be taken from, which are only searched again once they run out.
+     */
+    private int craftManually(AbstractRecipeScreenHandler<?> container, Predicate<ItemStack> resultPredicate, int count, int alreadyCrafted,
+                              String[] pattern, int patternWidth, Map<Character, Predicate<ItemStack>> ingredientPredicates,
+                              CraftProgress progress, ClientPlayerInteractionManager interactionManager) {
+        int resultSlotIndex = container.getCraftingResultSlotIndex();
+        int craftingSlotCount = container.getCraftingSlotCount();
+
+        Map<Character, IntList> gridSlots = new HashMap<>();
+        for (int x = 0; x < patternWidth; x++) {
+            for (int y = 0; y < pattern.length; y++) {
+                char c = pattern[y].charAt(x);
+                if (c != ' ') {
+                    gridSlots.computeIfAbsent(c, k -> new IntArrayList()).add(1 + x + container.getCraftingWidth() * y);
+                }
+            }
+        }
+        Map<Character, IntList> sourceSlots = new HashMap<>();
+        Map<Character, IntList> ingredientsNeeded = new HashMap<>();
+
         // Craft the items
         int craftsNeeded = count;
         craftLoop: while (craftsNeeded > 0) {
-            Map<Character, List<Integer>> ingredientsNeeded = new HashMap<>();
-            for (int x = 0; x < patternWidth; x++) {
-                for (int y = 0; y < pattern.length; y++) {
-                    char c = pattern[y].charAt(x);
-                    if (c != ' ') {
-                        int slotId = 1 + x + container.getCraftingWidth() * y;
-                        Slot slot = container.getSlot(slotId);
-                        if (!ingredientPredicates.get(c).test(slot.getStack())) {
+            ingredientsNeeded.clear();
+            for (Map.Entry<Character, IntList> ingredient : gridSlots.entrySet()) {
+                Predicate<ItemStack> ingredientPredicate = ingredientPredicates.get(ingredient.getKey());
+                for (int slotId : ingredient.getValue()) {
+                    Slot slot = container.getSlot(slotId);
+                    if (!ingredientPredicate.test(slot.getStack())) {
+                        if (slot.hasStack()) {
+                            if (!container.getCursorStack().isEmpty()) {
+                                craftInsertIntoPlayerInv(container, interactionManager);
+                            }
+                            interactionManager.clickSlot(container.syncId, slotId, 0, SlotActionType.QUICK_MOVE, getEntity());
                             if (slot.hasStack()) {
-                                if (!container.getCursorStack().isEmpty()) {
-                                    craftInsertIntoPlayerInv(container, interactionManager);
-                                }
-                                interactionManager.clickSlot(container.syncId, slotId, 0, SlotActionType.QUICK_MOVE, getEntity());
-                                if (slot.hasStack()) {
-                                    interactionManager.clickSlot(container.syncId, slotId, 1, SlotActionType.THROW, getEntity());
-                                }
+                                interactionManager.clickSlot(container.syncId, slotId, 1, SlotActionType.THROW, getEntity());
                             }
-                            ingredientsNeeded.computeIfAbsent(c, k -> new ArrayList<>()).add(slotId);
                         }
+                        ingredientsNeeded.computeIfAbsent(ingredient.getKey(), k -> new IntArrayList()).add(slotId);
                     }
                 }
             }
@@ -446,7 +837,7 @@ public class ScriptPlayer extends ScriptLivingEntity {
                 int timeout = 0;
                 Slot resultSlot = container.getSlot(resultSlotIndex);
                 while (!resultPredicate.test(resultSlot.getStack())) {
-                    ScriptManager.passTick();
+                    progress.passTick(alreadyCrafted + count - craftsNeeded);
                     if (timeout++ > 100) {
                         break craftLoop;
                     }
@@ -469,32 +860,18 @@ public class ScriptPlayer extends ScriptLivingEntity {
                         break;
                     }
                 }
-                ingredientFillLoop: for (Map.Entry<Character, List<Integer>> ingredient : ingredientsNeeded.entrySet()) {
+                ingredientFillLoop: for (Map.Entry<Character, IntList> ingredient : ingredientsNeeded.entrySet()) {
                     Predicate<ItemStack> ingredientPredicate = ingredientPredicates.get(ingredient.getKey());
-                    List<Integer> destSlots = ingredient.getValue();
+                    IntList destSlots = ingredient.getValue();
                     while (!destSlots.isEmpty()) {
-                        boolean foundIngredient = false;
-                        for (Slot slot : container.slots) {
-                            if (isPlayerInvSlot(container, slot)) {
-                                if (ingredientPredicate.test(slot.getStack())) {
-                                    List<Integer> slotsToPlace = slot.getStack().getCount() < destSlots.size() ? destSlots.subList(0, slot.getStack().getCount()) : destSlots;
-                                    interactionManager.clickSlot(container.syncId, slot.id, 0, SlotActionType.PICKUP, getEntity());
-                                    if (slotsToPlace.size() == 1) {
-                                        interactionManager.clickSlot(container.syncId, slotsToPlace.get(0), 0, SlotActionType.PICKUP, getEntity());
-                                    } else {
-                                        interactionManager.clickSlot(container.syncId, slotsToPlace.get(0), ScreenHandler.packQuickCraftData(0, 0), SlotActionType.QUICK_CRAFT, getEntity());
-                                        for (int destSlot : slotsToPlace) {
-                                            interactionManager.clickSlot(container.syncId, destSlot, ScreenHandler.packQuickCraftData(1, 0), SlotActionType.QUICK_CRAFT, getEntity());
-                                        }
-                                        interactionManager.clickSlot(container.syncId, slotsToPlace.get(slotsToPlace.size() - 1), ScreenHandler.packQuickCraftData(2, 0), SlotActionType.QUICK_CRAFT, getEntity());
-                                    }
-                                    foundIngredient = !slotsToPlace.isEmpty();
-                                    slotsToPlace.clear();
-                                    break;
-                                }
-                            }
+                        IntList sources = sourceSlots.computeIfAbsent(ingredient.getKey(), k -> new IntArrayList());
+                        int sourceSlot = nextIngredientSlot(container, sources, ingredientPredicate);
+                        if (sourceSlot == -1) {
+                            // crafted items might have been put into the inventory since the last search
+                            findIngredientSlots(container, sources, ingredientPredicate);
+                            sourceSlot = nextIngredientSlot(container, sources, ingredientPredicate);
                         }
-                        if (!foundIngredient) {
+                        if (sourceSlot == -1) {
                             if (craftingGridStartedEmpty) {
                                 break craftLoop;
                             } else {
@@ -502,16 +879,63 @@ public class ScriptPlayer extends ScriptLivingEntity {
                                 break ingredientFillLoop;
                             }
                         }
+
+                        int sourceCount = container.getSlot(sourceSlot).getStack().getCount();
+                        IntList slotsToPlace = sourceCount < destSlots.size() ? destSlots.subList(0, sourceCount) : destSlots;
+                        interactionManager.clickSlot(container.syncId, sourceSlot, 0, SlotActionType.PICKUP, getEntity());
+                        if (slotsToPlace.size() == 1) {
+                            interactionManager.clickSlot(container.syncId, slotsToPlace.getInt(0), 0, SlotActionType.PICKUP, getEntity());
+                        } else {
+                            interactionManager.clickSlot(container.syncId, slotsToPlace.getInt(0), ScreenHandler.packQuickCraftData(0, 0), SlotActionType.QUICK_CRAFT, getEntity());
+                            for (int destSlot : slotsToPlace) {
+                                interactionManager.clickSlot(container.syncId, destSlot, ScreenHandler.packQuickCraftData(1, 0), SlotActionType.QUICK_CRAFT, getEntity());
+                            }
+                            interactionManager.clickSlot(container.syncId, slotsToPlace.getInt(slotsToPlace.size() - 1), ScreenHandler.packQuickCraftData(2, 0), SlotActionType.QUICK_CRAFT, getEntity());
+                        }
+                        slotsToPlace.clear();
+                        if (!container.getCursorStack().isEmpty()) {
+                            // put the rest of the stack back where it came from, so the slot can be used again
+                            interactionManager.clickSlot(container.syncId, sourceSlot, 0, SlotActionType.PICKUP, getEntity());
+                        }
                     }
                 }
             }
         }
 
-        emptyCraftingGrid(container, resultSlotIndex, craftingSlotCount, interactionManager);
-
         return count - craftsNeeded;
     }
 
+    private int nextIngredientSlot(AbstractRecipeScreenHandler<?> container, IntList sources, Predicate<ItemStack> ingredientPredicate) {
+        while (!sources.isEmpty()) {
+            int slotId = sources.getInt(0);
+            if (ingredientPredicate.test(container.getSlot(slotId).getStack()))
+                return slotId;
+            sources.removeInt(0);
+        }
+        return -1;
+    }
+
+    private void findIngredientSlots(AbstractRecipeScreenHandler<?> container, IntList sources, Predicate<ItemStack> ingredientPredicate) {
+        sources.clear();
+        for (Slot slot : container.slots) {
+            if (isPlayerInvSlot(container, slot) && ingredientPredicate.test(slot.getStack())) {
+                sources.add(slot.id);
+            }
+        }
+    }
+
+    private static boolean isCraftingGridEmpty(AbstractRecipeScreenHandler<?> container, int resultSlotIndex, int craftingSlotCount) {
+        if (!container.getCursorStack().isEmpty()) {
+            return false;
+        }
+        for (int slotIndex = resultSlotIndex + 1; slotIndex < resultSlotIndex + craftingSlotCount; slotIndex++) {
+            if (container.getSlot(slotIndex).hasStack()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void emptyCraftingGrid(AbstractRecipeScreenHandler<?> container, int resultSlotIndex, int craftingSlotCount, ClientPlayerInteractionManager interactionManager) {
         // Get rid of all items in the cursor + the crafting grid
         if (!container.getCursorStack().isEmpty()) {
@@ -793,4 +1217,24 @@ public class ScriptPlayer extends ScriptLivingEntity {
         return ret[0];
     }
 
+    /**
+     * Passes ticks while crafting, reporting how many crafts have been managed so far to the script
+     */
+    private static final class CraftProgress {
+        private final ScriptFunction callback;
+        private int ticks;
+
+        CraftProgress(ScriptFunction callback) {
+            this.callback = callback;
+        }
+
+        void passTick(int crafted) {
+            ScriptManager.passTick();
+            ticks++;
+            if (callback != null) {
+                callback.call(crafted, ticks);
+            }
+        }
+    }
+
 }
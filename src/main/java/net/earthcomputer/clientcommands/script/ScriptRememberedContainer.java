@@ -0,0 +1,65 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.BlockPos;
+import org.graalvm.polyglot.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+@SuppressWarnings("unused")
+public class ScriptRememberedContainer {
+    private final ContainerMemory.Entry entry;
+
+    ScriptRememberedContainer(ContainerMemory.Entry entry) {
+        this.entry = entry;
+    }
+
+    public String getDimension() {
+        return entry.location().dimension();
+    }
+
+    public int getX() {
+        return BlockPos.unpackLongX(entry.location().pos());
+    }
+
+    public int getY() {
+        return BlockPos.unpackLongY(entry.location().pos());
+    }
+
+    public int getZ() {
+        return BlockPos.unpackLongZ(entry.location().pos());
+    }
+
+    public String getType() {
+        return entry.type();
+    }
+
+    /**
+     * The time the container was last seen, in milliseconds since the epoch
+     */
+    public long getTime() {
+        return entry.time();
+    }
+
+    public List<Object> getItems() {
+        List<Object> ret = new ArrayList<>(entry.stacks().size());
+        for (ItemStack stack : entry.stacks()) {
+            ret.add(ScriptUtil.fromNbt(stack.writeNbt(new NbtCompound())));
+        }
+        return ret;
+    }
+
+    public int countItems(Value item) {
+        Predicate<ItemStack> predicate = ScriptUtil.asItemStackPredicate(item);
+        int count = 0;
+        for (ItemStack stack : entry.stacks()) {
+            if (!stack.isEmpty() && predicate.test(stack)) {
+                count += stack.getCount();
+            }
+        }
+        return count;
+    }
+}
@@ -1,5 +1,9 @@
 package net.earthcomputer.clientcommands.script;
 
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.AbstractNbtList;
@@ -18,12 +22,17 @@ import net.minecraft.nbt.NbtLong;
 import net.minecraft.nbt.NbtLongArray;
 import net.minecraft.nbt.NbtShort;
 import net.minecraft.nbt.NbtString;
+import net.minecraft.tag.TagKey;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.registry.Registry;
 import org.graalvm.polyglot.Value;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -280,8 +289,20 @@ public class ScriptUtil {
         return null;
     }
 
+    static Item asItem(String name) {
+        Identifier id = new Identifier(name);
+        if (!Registry.ITEM.containsId(id))
+            throw new IllegalArgumentException("No such item: " + id);
+        return Registry.ITEM.get(id);
+    }
+
     static Predicate<ItemStack> asItemStackPredicate(Value obj) {
-        if (obj.isString()) {
+        if (obj.isString() && asString(obj).startsWith("#")) {
+            BitSet items = TagIndex.itemsInTag(asString(obj));
+            if (items == null)
+                throw new IllegalArgumentException("No such item tag: " + asString(obj));
+            return stack -> items.get(Registry.ITEM.getRawId(stack.getItem()));
+        } else if (obj.isString()) {
             Item item = Registry.ITEM.get(new Identifier(asString(obj)));
             return stack -> stack.getItem() == item;
         } else if (isFunction(obj)) {
@@ -298,13 +319,93 @@ public class ScriptUtil {
         }
     }
 
+    static Predicate<BlockState> asBlockStatePredicate(Value obj) {
+        if (obj.isString() && asString(obj).startsWith("#")) {
+            BitSet states = TagIndex.blockStatesInTag(asString(obj));
+            if (states == null)
+                throw new IllegalArgumentException("No such block tag: " + asString(obj));
+            return state -> states.get(Block.getRawIdFromState(state));
+        } else if (obj.isString()) {
+            Identifier id = new Identifier(asString(obj));
+            if (!Registry.BLOCK.containsId(id))
+                throw new IllegalArgumentException("No such block: " + id);
+            Block block = Registry.BLOCK.get(id);
+            return state -> state.getBlock() == block;
+        } else if (isFunction(obj)) {
+            ScriptFunction func = asFunction(obj);
+            return state -> asBoolean(func.call(BeanWrapper.wrap(new ScriptBlockState(state))));
+        } else {
+            throw new IllegalArgumentException("Cannot interpret " + obj + " as a block predicate");
+        }
+    }
+
+    static Predicate<Entity> asEntityPredicate(Value obj) {
+        if (isFunction(obj)) {
+            ScriptFunction func = asFunction(obj);
+            return entity -> asBoolean(func.call(ScriptEntity.create(entity)));
+        } else if (obj.isString()) {
+            return asEntityTypePredicate(obj);
+        } else {
+            throw new IllegalArgumentException("Cannot interpret " + obj + " as an entity predicate");
+        }
+    }
+
+    /**
+     * Like {@link #asEntityPredicate(Value)}, but only accepts entity types and tags, so that the predicate doesn't call
+     * into the script and can be tested from any thread
+     */
+    static Predicate<Entity> asEntityTypePredicate(Value obj) {
+        if (!obj.isString()) {
+            throw new IllegalArgumentException("Cannot interpret " + obj + " as an entity type or tag");
+        }
+        if (asString(obj).startsWith("#")) {
+            TagKey<EntityType<?>> tag = TagKey.of(Registry.ENTITY_TYPE_KEY, new Identifier(asString(obj).substring(1)));
+            return entity -> entity.getType().isIn(tag);
+        } else {
+            EntityType<?> type = asEntityType(obj);
+            return entity -> entity.getType() == type;
+        }
+    }
+
+    static EntityType<?> asEntityType(Value obj) {
+        Identifier id = new Identifier(asString(obj));
+        if (!Registry.ENTITY_TYPE.containsId(id))
+            throw new IllegalArgumentException("No such entity type: " + id);
+        return Registry.ENTITY_TYPE.get(id);
+    }
+
+    static BlockPos asBlockPos(Value obj) {
+        return new BlockPos(obj.getMember("x").asDouble(), obj.getMember("y").asDouble(), obj.getMember("z").asDouble());
+    }
+
+    static Box asBox(Value obj) {
+        return new Box(
+                obj.getMember("x1").asDouble(), obj.getMember("y1").asDouble(), obj.getMember("z1").asDouble(),
+                obj.getMember("x2").asDouble(), obj.getMember("y2").asDouble(), obj.getMember("z2").asDouble());
+    }
+
+    static BlockBox asBlockBox(Value obj) {
+        return BlockBox.create(
+                new BlockPos(obj.getMember("x1").asInt(), obj.getMember("y1").asInt(), obj.getMember("z1").asInt()),
+                new BlockPos(obj.getMember("x2").asInt(), obj.getMember("y2").asInt(), obj.getMember("z2").asInt()));
+    }
+
     static <T> T unwrap(Value obj, Class<T> type) {
-        if (obj.isHostObject() && obj.asHostObject() instanceof BeanWrapper) {
+        if (obj.isProxyObject() && obj.asProxyObject() instanceof BeanWrapper) {
+            obj = ((BeanWrapper) obj.asProxyObject()).getDelegate();
+        } else if (obj.isHostObject() && obj.asHostObject() instanceof BeanWrapper) {
             obj = ((BeanWrapper) obj.asHostObject()).getDelegate();
         }
-        if (obj.isHostObject() && type.isInstance(obj)) {
+        if (obj.isHostObject() && type.isInstance(obj.asHostObject())) {
             return type.cast(obj.asHostObject());
         }
         return null;
     }
+
+    static Entity asEntity(Value obj) {
+        ScriptEntity entity = unwrap(obj, ScriptEntity.class);
+        if (entity == null)
+            throw new IllegalArgumentException("Cannot interpret " + obj + " as an entity");
+        return entity.getEntity();
+    }
 }
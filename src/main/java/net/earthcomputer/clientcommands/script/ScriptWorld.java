@@ -7,18 +7,34 @@ import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.predicate.entity.EntityPredicates;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.hit.HitResult;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.registry.Registry;
 import net.minecraft.world.LightType;
+import org.graalvm.polyglot.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
 
 @SuppressWarnings("unused")
 public class ScriptWorld {
     static final ScriptWorld INSTANCE = new ScriptWorld();
+    // the searched cube fits in the same volume as ScriptBlockRegion allows
+    private static final int MAX_SEARCH_RADIUS = 127;
 
     ScriptWorld() {}
 
@@ -34,7 +50,210 @@ public class ScriptWorld {
 
     public String getBlock(int x, int y, int z) {
         Block block = getWorld().getBlockState(new BlockPos(x, y, z)).getBlock();
-        return ScriptUtil.simplifyIdentifier(Registry.BLOCK.getId(block));
+        return RegistryNames.blockName(block);
+    }
+
+    public int getBlockId(int x, int y, int z) {
+        return Registry.BLOCK.getRawId(getWorld().getBlockState(new BlockPos(x, y, z)).getBlock());
+    }
+
+    public int getBlockStateId(int x, int y, int z) {
+        return Block.getRawIdFromState(getWorld().getBlockState(new BlockPos(x, y, z)));
+    }
+
+    public Object getBlocks(int x1, int y1, int z1, int x2, int y2, int z2) {
+        return BeanWrapper.wrap(ScriptBlockRegion.read(getWorld(), x1, y1, z1, x2, y2, z2));
+    }
+
+    public List<Object> findBlocks(Value matcher, Value center, int radius) {
+        return findBlocks(matcher, center, radius, -1);
+    }
+
+    public List<Object> findBlocks(Value matcher, Value center, int radius, int limit) {
+        if (radius < 0)
+            throw new IllegalArgumentException("Negative radius");
+        if (radius > MAX_SEARCH_RADIUS)
+            throw new IllegalArgumentException("Radius too large");
+        Predicate<BlockState> predicate = ScriptUtil.asBlockStatePredicate(matcher);
+        BlockPos centerPos = ScriptUtil.asBlockPos(center);
+        WorldSnapshot snapshot = WorldSnapshot.capture(getWorld(),
+                centerPos.getX() - radius, centerPos.getY() - radius, centerPos.getZ() - radius,
+                centerPos.getX() + radius, centerPos.getY() + radius, centerPos.getZ() + radius);
+
+        return toScriptPositions(BlockSearch.find(snapshot, predicate, centerPos, radius, limit));
+    }
+
+    public Object getLightLevels(String type, int x1, int y1, int z1, int x2, int y2, int z2) {
+        return BeanWrapper.wrap(ScriptLightRegion.read(getWorld(), ScriptLightRegion.parseLightType(type), x1, y1, z1, x2, y2, z2));
+    }
+
+    public List<Object> findBlocksByLight(Value matcher, Value center, int radius, String type, int maxLight) {
+        return findBlocksByLight(matcher, center, radius, type, maxLight, -1);
+    }
+
+    public List<Object> findBlocksByLight(Value matcher, Value center, int radius, String type, int maxLight, int limit) {
+        if (radius < 0)
+            throw new IllegalArgumentException("Negative radius");
+        if (radius > MAX_SEARCH_RADIUS)
+            throw new IllegalArgumentException("Radius too large");
+        LightType lightType = ScriptLightRegion.parseLightType(type);
+        Predicate<BlockState> predicate = ScriptUtil.asBlockStatePredicate(matcher);
+        BlockPos centerPos = ScriptUtil.asBlockPos(center);
+        ClientWorld world = getWorld();
+        // the light levels are read at the end of a tick, and the block states must come from the end of the same tick
+        ScriptLightRegion light;
+        WorldSnapshot snapshot;
+        do {
+            light = ScriptLightRegion.readAtEndOfTick(world, lightType,
+                    centerPos.getX() - radius, centerPos.getY() - radius, centerPos.getZ() - radius,
+                    centerPos.getX() + radius, centerPos.getY() + radius, centerPos.getZ() + radius);
+            snapshot = WorldSnapshot.tryCapture(world,
+                    centerPos.getX() - radius, centerPos.getY() - radius, centerPos.getZ() - radius,
+                    centerPos.getX() + radius, centerPos.getY() + radius, centerPos.getZ() + radius);
+        } while (snapshot == null || !light.isFromLastTick());
+        ScriptLightRegion finalLight = light;
+        byte[] levels = light.getLevels();
+        LongPredicate dark = pos -> levels[finalLight.getIndex(BlockPos.unpackLongX(pos), BlockPos.unpackLongY(pos), BlockPos.unpackLongZ(pos))] <= maxLight;
+        return toScriptPositions(BlockSearch.find(snapshot, predicate, dark, centerPos, radius, limit));
+    }
+
+    static List<Object> toScriptPositions(List<BlockPos> positions) {
+        List<Object> ret = new ArrayList<>(positions.size());
+        for (BlockPos pos : positions) {
+            ret.add(BeanWrapper.wrap(new ScriptPosition(pos.getX(), pos.getY(), pos.getZ())));
+        }
+        return ret;
+    }
+
+    public List<Object> getEntities(Value box) {
+        return getEntities(box, null, -1);
+    }
+
+    public List<Object> getEntities(Value box, Value matcher) {
+        return getEntities(box, matcher, -1);
+    }
+
+    public List<Object> getEntities(Value box, Value matcher, int limit) {
+        Box area = ScriptUtil.asBox(box);
+        ClientWorld world = getWorld();
+        // every path filters spectators the same way, so the result doesn't depend on which index was used
+        Predicate<Entity> filter = EntityPredicates.EXCEPT_SPECTATOR;
+        List<? extends Entity> entities;
+        if (matcher == null || matcher.isNull()) {
+            entities = world.getOtherEntities(null, area, filter);
+        } else if (matcher.isString() && !ScriptUtil.asString(matcher).startsWith("#")) {
+            // the entity sections are also grouped by class, so this only visits entities which could match
+            entities = world.getEntitiesByType(ScriptUtil.asEntityType(matcher), area, filter);
+        } else {
+            entities = world.getOtherEntities(null, area, filter.and(ScriptUtil.asEntityPredicate(matcher)));
+        }
+
+        if (limit >= 0 && entities.size() > limit) {
+            Entity player = MinecraftClient.getInstance().player;
+            List<Entity> sorted = new ArrayList<>(entities);
+            sorted.sort(Comparator.comparingDouble(player::squaredDistanceTo));
+            entities = sorted.subList(0, limit);
+        }
+
+        List<Object> ret = new ArrayList<>(entities.size());
+        for (Entity entity : entities) {
+            ret.add(ScriptEntity.create(entity));
+        }
+        return ret;
+    }
+
+    public Object getEntitySnapshot() {
+        return BeanWrapper.wrap(ScriptEntitySnapshot.get(getWorld()));
+    }
+
+    public Object getEntitySnapshot(Value filter) {
+        ScriptEntitySnapshot snapshot = ScriptEntitySnapshot.get(getWorld());
+        if (filter == null || filter.isNull()) {
+            return BeanWrapper.wrap(snapshot);
+        } else if (filter.isNumber()) {
+            PlayerEntity player = MinecraftClient.getInstance().player;
+            return BeanWrapper.wrap(snapshot.withinRange(player.getX(), player.getY(), player.getZ(), filter.asDouble()));
+        } else if (filter.isString()) {
+            return BeanWrapper.wrap(snapshot.forEntities(ScriptBuiltins.selectEntities(filter.asString())));
+        } else {
+            throw new IllegalArgumentException("Cannot interpret " + filter + " as a range or selector");
+        }
+    }
+
+    public List<List<Object>> predictPositions(Value entities, int ticks) {
+        if (!entities.hasArrayElements())
+            throw new IllegalArgumentException("Cannot interpret " + entities + " as an array of entities");
+        Entity[] javaEntities = new Entity[(int) entities.getArraySize()];
+        for (int i = 0; i < javaEntities.length; i++) {
+            javaEntities[i] = ScriptUtil.asEntity(entities.getArrayElement(i));
+        }
+        // the client thread is waiting for the script, so the world can be read from several threads at once
+        Vec3d[][] predictions = Arrays.stream(javaEntities).parallel().map(entity -> EntityPredictor.predict(entity, ticks)).toArray(Vec3d[][]::new);
+        List<List<Object>> ret = new ArrayList<>(predictions.length);
+        for (Vec3d[] prediction : predictions) {
+            ret.add(ScriptEntity.toScriptPositions(prediction));
+        }
+        return ret;
+    }
+
+    public Object watchEntities(Value box) {
+        return watchEntities(box, null, 1);
+    }
+
+    public Object watchEntities(Value box, Value matcher) {
+        return watchEntities(box, matcher, 1);
+    }
+
+    public Object watchEntities(Value box, Value matcher, double moveThreshold) {
+        Predicate<Entity> predicate = matcher == null || matcher.isNull() ? EntityPredicates.EXCEPT_SPECTATOR : EntityPredicates.EXCEPT_SPECTATOR.and(ScriptUtil.asEntityTypePredicate(matcher));
+        return BeanWrapper.wrap(ScriptEntityWatcher.create(ScriptUtil.asBox(box), predicate, moveThreshold));
+    }
+
+    public long regionVersion(Value box) {
+        return SectionVersions.getRegionVersion(ScriptUtil.asBlockBox(box));
+    }
+
+    public Object createSnapshot(Value box) {
+        return BeanWrapper.wrap(ScriptWorldSnapshot.capture(getWorld(), ScriptUtil.asBlockBox(box)));
+    }
+
+    public Object watchBlocks(Value box) {
+        return watchBlocks(box, null);
+    }
+
+    public Object watchBlocks(Value box, Value matcher) {
+        boolean noMatcher = matcher == null || matcher.isNull();
+        Predicate<BlockState> predicate = noMatcher ? state -> true : ScriptUtil.asBlockStatePredicate(matcher);
+        return BeanWrapper.wrap(ScriptBlockWatcher.create(ScriptUtil.asBlockBox(box), predicate, !noMatcher && ScriptUtil.isFunction(matcher)));
+    }
+
+    public Object getRememberedContainer(int x, int y, int z) {
+        ContainerMemory.Entry entry = ContainerMemory.get(new ContainerMemory.Location(ContainerMemory.dimensionName(getWorld()), BlockPos.asLong(x, y, z)));
+        return entry == null ? null : BeanWrapper.wrap(new ScriptRememberedContainer(entry));
+    }
+
+    public List<Object> findRememberedItems(Value item) {
+        List<ContainerMemory.Entry> entries;
+        if (item.isString() && !ScriptUtil.asString(item).startsWith("#")) {
+            // look up the index directly
+            Identifier id = new Identifier(ScriptUtil.asString(item));
+            if (!Registry.ITEM.containsId(id))
+                throw new IllegalArgumentException("No such item: " + id);
+            entries = ContainerMemory.findItem(Registry.ITEM.get(id));
+        } else {
+            Predicate<ItemStack> predicate = ScriptUtil.asItemStackPredicate(item);
+            entries = ContainerMemory.getAll();
+            entries.removeIf(entry -> entry.stacks().stream().noneMatch(stack -> !stack.isEmpty() && predicate.test(stack)));
+        }
+        List<Object> ret = new ArrayList<>(entries.size());
+        for (ContainerMemory.Entry entry : entries) {
+            ret.add(BeanWrapper.wrap(new ScriptRememberedContainer(entry)));
+        }
+        return ret;
+    }
+
+    public void forgetContainer(int x, int y, int z) {
+        ContainerMemory.forget(new ContainerMemory.Location(ContainerMemory.dimensionName(getWorld()), BlockPos.asLong(x, y, z)));
     }
 
     public Object getBlockProperty(int x, int y, int z, String property) {
@@ -53,7 +272,19 @@ public class ScriptWorld {
         BlockEntity be = getWorld().getBlockEntity(new BlockPos(x, y, z));
         if (be == null)
             return null;
-        return ScriptUtil.fromNbt(be.createNbt());
+        return BlockEntityNbtCache.get(be);
+    }
+
+    public Object getBlockEntityNbt(int x, int y, int z, Value paths) {
+        BlockEntity be = getWorld().getBlockEntity(new BlockPos(x, y, z));
+        if (be == null)
+            return null;
+        return NbtPaths.project(paths, () -> BlockEntityNbtCache.getRaw(be));
+    }
+
+    public boolean isBlockEntityDataSynced(int x, int y, int z) {
+        BlockEntity be = getWorld().getBlockEntity(new BlockPos(x, y, z));
+        return be != null && BlockEntityNbtCache.isSynced(be);
     }
 
     public int getBlockLight(int x, int y, int z) {
@@ -73,6 +304,37 @@ public class ScriptWorld {
         return ret == null ? null : BeanWrapper.wrap(new ScriptPosition(ret));
     }
 
+    public List<Object> getClosestVisiblePoints(Value positions) {
+        return getClosestVisiblePoints(positions, null);
+    }
+
+    public List<Object> getClosestVisiblePoints(Value positions, Value sides) {
+        int count = (int) positions.getArraySize();
+        BlockPos[] targets = new BlockPos[count];
+        Direction[] dirs = new Direction[count];
+        for (int i = 0; i < count; i++) {
+            targets[i] = ScriptUtil.asBlockPos(positions.getArrayElement(i));
+            if (sides != null && !sides.isNull()) {
+                Value side = sides.hasArrayElements() ? sides.getArrayElement(i) : sides;
+                dirs[i] = ScriptUtil.getDirectionFromString(ScriptUtil.asString(side));
+            }
+        }
+
+        PlayerEntity player = MinecraftClient.getInstance().player;
+        Vec3d origin = player.getCameraPosVec(0);
+        // anything further away than this is out of reach anyway
+        int range = 8;
+        WorldSnapshot snapshot = WorldSnapshot.capture(getWorld(),
+                MathHelper.floor(origin.x) - range, MathHelper.floor(origin.y) - range, MathHelper.floor(origin.z) - range,
+                MathHelper.floor(origin.x) + range, MathHelper.floor(origin.y) + range, MathHelper.floor(origin.z) + range);
+
+        List<Object> ret = new ArrayList<>(count);
+        for (Vec3d point : VisibilitySolver.solve(snapshot, player, origin, targets, dirs)) {
+            ret.add(point == null ? null : BeanWrapper.wrap(new ScriptPosition(point)));
+        }
+        return ret;
+    }
+
     static Vec3d getClosestVisiblePoint0(int x, int y, int z, String side, boolean keepExistingHitResult) {
         BlockPos pos = new BlockPos(x, y, z);
         Direction dir = ScriptUtil.getDirectionFromString(side);
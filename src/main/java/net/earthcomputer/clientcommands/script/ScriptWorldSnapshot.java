@@ -0,0 +1,95 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.Registry;
+import org.graalvm.polyglot.Value;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+
+@SuppressWarnings("unused")
+public class ScriptWorldSnapshot {
+    private final BlockBox box;
+    private final WorldSnapshot snapshot;
+
+    private ScriptWorldSnapshot(BlockBox box, WorldSnapshot snapshot) {
+        this.box = box;
+        this.snapshot = snapshot;
+    }
+
+    static ScriptWorldSnapshot capture(ClientWorld world, BlockBox box) {
+        WorldSnapshot snapshot = WorldSnapshot.capture(world, box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+        return new ScriptWorldSnapshot(box, snapshot);
+    }
+
+    public int getMinX() {
+        return box.getMinX();
+    }
+
+    public int getMinY() {
+        return box.getMinY();
+    }
+
+    public int getMinZ() {
+        return box.getMinZ();
+    }
+
+    public int getMaxX() {
+        return box.getMaxX();
+    }
+
+    public int getMaxY() {
+        return box.getMaxY();
+    }
+
+    public int getMaxZ() {
+        return box.getMaxZ();
+    }
+
+    private BlockState getState(int x, int y, int z) {
+        if (!box.contains(x, y, z)) {
+            throw new IndexOutOfBoundsException("Position is outside of the snapshot");
+        }
+        return snapshot.getBlockState(x, y, z);
+    }
+
+    public String getBlock(int x, int y, int z) {
+        return RegistryNames.blockName(getState(x, y, z).getBlock());
+    }
+
+    public int getBlockId(int x, int y, int z) {
+        return Registry.BLOCK.getRawId(getState(x, y, z).getBlock());
+    }
+
+    public int getBlockStateId(int x, int y, int z) {
+        return Block.getRawIdFromState(getState(x, y, z));
+    }
+
+    public Object getBlockState(int x, int y, int z) {
+        return BeanWrapper.wrap(new ScriptBlockState(getState(x, y, z)));
+    }
+
+    public Object getBlocks(int x1, int y1, int z1, int x2, int y2, int z2) {
+        if (!box.contains(x1, y1, z1) || !box.contains(x2, y2, z2)) {
+            throw new IndexOutOfBoundsException("Region is outside of the snapshot");
+        }
+        return BeanWrapper.wrap(ScriptBlockRegion.read(snapshot, x1, y1, z1, x2, y2, z2));
+    }
+
+    public List<Object> findBlocks(Value matcher, Value center, int radius) {
+        return findBlocks(matcher, center, radius, -1);
+    }
+
+    public List<Object> findBlocks(Value matcher, Value center, int radius, int limit) {
+        if (radius < 0)
+            throw new IllegalArgumentException("Negative radius");
+        BlockPos centerPos = ScriptUtil.asBlockPos(center);
+        // only search the captured area, the rest of the snapshot's sections weren't asked for
+        LongPredicate inBox = pos -> box.contains(BlockPos.unpackLongX(pos), BlockPos.unpackLongY(pos), BlockPos.unpackLongZ(pos));
+        return ScriptWorld.toScriptPositions(BlockSearch.find(snapshot, ScriptUtil.asBlockStatePredicate(matcher), inBox, centerPos, radius, limit));
+    }
+}
@@ -0,0 +1,100 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+/**
+ * Keeps a version number per chunk section, which changes whenever a block in the section changes or its chunk is
+ * loaded or unloaded. Versions come from a single counter which never goes backwards, so the maximum version over a
+ * region changes whenever something in the region changed, and never returns to an earlier value.
+ *
+ * <p>Entries are dropped when their chunk is unloaded, so only loaded sections take up memory. To keep the region
+ * version from going back to an old value, sections in unloaded chunks count as the version of the latest unload.
+ * This means regions containing unloaded chunks may report changes which happened elsewhere.</p>
+ */
+final class SectionVersions {
+    // Guarded by itself
+    private static final Long2LongMap versions = new Long2LongOpenHashMap();
+    private static ClientWorld trackedWorld;
+    private static long nextVersion = 1;
+    // the version of sections which haven't changed since we started tracking the current world
+    private static long baseVersion = 0;
+    // the version of sections in unloaded chunks
+    private static long unloadVersion = 0;
+
+    private SectionVersions() {}
+
+    static void onBlockChange(BlockPos pos, BlockState oldState, BlockState newState) {
+        synchronized (versions) {
+            checkWorld();
+            versions.put(ChunkSectionPos.asLong(ChunkSectionPos.getSectionCoord(pos.getX()), ChunkSectionPos.getSectionCoord(pos.getY()), ChunkSectionPos.getSectionCoord(pos.getZ())), nextVersion++);
+        }
+    }
+
+    static void onChunkChange(int chunkX, int chunkZ) {
+        synchronized (versions) {
+            ClientWorld world = checkWorld();
+            if (world == null) {
+                return;
+            }
+            long version = nextVersion++;
+            if (world.getChunkManager().isChunkLoaded(chunkX, chunkZ)) {
+                for (int sectionY = world.getBottomSectionCoord(); sectionY < world.getTopSectionCoord(); sectionY++) {
+                    versions.put(ChunkSectionPos.asLong(chunkX, sectionY, chunkZ), version);
+                }
+            } else {
+                unloadVersion = version;
+                for (int sectionY = world.getBottomSectionCoord(); sectionY < world.getTopSectionCoord(); sectionY++) {
+                    versions.remove(ChunkSectionPos.asLong(chunkX, sectionY, chunkZ));
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the versions of the previous world as soon as it is left, rather than when a script next asks
+     */
+    static void onTick() {
+        synchronized (versions) {
+            checkWorld();
+        }
+    }
+
+    static long getRegionVersion(BlockBox box) {
+        synchronized (versions) {
+            ClientWorld world = checkWorld();
+            long maxVersion = baseVersion;
+            for (int x = ChunkSectionPos.getSectionCoord(box.getMinX()); x <= ChunkSectionPos.getSectionCoord(box.getMaxX()); x++) {
+                for (int z = ChunkSectionPos.getSectionCoord(box.getMinZ()); z <= ChunkSectionPos.getSectionCoord(box.getMaxZ()); z++) {
+                    if (world != null && !world.getChunkManager().isChunkLoaded(x, z)) {
+                        maxVersion = Math.max(maxVersion, unloadVersion);
+                    }
+                }
+                for (int y = ChunkSectionPos.getSectionCoord(box.getMinY()); y <= ChunkSectionPos.getSectionCoord(box.getMaxY()); y++) {
+                    for (int z = ChunkSectionPos.getSectionCoord(box.getMinZ()); z <= ChunkSectionPos.getSectionCoord(box.getMaxZ()); z++) {
+                        maxVersion = Math.max(maxVersion, versions.get(ChunkSectionPos.asLong(x, y, z)));
+                    }
+                }
+            }
+            return maxVersion;
+        }
+    }
+
+    private static ClientWorld checkWorld() {
+        ClientWorld world = MinecraftClient.getInstance().world;
+        if (world != trackedWorld) {
+            // everything may have changed, so start again from a version no region has had before
+            trackedWorld = world;
+            versions.clear();
+            baseVersion = nextVersion++;
+            unloadVersion = baseVersion;
+        }
+        return world;
+    }
+}
@@ -0,0 +1,116 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.earthcomputer.clientcommands.script.ducks.IScreenHandler;
+import net.minecraft.client.gui.screen.ingame.CreativeInventoryScreen;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.screen.slot.Slot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maps between script slot ids and the slots of a screen handler in both directions. A screen handler's slots don't
+ * change after it's constructed, so the map is built once per screen handler and shared by all the
+ * {@link ScriptInventory} instances which use it. The map is stored on the screen handler itself, since it references
+ * the screen handler's slots and through them the screen handler, so it couldn't be the value of a weak map.
+ */
+final class SlotIdMap {
+    private final Slot[] slotsById;
+    private final Reference2IntMap<Slot> idsBySlot;
+    // the slots which are part of the inventory being viewed, in id order
+    private final List<Slot> slots;
+
+    private SlotIdMap(Slot[] slotsById, List<Slot> slots) {
+        this.slotsById = slotsById;
+        this.idsBySlot = new Reference2IntOpenHashMap<>(slotsById.length);
+        this.idsBySlot.defaultReturnValue(-1);
+        for (int id = 0; id < slotsById.length; id++) {
+            if (slotsById[id] != null) {
+                idsBySlot.putIfAbsent(slotsById[id], id);
+            }
+        }
+        this.slots = Collections.unmodifiableList(slots);
+    }
+
+    static SlotIdMap get(ScreenHandler container, PlayerEntity player) {
+        if (container == player.playerScreenHandler) {
+            ScreenHandler current = player.currentScreenHandler;
+            // the creative screen swaps out its slots when changing tabs
+            if (current instanceof CreativeInventoryScreen.CreativeScreenHandler) {
+                return buildPlayerView(current, player.getInventory(), player.playerScreenHandler);
+            }
+            IScreenHandler duck = (IScreenHandler) current;
+            SlotIdMap slotIds = (SlotIdMap) duck.clientcommands_getPlayerSlotIds();
+            if (slotIds == null) {
+                slotIds = buildPlayerView(current, player.getInventory(), player.playerScreenHandler);
+                duck.clientcommands_setPlayerSlotIds(slotIds);
+            }
+            return slotIds;
+        } else {
+            if (container instanceof CreativeInventoryScreen.CreativeScreenHandler) {
+                return buildContainerView(container, player.getInventory());
+            }
+            IScreenHandler duck = (IScreenHandler) container;
+            SlotIdMap slotIds = (SlotIdMap) duck.clientcommands_getContainerSlotIds();
+            if (slotIds == null) {
+                slotIds = buildContainerView(container, player.getInventory());
+                duck.clientcommands_setContainerSlotIds(slotIds);
+            }
+            return slotIds;
+        }
+    }
+
+    /**
+     * The player inventory slots that are visible in the current screen handler come first, indexed by their index in
+     * the player inventory. If the current screen handler is the player's own, all of its slots follow, indexed by
+     * their slot id.
+     */
+    static SlotIdMap buildPlayerView(ScreenHandler current, PlayerInventory inventory, ScreenHandler playerScreenHandler) {
+        int size = inventory.size();
+        boolean ownScreen = current == playerScreenHandler;
+        Slot[] slotsById = new Slot[ownScreen ? size + current.slots.size() : size];
+        for (Slot slot : current.slots) {
+            if (slot.inventory == inventory && slot.getIndex() < size && slotsById[slot.getIndex()] == null) {
+                slotsById[slot.getIndex()] = slot;
+            }
+            if (ownScreen) {
+                slotsById[size + slot.id] = slot;
+            }
+        }
+        List<Slot> slots = new ArrayList<>(size);
+        for (int id = 0; id < size; id++) {
+            if (slotsById[id] != null) {
+                slots.add(slotsById[id]);
+            }
+        }
+        return new SlotIdMap(slotsById, slots);
+    }
+
+    static SlotIdMap buildContainerView(ScreenHandler container, Inventory playerInventory) {
+        List<Slot> slots = new ArrayList<>();
+        for (Slot slot : container.slots) {
+            if (slot.inventory != playerInventory) {
+                slots.add(slot);
+            }
+        }
+        return new SlotIdMap(slots.toArray(new Slot[0]), slots);
+    }
+
+    Slot getSlot(int id) {
+        return id >= 0 && id < slotsById.length ? slotsById[id] : null;
+    }
+
+    int getId(Slot slot) {
+        return idsBySlot.getInt(slot);
+    }
+
+    List<Slot> getSlots() {
+        return slots;
+    }
+}
@@ -0,0 +1,147 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.item.Item;
+import net.minecraft.tag.TagKey;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.RegistryEntry;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes block state and item tag membership as bitsets over raw ids, so that tag checks are a single bit lookup and
+ * the tag list of a block or item is only built once. The tags are sent by the server, and the raw ids may be remapped
+ * by registry sync after them, so the index is rebuilt lazily after {@link #invalidate()}, which is called on both.
+ */
+public final class TagIndex {
+    private static volatile Index blocks;
+    private static volatile Index items;
+
+    private TagIndex() {}
+
+    public static void invalidate() {
+        blocks = null;
+        items = null;
+    }
+
+    /**
+     * Returns the set of block state raw ids in the given tag, or null if there is no such tag
+     */
+    @Nullable
+    static BitSet blockStatesInTag(String tag) {
+        return blocks().members.get(stripHash(tag));
+    }
+
+    static boolean isIn(BlockState state, String tag) {
+        BitSet members = blockStatesInTag(tag);
+        return members != null && members.get(Block.getRawIdFromState(state));
+    }
+
+    static List<String> getTags(BlockState state) {
+        return blocks().getTags(Block.getRawIdFromState(state));
+    }
+
+    /**
+     * Returns the set of item raw ids in the given tag, or null if there is no such tag
+     */
+    @Nullable
+    static BitSet itemsInTag(String tag) {
+        return items().members.get(stripHash(tag));
+    }
+
+    static boolean isIn(Item item, String tag) {
+        BitSet members = itemsInTag(tag);
+        return members != null && members.get(Registry.ITEM.getRawId(item));
+    }
+
+    static List<String> getTags(Item item) {
+        return items().getTags(Registry.ITEM.getRawId(item));
+    }
+
+    private static String stripHash(String tag) {
+        return tag.startsWith("#") ? tag.substring(1) : tag;
+    }
+
+    private static Index blocks() {
+        Index index = blocks;
+        if (index == null) {
+            index = new Index(Block.STATE_IDS.size());
+            for (TagKey<Block> tag : Registry.BLOCK.streamTags().toList()) {
+                BitSet members = new BitSet();
+                for (RegistryEntry<Block> entry : Registry.BLOCK.iterateEntries(tag)) {
+                    for (BlockState state : entry.value().getStateManager().getStates()) {
+                        members.set(Block.getRawIdFromState(state));
+                    }
+                }
+                index.add(tag, members);
+            }
+            index.buildTagLists();
+            blocks = index;
+        }
+        return index;
+    }
+
+    private static Index items() {
+        Index index = items;
+        if (index == null) {
+            index = new Index(Registry.ITEM.size());
+            for (TagKey<Item> tag : Registry.ITEM.streamTags().toList()) {
+                BitSet members = new BitSet();
+                for (RegistryEntry<Item> entry : Registry.ITEM.iterateEntries(tag)) {
+                    members.set(Registry.ITEM.getRawId(entry.value()));
+                }
+                index.add(tag, members);
+            }
+            index.buildTagLists();
+            items = index;
+        }
+        return index;
+    }
+
+    private static final class Index {
+        // both the simplified and full tag names map to the same bitset
+        private final Map<String, BitSet> members = new HashMap<>();
+        private final Map<String, BitSet> membersBySimpleName = new HashMap<>();
+        private final List<String>[] tagsById;
+
+        @SuppressWarnings("unchecked")
+        Index(int size) {
+            tagsById = new List[size];
+        }
+
+        void add(TagKey<?> tag, BitSet bits) {
+            String simpleName = ScriptUtil.simplifyIdentifier(tag.id());
+            members.put(simpleName, bits);
+            members.put(tag.id().toString(), bits);
+            membersBySimpleName.put(simpleName, bits);
+        }
+
+        void buildTagLists() {
+            List<List<String>> lists = new ArrayList<>(tagsById.length);
+            for (int i = 0; i < tagsById.length; i++) {
+                lists.add(new ArrayList<>());
+            }
+            membersBySimpleName.forEach((name, bits) -> {
+                for (int id = bits.nextSetBit(0); id >= 0 && id < tagsById.length; id = bits.nextSetBit(id + 1)) {
+                    lists.get(id).add(name);
+                }
+            });
+            for (int i = 0; i < tagsById.length; i++) {
+                tagsById[i] = List.copyOf(lists.get(i));
+            }
+        }
+
+        List<String> getTags(int rawId) {
+            if (rawId < 0 || rawId >= tagsById.length) {
+                return List.of();
+            }
+            return tagsById[rawId];
+        }
+    }
+}
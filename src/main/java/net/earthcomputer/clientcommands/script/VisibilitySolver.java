@@ -0,0 +1,139 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.hit.HitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.world.RaycastContext;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the closest visible points on many blocks at once, in parallel over a {@link WorldSnapshot}.
+ */
+final class VisibilitySolver {
+    private static final double REACH = 6;
+    private static final int SAMPLES_PER_AXIS = 4;
+    private static final int MAX_CACHED_SHAPES = 4096;
+    // Shapes are almost always shared between block states, and VoxelShape uses identity equality
+    private static final Map<VoxelShape, List<Sample>> SAMPLE_CACHE = new ConcurrentHashMap<>();
+
+    private VisibilitySolver() {}
+
+    static Vec3d[] solve(WorldSnapshot snapshot, Entity viewer, Vec3d origin, BlockPos[] targets, Direction[] sides) {
+        return IntStream.range(0, targets.length).parallel()
+                .mapToObj(i -> solve(snapshot, viewer, origin, targets[i], sides[i]))
+                .toArray(Vec3d[]::new);
+    }
+
+    private static Vec3d solve(WorldSnapshot snapshot, Entity viewer, Vec3d origin, BlockPos target, Direction side) {
+        if (origin.squaredDistanceTo(Vec3d.ofCenter(target)) > (REACH + 1) * (REACH + 1)) {
+            return null;
+        }
+        BlockState state = snapshot.getBlockState(target);
+        if (state.isAir()) {
+            return null;
+        }
+        VoxelShape shape = state.getOutlineShape(snapshot, target);
+        if (shape.isEmpty()) {
+            return null;
+        }
+
+        List<Sample> candidates = new ArrayList<>();
+        Vec3d localOrigin = origin.subtract(target.getX(), target.getY(), target.getZ());
+        for (Box box : shape.getBoundingBoxes()) {
+            for (Direction face : Direction.values()) {
+                if (isCandidateFace(box, face, side, localOrigin)) {
+                    candidates.add(new Sample(closestPointOnFace(box, face, localOrigin), face));
+                }
+            }
+        }
+        for (Sample sample : getSamples(shape)) {
+            if (side == null || sample.face() == side) {
+                candidates.add(sample);
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(sample -> sample.point().squaredDistanceTo(localOrigin)));
+
+        for (Sample sample : candidates) {
+            Vec3d point = sample.point().add(target.getX(), target.getY(), target.getZ());
+            if (origin.squaredDistanceTo(point) > REACH * REACH) {
+                return null;
+            }
+            // aim very slightly into the block so the ray doesn't stop short of its surface
+            Vec3d end = point.add(point.subtract(origin).normalize().multiply(0.001));
+            BlockHitResult hit = snapshot.raycast(new RaycastContext(origin, end, RaycastContext.ShapeType.OUTLINE, RaycastContext.FluidHandling.NONE, viewer));
+            if (hit.getType() == HitResult.Type.BLOCK && hit.getBlockPos().equals(target) && (side == null || hit.getSide() == side)) {
+                return hit.getPos();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isCandidateFace(Box box, Direction face, Direction side, Vec3d localOrigin) {
+        if (side != null && face != side) {
+            return false;
+        }
+        // only faces pointing towards the origin can be seen
+        double faceCoord = face.getDirection() == Direction.AxisDirection.POSITIVE ? box.getMax(face.getAxis()) : box.getMin(face.getAxis());
+        double originCoord = face.getAxis().choose(localOrigin.x, localOrigin.y, localOrigin.z);
+        return (originCoord - faceCoord) * face.getDirection().offset() > 0;
+    }
+
+    private static Vec3d closestPointOnFace(Box box, Direction face, Vec3d localOrigin) {
+        double x = MathHelper.clamp(localOrigin.x, box.minX, box.maxX);
+        double y = MathHelper.clamp(localOrigin.y, box.minY, box.maxY);
+        double z = MathHelper.clamp(localOrigin.z, box.minZ, box.maxZ);
+        boolean positive = face.getDirection() == Direction.AxisDirection.POSITIVE;
+        return switch (face.getAxis()) {
+            case X -> new Vec3d(positive ? box.maxX : box.minX, y, z);
+            case Y -> new Vec3d(x, positive ? box.maxY : box.minY, z);
+            case Z -> new Vec3d(x, y, positive ? box.maxZ : box.minZ);
+        };
+    }
+
+    private static List<Sample> getSamples(VoxelShape shape) {
+        List<Sample> samples = SAMPLE_CACHE.get(shape);
+        if (samples != null) {
+            return samples;
+        }
+        samples = new ArrayList<>();
+        for (Box box : shape.getBoundingBoxes()) {
+            for (Direction face : Direction.values()) {
+                boolean positive = face.getDirection() == Direction.AxisDirection.POSITIVE;
+                for (int u = 0; u < SAMPLES_PER_AXIS; u++) {
+                    for (int v = 0; v < SAMPLES_PER_AXIS; v++) {
+                        // sample the centers of a grid on the face, so that we stay away from the edges
+                        double fu = (u + 0.5) / SAMPLES_PER_AXIS;
+                        double fv = (v + 0.5) / SAMPLES_PER_AXIS;
+                        Vec3d point = switch (face.getAxis()) {
+                            case X -> new Vec3d(positive ? box.maxX : box.minX, MathHelper.lerp(fu, box.minY, box.maxY), MathHelper.lerp(fv, box.minZ, box.maxZ));
+                            case Y -> new Vec3d(MathHelper.lerp(fu, box.minX, box.maxX), positive ? box.maxY : box.minY, MathHelper.lerp(fv, box.minZ, box.maxZ));
+                            case Z -> new Vec3d(MathHelper.lerp(fu, box.minX, box.maxX), MathHelper.lerp(fv, box.minY, box.maxY), positive ? box.maxZ : box.minZ);
+                        };
+                        samples.add(new Sample(point, face));
+                    }
+                }
+            }
+        }
+        samples = List.copyOf(samples);
+        if (SAMPLE_CACHE.size() >= MAX_CACHED_SHAPES) {
+            SAMPLE_CACHE.clear();
+        }
+        SAMPLE_CACHE.put(shape, samples);
+        return samples;
+    }
+
+    private record Sample(Vec3d point, Direction face) {}
+}
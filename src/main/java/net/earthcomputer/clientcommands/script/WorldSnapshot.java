@@ -0,0 +1,342 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An immutable copy of the block states of the chunk sections in some area, which is safe to read from any thread.
+ * Block entities are not copied.
+ *
+ * <p>Sections are only ever copied on the client thread at the end of a tick, so every section of a snapshot shows the
+ * world as it was at the end of the same tick. Section copies are cached between captures, and sections which change
+ * are re-copied at the end of the tick (copy-on-write), so a script which repeatedly captures the same area only pays
+ * for the sections which actually changed. If a capture needs sections which aren't cached yet, it waits for the end of
+ * the tick for them to be copied. The copies themselves are never mutated, so they can be shared between any number of
+ * snapshots and threads.</p>
+ */
+class WorldSnapshot implements BlockView {
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+    static final int MAX_SECTIONS = 32 * 32 * 24;
+
+    // Guarded by LOCK
+    private static final Object LOCK = new Object();
+    @Nullable
+    private static ClientWorld cachedWorld;
+    @Nullable
+    private static SectionCache cache;
+
+    private final int bottomY;
+    private final int height;
+    private final Long2ObjectMap<PalettedContainer<BlockState>> sections;
+
+    WorldSnapshot(int bottomY, int height, Long2ObjectMap<PalettedContainer<BlockState>> sections) {
+        this.bottomY = bottomY;
+        this.height = height;
+        this.sections = Long2ObjectMaps.unmodifiable(sections);
+    }
+
+    /**
+     * Captures the sections in the box as of the end of the last tick, waiting for the end of the current tick if some
+     * of them haven't been copied yet. Must be called from a script thread
+     */
+    static WorldSnapshot capture(ClientWorld world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        while (true) {
+            WorldSnapshot snapshot = tryCapture(world, minX, minY, minZ, maxX, maxY, maxZ);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            ScriptManager.passTick();
+        }
+    }
+
+    /**
+     * Captures the sections in the box as of the end of the last tick, or returns null if some of them haven't been
+     * copied yet, in which case they will be copied at the end of the current tick
+     */
+    @Nullable
+    static WorldSnapshot tryCapture(ClientWorld world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        SectionCache worldCache;
+        synchronized (LOCK) {
+            if (world != cachedWorld || cache == null) {
+                cachedWorld = world;
+                cache = new SectionCache(new WorldSectionSource(world));
+            }
+            worldCache = cache;
+        }
+        Long2ObjectMap<PalettedContainer<BlockState>> sections = worldCache.tryCapture(minX, minY, minZ, maxX, maxY, maxZ);
+        if (sections == null) {
+            return null;
+        }
+        return new WorldSnapshot(world.getBottomY(), world.getHeight(), sections);
+    }
+
+    @Nullable
+    private static SectionCache currentCache() {
+        synchronized (LOCK) {
+            return cache;
+        }
+    }
+
+    static void onBlockChange(BlockPos pos, BlockState oldState, BlockState newState) {
+        SectionCache worldCache = currentCache();
+        if (worldCache != null) {
+            worldCache.markDirty(ChunkSectionPos.asLong(ChunkSectionPos.getSectionCoord(pos.getX()), ChunkSectionPos.getSectionCoord(pos.getY()), ChunkSectionPos.getSectionCoord(pos.getZ())));
+        }
+    }
+
+    /**
+     * Called when a chunk is loaded or unloaded, since chunk data packets replace the sections without notifying
+     * block change listeners
+     */
+    static void onChunkChange(int chunkX, int chunkZ) {
+        SectionCache worldCache = currentCache();
+        if (worldCache != null) {
+            worldCache.markColumnDirty(chunkX, chunkZ);
+        }
+    }
+
+    /**
+     * Called on the client thread at the end of each tick, copies the sections which changed during the tick or which
+     * a capture is waiting for
+     */
+    static void onTick() {
+        SectionCache worldCache;
+        synchronized (LOCK) {
+            if (cache == null) {
+                return;
+            }
+            if (MinecraftClient.getInstance().world != cachedWorld) {
+                cachedWorld = null;
+                cache = null;
+                return;
+            }
+            worldCache = cache;
+        }
+        worldCache.onTick();
+    }
+
+    /**
+     * The captured sections, keyed by {@link ChunkSectionPos#asLong}. Sections which are missing are all air.
+     */
+    Long2ObjectMap<PalettedContainer<BlockState>> getSections() {
+        return sections;
+    }
+
+    BlockState getBlockState(int x, int y, int z) {
+        PalettedContainer<BlockState> section = sections.get(ChunkSectionPos.asLong(ChunkSectionPos.getSectionCoord(x), ChunkSectionPos.getSectionCoord(y), ChunkSectionPos.getSectionCoord(z)));
+        if (section == null) {
+            return AIR;
+        }
+        return section.get(x & 15, y & 15, z & 15);
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    public FluidState getFluidState(BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Nullable
+    @Override
+    public BlockEntity getBlockEntity(BlockPos pos) {
+        return null;
+    }
+
+    @Override
+    public int getBottomY() {
+        return bottomY;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Where a {@link SectionCache} copies its sections from
+     */
+    interface SectionSource {
+        int getBottomSectionCoord();
+
+        /**
+         * Exclusive
+         */
+        int getTopSectionCoord();
+
+        /**
+         * Returns a copy of the block states of the section, or null if it is all air or not loaded
+         */
+        @Nullable
+        PalettedContainer<BlockState> copySection(long key);
+    }
+
+    private record WorldSectionSource(ClientWorld world) implements SectionSource {
+        @Override
+        public int getBottomSectionCoord() {
+            return world.getBottomSectionCoord();
+        }
+
+        @Override
+        public int getTopSectionCoord() {
+            return world.getTopSectionCoord();
+        }
+
+        @Nullable
+        @Override
+        public PalettedContainer<BlockState> copySection(long key) {
+            int chunkX = ChunkSectionPos.unpackX(key);
+            int chunkZ = ChunkSectionPos.unpackZ(key);
+            if (!world.getChunkManager().isChunkLoaded(chunkX, chunkZ)) {
+                return null;
+            }
+            ChunkSection section = world.getChunk(chunkX, chunkZ).getSectionArray()[world.sectionCoordToIndex(ChunkSectionPos.unpackY(key))];
+            if (section == null || !section.hasAny(state -> state != AIR)) {
+                return null;
+            }
+            return section.getBlockStateContainer().copy();
+        }
+    }
+
+    /**
+     * The cached section copies of one world. Captures only read the copies, which are made in {@link #onTick()}.
+     */
+    static final class SectionCache {
+        private static final int EVICT_INTERVAL = 20;
+        private static final int EVICT_AFTER_TICKS = 200;
+
+        private final SectionSource source;
+
+        // Guarded by this
+        private final Long2ObjectMap<CachedSection> cachedSections = new Long2ObjectOpenHashMap<>();
+        private final LongSet dirtySections = new LongOpenHashSet();
+        // sections which a capture is waiting to be copied
+        private final LongSet requestedSections = new LongOpenHashSet();
+        private int tick;
+
+        SectionCache(SectionSource source) {
+            this.source = source;
+        }
+
+        private static void checkSize(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            long sectionCount = (long) (ChunkSectionPos.getSectionCoord(maxX) - ChunkSectionPos.getSectionCoord(minX) + 1)
+                    * Math.max(0, ChunkSectionPos.getSectionCoord(maxY) - ChunkSectionPos.getSectionCoord(minY) + 1)
+                    * (ChunkSectionPos.getSectionCoord(maxZ) - ChunkSectionPos.getSectionCoord(minZ) + 1);
+            if (sectionCount > MAX_SECTIONS)
+                throw new IllegalArgumentException("Region too large");
+        }
+
+        /**
+         * Returns the sections in the box as they were at the end of the last tick. If some of them haven't been copied
+         * yet, asks for them to be copied at the end of the tick and returns null
+         */
+        @Nullable
+        synchronized Long2ObjectMap<PalettedContainer<BlockState>> tryCapture(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            int minSectionY = Math.max(ChunkSectionPos.getSectionCoord(minY), source.getBottomSectionCoord());
+            int maxSectionY = Math.min(ChunkSectionPos.getSectionCoord(maxY), source.getTopSectionCoord() - 1);
+            checkSize(minX, minSectionY << 4, minZ, maxX, maxSectionY << 4, maxZ);
+
+            Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+            boolean complete = true;
+            for (int chunkX = ChunkSectionPos.getSectionCoord(minX); chunkX <= ChunkSectionPos.getSectionCoord(maxX); chunkX++) {
+                for (int chunkZ = ChunkSectionPos.getSectionCoord(minZ); chunkZ <= ChunkSectionPos.getSectionCoord(maxZ); chunkZ++) {
+                    for (int sectionY = minSectionY; sectionY <= maxSectionY; sectionY++) {
+                        long key = ChunkSectionPos.asLong(chunkX, sectionY, chunkZ);
+                        CachedSection cached = cachedSections.get(key);
+                        if (cached == null) {
+                            requestedSections.add(key);
+                            complete = false;
+                            continue;
+                        }
+                        // Sections which are dirty still hold their copy from the end of the last tick, which is
+                        // consistent with the others
+                        cached.lastUsedTick = tick;
+                        if (complete && cached.container != null) {
+                            sections.put(key, cached.container);
+                        }
+                    }
+                }
+            }
+            return complete ? sections : null;
+        }
+
+        synchronized void markDirty(long key) {
+            if (cachedSections.containsKey(key)) {
+                dirtySections.add(key);
+            }
+        }
+
+        synchronized void markColumnDirty(int chunkX, int chunkZ) {
+            if (cachedSections.isEmpty()) {
+                return;
+            }
+            for (int sectionY = source.getBottomSectionCoord(); sectionY < source.getTopSectionCoord(); sectionY++) {
+                markDirty(ChunkSectionPos.asLong(chunkX, sectionY, chunkZ));
+            }
+        }
+
+        synchronized void onTick() {
+            tick++;
+
+            for (LongIterator itr = dirtySections.iterator(); itr.hasNext(); ) {
+                long key = itr.nextLong();
+                CachedSection cached = cachedSections.get(key);
+                if (cached != null) {
+                    // replace rather than update, snapshots may still be reading the old copy
+                    CachedSection copy = new CachedSection(source.copySection(key));
+                    copy.lastUsedTick = cached.lastUsedTick;
+                    cachedSections.put(key, copy);
+                }
+            }
+            dirtySections.clear();
+
+            for (LongIterator itr = requestedSections.iterator(); itr.hasNext(); ) {
+                long key = itr.nextLong();
+                if (!cachedSections.containsKey(key)) {
+                    CachedSection copy = new CachedSection(source.copySection(key));
+                    copy.lastUsedTick = tick;
+                    cachedSections.put(key, copy);
+                }
+            }
+            requestedSections.clear();
+
+            if (tick % EVICT_INTERVAL == 0) {
+                cachedSections.values().removeIf(cached -> tick - cached.lastUsedTick > EVICT_AFTER_TICKS);
+            }
+        }
+
+        synchronized int getCachedSectionCount() {
+            return cachedSections.size();
+        }
+    }
+
+    private static final class CachedSection {
+        // null if the section is all air or not loaded
+        @Nullable
+        final PalettedContainer<BlockState> container;
+        int lastUsedTick;
+
+        CachedSection(@Nullable PalettedContainer<BlockState> container) {
+            this.container = container;
+        }
+    }
+}
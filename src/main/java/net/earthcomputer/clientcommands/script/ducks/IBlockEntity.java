@@ -0,0 +1,19 @@
+package net.earthcomputer.clientcommands.script.ducks;
+
+public interface IBlockEntity {
+
+    /**
+     * Incremented every time the block entity reads NBT, i.e. whenever it is synced from the server. 0 if the block
+     * entity has never been synced.
+     */
+    int clientcommands_getNbtVersion();
+
+    /**
+     * The NBT cached by BlockEntityNbtCache, along with the NBT version it was created at, or null. Stored on the block
+     * entity so that it lives exactly as long as the block entity does.
+     */
+    Object clientcommands_getCachedNbt();
+
+    void clientcommands_setCachedNbt(Object cachedNbt);
+
+}
@@ -0,0 +1,20 @@
+package net.earthcomputer.clientcommands.script.ducks;
+
+public interface IScreenHandler {
+
+    /**
+     * The slot id map of the player inventory as seen from this screen handler, or null if it hasn't been built yet.
+     * Stored on the screen handler so that it lives exactly as long as the screen handler does.
+     */
+    Object clientcommands_getPlayerSlotIds();
+
+    void clientcommands_setPlayerSlotIds(Object slotIds);
+
+    /**
+     * The slot id map of this screen handler's container, or null if it hasn't been built yet
+     */
+    Object clientcommands_getContainerSlotIds();
+
+    void clientcommands_setContainerSlotIds(Object slotIds);
+
+}
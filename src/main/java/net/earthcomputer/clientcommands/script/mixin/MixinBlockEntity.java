@@ -0,0 +1,37 @@
+package net.earthcomputer.clientcommands.script.mixin;
+
+import net.earthcomputer.clientcommands.script.ducks.IBlockEntity;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.nbt.NbtCompound;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(BlockEntity.class)
+public class MixinBlockEntity implements IBlockEntity {
+
+    @Unique private volatile int nbtVersion;
+    @Unique private volatile Object cachedNbt;
+
+    @Inject(method = "readNbt", at = @At("HEAD"))
+    private void onReadNbt(NbtCompound nbt, CallbackInfo ci) {
+        nbtVersion++;
+    }
+
+    @Override
+    public int clientcommands_getNbtVersion() {
+        return nbtVersion;
+    }
+
+    @Override
+    public Object clientcommands_getCachedNbt() {
+        return cachedNbt;
+    }
+
+    @Override
+    public void clientcommands_setCachedNbt(Object cachedNbt) {
+        this.cachedNbt = cachedNbt;
+    }
+}
@@ -0,0 +1,33 @@
+package net.earthcomputer.clientcommands.script.mixin;
+
+import net.earthcomputer.clientcommands.script.ClientCommandsScripting;
+import net.earthcomputer.clientcommands.script.ScriptManager;
+import net.minecraft.client.world.ClientChunkManager;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.packet.s2c.play.ChunkData;
+import net.minecraft.world.chunk.WorldChunk;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.function.Consumer;
+
+@Mixin(ClientChunkManager.class)
+public class MixinClientChunkManager {
+    @Inject(method = "loadChunkFromPacket", at = @At("RETURN"))
+    private void onLoadChunkFromPacket(int x, int z, PacketByteBuf buf, NbtCompound nbt, Consumer<ChunkData.BlockEntityVisitor> consumer, CallbackInfoReturnable<WorldChunk> ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            ScriptManager.onChunkChange(x, z);
+        }
+    }
+
+    @Inject(method = "unload", at = @At("RETURN"))
+    private void onUnload(int chunkX, int chunkZ, CallbackInfo ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            ScriptManager.onChunkChange(chunkX, chunkZ);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package net.earthcomputer.clientcommands.script.mixin;
+
+import net.earthcomputer.clientcommands.script.ClientCommandsScripting;
+import net.earthcomputer.clientcommands.script.ContainerMemory;
+import net.earthcomputer.clientcommands.script.CraftPlanner;
+import net.earthcomputer.clientcommands.script.RegistryNames;
+import net.earthcomputer.clientcommands.script.ScriptManager;
+import net.earthcomputer.clientcommands.script.TagIndex;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.packet.s2c.play.GameJoinS2CPacket;
+import net.minecraft.network.packet.s2c.play.InventoryS2CPacket;
+import net.minecraft.network.packet.s2c.play.ScreenHandlerSlotUpdateS2CPacket;
+import net.minecraft.network.packet.s2c.play.SynchronizeRecipesS2CPacket;
+import net.minecraft.network.packet.s2c.play.SynchronizeTagsS2CPacket;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientPlayNetworkHandler.class)
+public class MixinClientPlayNetworkHandler {
+    @Inject(method = "onGameJoin", at = @At("RETURN"))
+    private void onOnGameJoin(GameJoinS2CPacket packet, CallbackInfo ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            // raw ids may have been remapped by registry sync
+            RegistryNames.invalidate();
+            TagIndex.invalidate();
+            CraftPlanner.invalidate();
+            ContainerMemory.onGameJoin();
+        }
+    }
+
+    @Inject(method = "onSynchronizeTags", at = @At("RETURN"))
+    private void onOnSynchronizeTags(SynchronizeTagsS2CPacket packet, CallbackInfo ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            TagIndex.invalidate();
+            // recipe ingredients can be tags
+            CraftPlanner.invalidate();
+        }
+    }
+
+    @Inject(method = "onSynchronizeRecipes", at = @At("RETURN"))
+    private void onOnSynchronizeRecipes(SynchronizeRecipesS2CPacket packet, CallbackInfo ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            CraftPlanner.invalidate();
+        }
+    }
+
+    @Inject(method = "onScreenHandlerSlotUpdate", at = @At("RETURN"))
+    private void onOnScreenHandlerSlotUpdate(ScreenHandlerSlotUpdateS2CPacket packet, CallbackInfo ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            ScriptManager.onServerSlotUpdate(packet.getSyncId(), packet.getRevision(), packet.getSlot(), packet.getItemStack());
+        }
+    }
+
+    @Inject(method = "onInventory", at = @At("RETURN"))
+    private void onOnInventory(InventoryS2CPacket packet, CallbackInfo ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            ScriptManager.onServerInventory(packet.getSyncId(), packet.getRevision(), packet.getContents(), packet.getCursorStack());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package net.earthcomputer.clientcommands.script.mixin;
+
+import net.earthcomputer.clientcommands.script.ClientCommandsScripting;
+import net.earthcomputer.clientcommands.script.ContainerMemory;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.network.ClientPlayerInteractionManager;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.util.ActionResult;
+import net.minecraft.util.Hand;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.hit.EntityHitResult;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(ClientPlayerInteractionManager.class)
+public class MixinClientPlayerInteractionManager {
+    @Inject(method = "interactBlock", at = @At("HEAD"))
+    private void onInteractBlock(ClientPlayerEntity player, ClientWorld world, Hand hand, BlockHitResult hitResult, CallbackInfoReturnable<ActionResult> ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            ContainerMemory.onInteractBlock(hitResult.getBlockPos());
+        }
+    }
+
+    // only reached when the block didn't handle the interaction, so the held item is used or placed instead
+    @Inject(method = "interactBlock", at = @At(value = "INVOKE", target = "Lnet/minecraft/item/ItemStack;useOnBlock(Lnet/minecraft/item/ItemUsageContext;)Lnet/minecraft/util/ActionResult;"))
+    private void onUseItemOnBlock(ClientPlayerEntity player, ClientWorld world, Hand hand, BlockHitResult hitResult, CallbackInfoReturnable<ActionResult> ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            ContainerMemory.onInteractOther();
+        }
+    }
+
+    @Inject(method = "interactEntity", at = @At("HEAD"))
+    private void onInteractEntity(PlayerEntity player, Entity entity, Hand hand, CallbackInfoReturnable<ActionResult> ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            ContainerMemory.onInteractOther();
+        }
+    }
+
+    @Inject(method = "interactEntityAtLocation", at = @At("HEAD"))
+    private void onInteractEntityAtLocation(PlayerEntity player, Entity entity, EntityHitResult hitResult, Hand hand, CallbackInfoReturnable<ActionResult> ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            ContainerMemory.onInteractOther();
+        }
+    }
+}
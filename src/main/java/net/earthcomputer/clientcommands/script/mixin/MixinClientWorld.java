@@ -0,0 +1,20 @@
+package net.earthcomputer.clientcommands.script.mixin;
+
+import net.earthcomputer.clientcommands.script.ClientCommandsScripting;
+import net.earthcomputer.clientcommands.script.ScriptManager;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.Entity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientWorld.class)
+public class MixinClientWorld {
+    @Inject(method = "addEntity", at = @At("RETURN"))
+    private void onAddEntity(int id, Entity entity, CallbackInfo ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            ScriptManager.onEntityAdded(entity);
+        }
+    }
+}
@@ -25,6 +25,13 @@ public abstract class MixinMinecraftClient implements IMinecraftClient {
         }
     }
 
+    @Inject(method = "tick", at = @At("RETURN"))
+    private void onTick(CallbackInfo ci) {
+        if (ClientCommandsScripting.isJsMacrosPresent) {
+            ScriptManager.onClientTick();
+        }
+    }
+
     @Override
     public void continueBreakingBlock() {
         handleBlockBreaking(true);
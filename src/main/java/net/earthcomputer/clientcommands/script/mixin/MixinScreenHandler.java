@@ -0,0 +1,33 @@
+package net.earthcomputer.clientcommands.script.mixin;
+
+import net.earthcomputer.clientcommands.script.ducks.IScreenHandler;
+import net.minecraft.screen.ScreenHandler;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+
+@Mixin(ScreenHandler.class)
+public class MixinScreenHandler implements IScreenHandler {
+
+    @Unique private volatile Object playerSlotIds;
+    @Unique private volatile Object containerSlotIds;
+
+    @Override
+    public Object clientcommands_getPlayerSlotIds() {
+        return playerSlotIds;
+    }
+
+    @Override
+    public void clientcommands_setPlayerSlotIds(Object slotIds) {
+        this.playerSlotIds = slotIds;
+    }
+
+    @Override
+    public Object clientcommands_getContainerSlotIds() {
+        return containerSlotIds;
+    }
+
+    @Override
+    public void clientcommands_setContainerSlotIds(Object slotIds) {
+        this.containerSlotIds = slotIds;
+    }
+}
@@ -0,0 +1,109 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.earthcomputer.clientcommands.features.PathfindingHints;
+import net.minecraft.entity.ai.pathing.Path;
+import net.minecraft.entity.ai.pathing.PathNodeType;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.BlockView;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncPathfinderTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    public void testInterleavedPathfindersDontBlockEachOther() {
+        AtomicInteger nodesA = new AtomicInteger();
+        AtomicInteger nodesB = new AtomicInteger();
+        AsyncPathfinder a = new AsyncPathfinder(slowSearch(nodesA));
+        AsyncPathfinder b = new AsyncPathfinder(slowSearch(nodesB));
+
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            CompletableFuture<Path> pathA = a.submit(BlockPos.ORIGIN, new FakeHints());
+            // the first script's search is now suspended part way through
+            a.runSlice();
+            assertFalse(pathA.isDone());
+            assertTrue(nodesA.get() > 0);
+
+            CompletableFuture<Path> pathB = b.submit(BlockPos.ORIGIN, new FakeHints());
+            b.runSlice();
+            assertTrue(nodesB.get() > 0, "The second search didn't start while the first was suspended");
+
+            while (!pathA.isDone() || !pathB.isDone()) {
+                a.runSlice();
+                b.runSlice();
+            }
+            assertNull(pathA.join());
+            assertNull(pathB.join());
+        });
+    }
+
+    @Test
+    public void testSearchOnlyRunsDuringSlices() {
+        AtomicInteger nodes = new AtomicInteger();
+        AsyncPathfinder pathfinder = new AsyncPathfinder(slowSearch(nodes));
+
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            CompletableFuture<Path> path = pathfinder.submit(BlockPos.ORIGIN, new FakeHints());
+            Thread.sleep(50);
+            assertEquals(0, nodes.get());
+
+            pathfinder.runSlice();
+            int afterSlice = nodes.get();
+            Thread.sleep(50);
+            assertEquals(afterSlice, nodes.get());
+            assertFalse(path.isDone());
+
+            pathfinder.cancel();
+            assertTrue(path.isCancelled());
+        });
+    }
+
+    /**
+     * A search which looks at enough nodes, slowly enough, to take several slices
+     */
+    private static BiFunction<BlockPos, PathfindingHints, Path> slowSearch(AtomicInteger nodes) {
+        return (target, hints) -> {
+            long end = System.nanoTime() + 20_000_000;
+            for (int i = 0; System.nanoTime() < end || i < 100; i++) {
+                hints.getNodeType(null, target.add(i, 0, 0));
+                nodes.incrementAndGet();
+                Thread.onSpinWait();
+            }
+            return null;
+        };
+    }
+
+    private static final class FakeHints implements PathfindingHints {
+        @Override
+        public PathNodeType getNodeType(BlockView world, BlockPos pos) {
+            return null;
+        }
+
+        @Override
+        public float getPathfindingPenalty(PathNodeType type) {
+            return type.getDefaultPenalty();
+        }
+
+        @Override
+        public float getFollowRange() {
+            return 16;
+        }
+
+        @Override
+        public int getReachDistance() {
+            return 0;
+        }
+
+        @Override
+        public float getMaxPathLength() {
+            return 16;
+        }
+    }
+}
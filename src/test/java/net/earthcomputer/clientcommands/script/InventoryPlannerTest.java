@@ -0,0 +1,203 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.inventory.SimpleInventory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.screen.slot.Slot;
+import net.minecraft.screen.slot.SlotActionType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InventoryPlannerTest {
+    @BeforeAll
+    public static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Test
+    public void testSortMergesAndMovesStacks() {
+        List<Slot> slots = createSlots(stack(Items.DIRT, 10), stack(Items.STONE, 64), stack(Items.DIRT, 20), ItemStack.EMPTY);
+        InventoryPlanner planner = new InventoryPlanner(slots, null);
+        planner.planSort();
+
+        // 2 clicks to merge the dirt, then a cycle of 3 slots with an empty one
+        assertLayout(simulate(slots, null, planner.getClicks()), stack(Items.STONE, 64), stack(Items.DIRT, 30), ItemStack.EMPTY, ItemStack.EMPTY);
+        assertEquals(5, planner.getClicks().size());
+    }
+
+    @Test
+    public void testSortLeavesIdenticalStackInPlace() {
+        List<Slot> slots = createSlots(stack(Items.DIRT, 64), stack(Items.STONE, 64), stack(Items.DIRT, 64));
+        InventoryPlanner planner = new InventoryPlanner(slots, null);
+        planner.planSort();
+
+        // only the first two slots swap, which takes 3 clicks
+        assertLayout(simulate(slots, null, planner.getClicks()), stack(Items.STONE, 64), stack(Items.DIRT, 64), stack(Items.DIRT, 64));
+        assertEquals(3, planner.getClicks().size());
+    }
+
+    @Test
+    public void testLayoutWithMergeableStacksInCycle() {
+        // regression test: the partial dirt stack used to be clicked onto the full one, which did nothing, and the rest
+        // of the cycle then put the stacks in the wrong slots
+        List<Slot> slots = createSlots(stack(Items.DIRT, 32), stack(Items.DIRT, 64), stack(Items.STONE, 64));
+        InventoryPlanner planner = new InventoryPlanner(slots, null);
+        planner.planLayout(wanted(exactly(Items.STONE, 64), exactly(Items.DIRT, 32), exactly(Items.DIRT, 64)));
+
+        assertLayout(simulate(slots, null, planner.getClicks()), stack(Items.STONE, 64), stack(Items.DIRT, 32), stack(Items.DIRT, 64));
+        assertEquals(4, planner.getClicks().size());
+    }
+
+    @Test
+    public void testCycleSkipsIdenticalStacks() {
+        List<Slot> slots = createSlots(stack(Items.COBBLESTONE, 64), stack(Items.COBBLESTONE, 16), stack(Items.DIRT, 64), stack(Items.DIRT, 64));
+        InventoryPlanner planner = new InventoryPlanner(slots, null);
+        planner.permute(new int[] {1, 2, 3, 0});
+
+        // the cobblestone merge closes the cycle, and the second dirt stack stays where it is
+        assertLayout(simulate(slots, null, planner.getClicks()), stack(Items.DIRT, 64), stack(Items.COBBLESTONE, 64), stack(Items.COBBLESTONE, 16), stack(Items.DIRT, 64));
+        assertEquals(4, planner.getClicks().size());
+    }
+
+    @Test
+    public void testCycleParksMergeableStack() {
+        List<Slot> slots = createSlots(stack(Items.COBBLESTONE, 64), stack(Items.COBBLESTONE, 16), stack(Items.DIRT, 64), stack(Items.DIRT, 32), ItemStack.EMPTY);
+        InventoryPlanner planner = new InventoryPlanner(slots, null);
+        planner.permute(new int[] {1, 2, 3, 0, 4});
+
+        // 5 clicks for the cycle, 1 to park the full dirt stack in the free slot and 2 to put it back afterwards
+        assertLayout(simulate(slots, null, planner.getClicks()), stack(Items.DIRT, 32), stack(Items.COBBLESTONE, 64), stack(Items.COBBLESTONE, 16), stack(Items.DIRT, 64), ItemStack.EMPTY);
+        assertEquals(8, planner.getClicks().size());
+    }
+
+    @Test
+    public void testFullInventoryCantParkMergeableStack() {
+        List<Slot> slots = createSlots(stack(Items.COBBLESTONE, 64), stack(Items.COBBLESTONE, 16), stack(Items.DIRT, 64), stack(Items.DIRT, 32));
+        InventoryPlanner planner = new InventoryPlanner(slots, null);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> planner.permute(new int[] {1, 2, 3, 0}));
+        assertEquals("Not enough free slots to rearrange the stacks", e.getMessage());
+    }
+
+    @Test
+    public void testHotbarCycleUsesSwaps() {
+        PlayerInventory playerInventory = new PlayerInventory(null);
+        List<Slot> slots = createSlots(playerInventory, new int[] {0, 9, 10}, stack(Items.DIRT, 64), stack(Items.STONE, 64), stack(Items.COBBLESTONE, 64));
+        InventoryPlanner planner = new InventoryPlanner(slots, playerInventory);
+        planner.planLayout(wanted(exactly(Items.STONE, 64), exactly(Items.COBBLESTONE, 64), exactly(Items.DIRT, 64)));
+
+        assertLayout(simulate(slots, playerInventory, planner.getClicks()), stack(Items.STONE, 64), stack(Items.COBBLESTONE, 64), stack(Items.DIRT, 64));
+        // a cycle of 3 slots takes 2 swaps, rather than 4 left clicks
+        assertEquals(2, planner.getClicks().size());
+        for (ScriptClickTransaction.Click click : planner.getClicks()) {
+            assertEquals(SlotActionType.SWAP, click.type());
+            assertEquals(0, click.button());
+        }
+    }
+
+    private static ItemStack stack(Item item, int count) {
+        return new ItemStack(item, count);
+    }
+
+    private static Predicate<ItemStack> exactly(Item item, int count) {
+        return stack -> stack.isOf(item) && stack.getCount() == count;
+    }
+
+    @SafeVarargs
+    private static Predicate<ItemStack>[] wanted(Predicate<ItemStack>... wanted) {
+        return wanted;
+    }
+
+    private static List<Slot> createSlots(ItemStack... stacks) {
+        SimpleInventory inventory = new SimpleInventory(stacks.length);
+        int[] indexes = new int[stacks.length];
+        for (int i = 0; i < stacks.length; i++) {
+            indexes[i] = i;
+        }
+        return createSlots(inventory, indexes, stacks);
+    }
+
+    private static List<Slot> createSlots(Inventory inventory, int[] indexes, ItemStack... stacks) {
+        List<Slot> slots = new ArrayList<>();
+        for (int i = 0; i < stacks.length; i++) {
+            Slot slot = new Slot(inventory, indexes[i], 0, 0);
+            slot.id = i;
+            inventory.setStack(indexes[i], stacks[i].copy());
+            slots.add(slot);
+        }
+        return slots;
+    }
+
+    /**
+     * Applies the clicks to copies of the stacks in the slots, the way the server would, and returns the result
+     */
+    private static ItemStack[] simulate(List<Slot> slots, PlayerInventory playerInventory, List<ScriptClickTransaction.Click> clicks) {
+        ItemStack[] stacks = new ItemStack[slots.size()];
+        for (int i = 0; i < stacks.length; i++) {
+            stacks[i] = slots.get(i).getStack().copy();
+        }
+        ItemStack cursor = ItemStack.EMPTY;
+        for (ScriptClickTransaction.Click click : clicks) {
+            int index = click.slotId();
+            ItemStack stack = stacks[index];
+            switch (click.type()) {
+                case PICKUP -> {
+                    assertEquals(0, click.button());
+                    if (cursor.isEmpty()) {
+                        cursor = stack;
+                        stacks[index] = ItemStack.EMPTY;
+                    } else if (stack.isEmpty()) {
+                        stacks[index] = cursor;
+                        cursor = ItemStack.EMPTY;
+                    } else if (ItemStack.canCombine(cursor, stack)) {
+                        int moved = Math.min(cursor.getCount(), stack.getMaxCount() - stack.getCount());
+                        stack.increment(moved);
+                        cursor.decrement(moved);
+                        if (cursor.isEmpty()) {
+                            cursor = ItemStack.EMPTY;
+                        }
+                    } else {
+                        stacks[index] = cursor;
+                        cursor = stack;
+                    }
+                }
+                case SWAP -> {
+                    int hotbar = findHotbarSlot(slots, playerInventory, click.button());
+                    stacks[index] = stacks[hotbar];
+                    stacks[hotbar] = stack;
+                }
+                default -> fail("Unexpected click type " + click.type());
+            }
+        }
+        assertTrue(cursor.isEmpty(), "Cursor not empty after the clicks");
+        return stacks;
+    }
+
+    private static int findHotbarSlot(List<Slot> slots, PlayerInventory playerInventory, int hotbarIndex) {
+        for (int i = 0; i < slots.size(); i++) {
+            if (slots.get(i).inventory == playerInventory && slots.get(i).getIndex() == hotbarIndex) {
+                return i;
+            }
+        }
+        throw new AssertionError("No slot for hotbar index " + hotbarIndex);
+    }
+
+    private static void assertLayout(ItemStack[] actual, ItemStack... expected) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            int slot = i;
+            assertTrue(ItemStack.areEqual(expected[i], actual[i]), () -> "Slot " + slot + ": expected " + expected[slot] + " but was " + actual[slot]);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.entity.ai.pathing.PathNodeType;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Not a rigorous benchmark, but enough to show the difference. Expands every node in a square like a pathfinder does,
+ * asking for the type and penalty of each neighbour of each node, with hint functions which parse a string like the
+ * script functions do. Only run by the benchmark task, which prints nodes expanded per second with and without the
+ * cache
+ */
+@Tag("benchmark")
+public class PathfindingHintCacheBenchmark {
+    private static final int SEARCH_RADIUS = 48;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    @Test
+    public void benchmarkNodesExpandedPerSecond() {
+        Function<BlockPos, PathNodeType> nodeTypeFunction = pos -> {
+            String typeName = ((pos.getX() * 31 + pos.getZ()) % 7 == 0 ? "Blocked" : "Walkable").toUpperCase(Locale.ROOT);
+            return PathNodeType.valueOf(typeName);
+        };
+        Function<PathNodeType, Float> penaltyFunction = type -> Float.parseFloat(String.valueOf(type.getDefaultPenalty()));
+
+        long uncachedNodes = 0;
+        long cachedNodes = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            uncachedNodes += search(null, nodeTypeFunction, penaltyFunction);
+            cachedNodes += search(new PathfindingHintCache(), nodeTypeFunction, penaltyFunction);
+        }
+        assertEquals(uncachedNodes, cachedNodes);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            uncachedNodes += search(null, nodeTypeFunction, penaltyFunction);
+        }
+        long uncachedTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            cachedNodes += search(new PathfindingHintCache(), nodeTypeFunction, penaltyFunction);
+        }
+        long cachedTime = System.nanoTime() - start;
+
+        long nodesPerRound = uncachedNodes / (WARMUP_ROUNDS + ROUNDS);
+        System.out.printf("Pathfinding hints, %d nodes per search: uncached %.0f nodes/s, cached %.0f nodes/s%n",
+                nodesPerRound, nodesPerRound * ROUNDS * 1e9 / uncachedTime, nodesPerRound * ROUNDS * 1e9 / cachedTime);
+    }
+
+    private static long search(PathfindingHintCache cache, Function<BlockPos, PathNodeType> nodeTypeFunction, Function<PathNodeType, Float> penaltyFunction) {
+        LongSet visited = new LongOpenHashSet();
+        LongArrayFIFOQueue queue = new LongArrayFIFOQueue();
+        queue.enqueue(BlockPos.ORIGIN.asLong());
+        visited.add(BlockPos.ORIGIN.asLong());
+        BlockPos.Mutable neighbor = new BlockPos.Mutable();
+        long expanded = 0;
+        while (!queue.isEmpty()) {
+            BlockPos pos = BlockPos.fromLong(queue.dequeueLong());
+            expanded++;
+            for (Direction dir : Direction.Type.HORIZONTAL) {
+                neighbor.set(pos, dir);
+                if (Math.abs(neighbor.getX()) > SEARCH_RADIUS || Math.abs(neighbor.getZ()) > SEARCH_RADIUS) {
+                    continue;
+                }
+                // the node maker looks at the node below and above too
+                for (int dy = -1; dy <= 1; dy++) {
+                    BlockPos candidate = neighbor.up(dy);
+                    PathNodeType type = cache == null ? nodeTypeFunction.apply(candidate) : cache.getNodeType(candidate, nodeTypeFunction);
+                    float penalty = cache == null ? penaltyFunction.apply(type) : cache.getPenalty(type, penaltyFunction);
+                    if (dy == 0 && penalty >= 0 && visited.add(candidate.asLong())) {
+                        queue.enqueue(candidate.asLong());
+                    }
+                }
+            }
+        }
+        return expanded;
+    }
+}
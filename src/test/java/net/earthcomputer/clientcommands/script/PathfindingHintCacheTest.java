@@ -0,0 +1,75 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.entity.ai.pathing.PathNodeType;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PathfindingHintCacheTest {
+    @Test
+    public void testChangedBlocksAreRecomputedOnNextSearch() {
+        PathfindingHintCache cache = new PathfindingHintCache();
+        PathNodeType[] world = {PathNodeType.WALKABLE};
+        AtomicInteger calls = new AtomicInteger();
+        Function<BlockPos, PathNodeType> function = pos -> {
+            calls.incrementAndGet();
+            return world[0];
+        };
+        BlockPos pos = new BlockPos(10, 64, 10);
+        BlockPos far = new BlockPos(20, 64, 10);
+
+        assertEquals(PathNodeType.WALKABLE, cache.getNodeType(pos, function));
+        assertEquals(PathNodeType.WALKABLE, cache.getNodeType(far, function));
+        assertEquals(PathNodeType.WALKABLE, cache.getNodeType(pos, function));
+        assertEquals(2, calls.get());
+
+        world[0] = PathNodeType.BLOCKED;
+        cache.onBlockChange(pos.down());
+        // still the same search
+        assertEquals(PathNodeType.WALKABLE, cache.getNodeType(pos, function));
+
+        cache.applyBlockChanges();
+        assertEquals(PathNodeType.BLOCKED, cache.getNodeType(pos, function));
+        assertEquals(PathNodeType.WALKABLE, cache.getNodeType(far, function));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testPenaltiesAreRecomputedAfterBlockChange() {
+        PathfindingHintCache cache = new PathfindingHintCache();
+        float[] penalty = {1};
+        Function<PathNodeType, Float> function = type -> penalty[0];
+
+        assertEquals(1, cache.getPenalty(PathNodeType.WATER, function));
+        penalty[0] = 8;
+        cache.applyBlockChanges();
+        assertEquals(1, cache.getPenalty(PathNodeType.WATER, function));
+        cache.onBlockChange(BlockPos.ORIGIN);
+        cache.applyBlockChanges();
+        assertEquals(8, cache.getPenalty(PathNodeType.WATER, function));
+    }
+
+    @Test
+    public void testManyChangesClearEverything() {
+        PathfindingHintCache cache = new PathfindingHintCache();
+        cache.getNodeType(new BlockPos(0, 1000, 0), pos -> PathNodeType.OPEN);
+        for (int i = 0; i < 5000; i++) {
+            cache.onBlockChange(new BlockPos(i, 0, 0));
+        }
+        cache.applyBlockChanges();
+        assertEquals(0, cache.getCachedNodeTypeCount());
+
+        // tracking starts again after the reset
+        BlockPos pos = new BlockPos(0, 64, 0);
+        BlockPos far = new BlockPos(100, 64, 0);
+        cache.getNodeType(pos, p -> PathNodeType.OPEN);
+        cache.getNodeType(far, p -> PathNodeType.OPEN);
+        cache.onBlockChange(pos);
+        cache.applyBlockChanges();
+        assertEquals(1, cache.getCachedNodeTypeCount());
+    }
+}
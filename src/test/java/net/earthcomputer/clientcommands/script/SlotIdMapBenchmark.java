@@ -0,0 +1,98 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.screen.slot.Slot;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Not a rigorous benchmark, but enough to show the difference in the lookup cost of a full pass over a container, which
+ * is what findSlots and moveItems do. Only run by the benchmark task, which prints the time per pass before and after
+ * the change
+ */
+@Tag("benchmark")
+public class SlotIdMapBenchmark {
+    private static final int WARMUP_ROUNDS = 2000;
+    private static final int ROUNDS = 20000;
+
+    @BeforeAll
+    public static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Test
+    public void benchmarkDoubleChest() {
+        benchmark("double chest", SlotIdMapTest::createDoubleChest);
+    }
+
+    @Test
+    public void benchmarkShulkerBox() {
+        benchmark("shulker box", SlotIdMapTest::createShulkerBox);
+    }
+
+    private static void benchmark(String name, Function<PlayerInventory, ScreenHandler> screenFactory) {
+        PlayerInventory playerInventory = new PlayerInventory(null);
+        ScreenHandler container = screenFactory.apply(playerInventory);
+        // built once per screen handler, like the stored maps
+        SlotIdMap slotIds = SlotIdMap.buildContainerView(container, playerInventory);
+        int size = slotIds.getSlots().size();
+
+        long linearSum = 0;
+        long mapSum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            linearSum += linearPass(container, playerInventory, size);
+            mapSum += mapPass(slotIds);
+            SlotIdMap.buildContainerView(container, playerInventory);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            linearSum += linearPass(container, playerInventory, size);
+        }
+        long linearTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            mapSum += mapPass(slotIds);
+        }
+        long mapTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            SlotIdMap.buildContainerView(container, playerInventory);
+        }
+        long buildTime = System.nanoTime() - start;
+
+        assertEquals(linearSum, mapSum);
+        System.out.printf("Slot id lookup, full pass over a %s (%d slots): linear scan %.0f ns, slot id map %.0f ns (building the map %.0f ns)%n",
+                name, size, (double) linearTime / ROUNDS, (double) mapTime / ROUNDS, (double) buildTime / ROUNDS);
+    }
+
+    private static long linearPass(ScreenHandler container, Inventory playerInventory, int size) {
+        long sum = 0;
+        for (int id = 0; id < size; id++) {
+            sum += SlotIdMapTest.linearGetId(container, playerInventory, SlotIdMapTest.linearGetSlot(container, playerInventory, id));
+        }
+        return sum;
+    }
+
+    private static long mapPass(SlotIdMap slotIds) {
+        long sum = 0;
+        List<Slot> slots = slotIds.getSlots();
+        for (int id = 0; id < slots.size(); id++) {
+            sum += slotIds.getId(slotIds.getSlot(id));
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,144 @@
+package net.earthcomputer.clientcommands.script;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.inventory.DoubleInventory;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.inventory.SimpleInventory;
+import net.minecraft.screen.GenericContainerScreenHandler;
+import net.minecraft.screen.PlayerScreenHandler;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.screen.ShulkerBoxScreenHandler;
+import net.minecraft.screen.slot.Slot;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlotIdMapTest {
+    @BeforeAll
+    public static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    static ScreenHandler createDoubleChest(PlayerInventory playerInventory) {
+        return GenericContainerScreenHandler.createGeneric9x6(0, playerInventory, new DoubleInventory(new SimpleInventory(27), new SimpleInventory(27)));
+    }
+
+    static ScreenHandler createShulkerBox(PlayerInventory playerInventory) {
+        return new ShulkerBoxScreenHandler(0, playerInventory, new SimpleInventory(27));
+    }
+
+    @Test
+    public void testDoubleChestContainerViewMatchesLinearScan() {
+        PlayerInventory playerInventory = new PlayerInventory(null);
+        checkContainerView(createDoubleChest(playerInventory), playerInventory, 54);
+    }
+
+    @Test
+    public void testShulkerBoxContainerViewMatchesLinearScan() {
+        PlayerInventory playerInventory = new PlayerInventory(null);
+        checkContainerView(createShulkerBox(playerInventory), playerInventory, 27);
+    }
+
+    private static void checkContainerView(ScreenHandler container, PlayerInventory playerInventory, int size) {
+        SlotIdMap slotIds = SlotIdMap.buildContainerView(container, playerInventory);
+
+        assertEquals(size, slotIds.getSlots().size());
+        for (int id = 0; id < size; id++) {
+            Slot slot = linearGetSlot(container, playerInventory, id);
+            assertSame(slot, slotIds.getSlot(id));
+            assertSame(slot, slotIds.getSlots().get(id));
+            assertEquals(id, slotIds.getId(slot));
+            assertEquals(id, linearGetId(container, playerInventory, slot));
+        }
+        assertNull(slotIds.getSlot(size));
+        assertNull(slotIds.getSlot(-1));
+        // the player inventory slots of the screen aren't part of the container
+        assertEquals(-1, slotIds.getId(container.getSlot(size)));
+    }
+
+    @Test
+    public void testPlayerViewOfOwnScreen() {
+        PlayerInventory playerInventory = new PlayerInventory(null);
+        PlayerScreenHandler playerScreen = new PlayerScreenHandler(playerInventory, false, null);
+        SlotIdMap slotIds = SlotIdMap.buildPlayerView(playerScreen, playerInventory, playerScreen);
+
+        int size = playerInventory.size();
+        // main inventory, armor and offhand are all visible in the player's own screen
+        assertEquals(size, slotIds.getSlots().size());
+        for (int id = 0; id < size; id++) {
+            Slot slot = slotIds.getSlot(id);
+            assertNotNull(slot, "Slot " + id);
+            assertSame(playerInventory, slot.inventory);
+            assertEquals(id, slot.getIndex());
+            assertEquals(id, slotIds.getId(slot));
+        }
+        // then every slot of the screen by its slot id, including the crafting grid
+        for (Slot slot : playerScreen.slots) {
+            assertSame(slot, slotIds.getSlot(size + slot.id));
+        }
+        Slot craftingResult = playerScreen.getSlot(PlayerScreenHandler.CRAFTING_RESULT_ID);
+        assertEquals(size + PlayerScreenHandler.CRAFTING_RESULT_ID, slotIds.getId(craftingResult));
+        assertNull(slotIds.getSlot(size + playerScreen.slots.size()));
+    }
+
+    @Test
+    public void testPlayerViewWithContainerOpen() {
+        PlayerInventory playerInventory = new PlayerInventory(null);
+        PlayerScreenHandler playerScreen = new PlayerScreenHandler(playerInventory, false, null);
+        checkPlayerViewWithContainer(createDoubleChest(playerInventory), playerInventory, playerScreen);
+        checkPlayerViewWithContainer(createShulkerBox(playerInventory), playerInventory, playerScreen);
+    }
+
+    private static void checkPlayerViewWithContainer(ScreenHandler container, PlayerInventory playerInventory, ScreenHandler playerScreen) {
+        SlotIdMap slotIds = SlotIdMap.buildPlayerView(container, playerInventory, playerScreen);
+
+        // only the main inventory and hotbar are visible, and they map to the container screen's slots
+        assertEquals(PlayerInventory.MAIN_SIZE, slotIds.getSlots().size());
+        for (int id = 0; id < PlayerInventory.MAIN_SIZE; id++) {
+            Slot slot = slotIds.getSlot(id);
+            assertNotNull(slot, "Slot " + id);
+            assertSame(container.getSlot(slot.id), slot);
+            assertSame(playerInventory, slot.inventory);
+            assertEquals(id, slot.getIndex());
+            assertEquals(id, slotIds.getId(slot));
+        }
+        for (int id = PlayerInventory.MAIN_SIZE; id < playerInventory.size(); id++) {
+            assertNull(slotIds.getSlot(id), "Armor and offhand aren't in a container screen");
+        }
+        assertNull(slotIds.getSlot(playerInventory.size()));
+        assertEquals(-1, slotIds.getId(container.getSlot(0)));
+        assertEquals(-1, slotIds.getId(playerScreen.getSlot(PlayerScreenHandler.HOTBAR_START)));
+    }
+
+    // the lookups ScriptInventory did before SlotIdMap
+
+    static Slot linearGetSlot(ScreenHandler container, Inventory playerInventory, int id) {
+        int containerId = 0;
+        for (int i = 0; i < container.slots.size(); i++) {
+            Slot slot = container.getSlot(i);
+            if (slot.inventory != playerInventory) {
+                if (id == containerId)
+                    return slot;
+                containerId++;
+            }
+        }
+        return null;
+    }
+
+    static int linearGetId(ScreenHandler container, Inventory playerInventory, Slot slot) {
+        int containerId = 0;
+        for (int i = 0; i < container.slots.size(); i++) {
+            Slot otherSlot = container.getSlot(i);
+            if (otherSlot.inventory != playerInventory) {
+                if (otherSlot == slot)
+                    return containerId;
+                containerId++;
+            }
+        }
+        return -1;
+    }
+}
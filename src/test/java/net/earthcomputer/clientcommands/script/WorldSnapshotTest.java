@@ -0,0 +1,168 @@
+package net.earthcomputer.clientcommands.script;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorldSnapshotTest {
+    private static final long SECTION_A = ChunkSectionPos.asLong(0, 0, 0);
+    private static final long SECTION_B = ChunkSectionPos.asLong(1, 0, 0);
+
+    @BeforeAll
+    public static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Test
+    public void testMissingSectionsAreCopiedAtEndOfTick() {
+        FakeSource source = new FakeSource();
+        source.set(0, 0, 0, Blocks.STONE.getDefaultState());
+        WorldSnapshot.SectionCache cache = new WorldSnapshot.SectionCache(source);
+
+        assertNull(cache.tryCapture(0, 0, 0, 15, 15, 15));
+        assertEquals(0, source.copies);
+
+        cache.onTick();
+        assertEquals(1, source.copies);
+        Long2ObjectMap<PalettedContainer<BlockState>> sections = cache.tryCapture(0, 0, 0, 15, 15, 15);
+        assertNotNull(sections);
+        assertEquals(Blocks.STONE.getDefaultState(), snapshot(sections).getBlockState(0, 0, 0));
+    }
+
+    @Test
+    public void testMutationDuringTickIsNotSeenUntilEndOfTick() {
+        FakeSource source = new FakeSource();
+        source.set(0, 0, 0, Blocks.STONE.getDefaultState());
+        source.set(16, 0, 0, Blocks.STONE.getDefaultState());
+        WorldSnapshot.SectionCache cache = new WorldSnapshot.SectionCache(source);
+        cache.tryCapture(0, 0, 0, 31, 15, 15);
+        cache.onTick();
+        WorldSnapshot before = snapshot(cache.tryCapture(0, 0, 0, 31, 15, 15));
+
+        // the client thread applies a block change packet in the middle of a tick
+        source.set(0, 0, 0, Blocks.DIRT.getDefaultState());
+        cache.markDirty(SECTION_A);
+
+        WorldSnapshot during = snapshot(cache.tryCapture(0, 0, 0, 31, 15, 15));
+        assertEquals(Blocks.STONE.getDefaultState(), during.getBlockState(0, 0, 0));
+
+        source.set(16, 0, 0, Blocks.DIRT.getDefaultState());
+        cache.markDirty(SECTION_B);
+        cache.onTick();
+
+        WorldSnapshot after = snapshot(cache.tryCapture(0, 0, 0, 31, 15, 15));
+        assertEquals(Blocks.DIRT.getDefaultState(), after.getBlockState(0, 0, 0));
+        assertEquals(Blocks.DIRT.getDefaultState(), after.getBlockState(16, 0, 0));
+        // snapshots taken before keep their copies
+        assertEquals(Blocks.STONE.getDefaultState(), before.getBlockState(0, 0, 0));
+        assertEquals(Blocks.STONE.getDefaultState(), before.getBlockState(16, 0, 0));
+        assertEquals(Blocks.STONE.getDefaultState(), during.getBlockState(16, 0, 0));
+    }
+
+    @Test
+    public void testConcurrentReadsSeeWholeTicks() throws InterruptedException {
+        FakeSource source = new FakeSource();
+        WorldSnapshot.SectionCache cache = new WorldSnapshot.SectionCache(source);
+        BlockState[] states = {Blocks.STONE.getDefaultState(), Blocks.DIRT.getDefaultState()};
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> clientError = new AtomicReference<>();
+        // plays the client thread, changing both sections in every tick
+        Thread client = new Thread(() -> {
+            try {
+                for (int tick = 0; running.get(); tick++) {
+                    BlockState state = states[tick & 1];
+                    for (int x = 0; x < 32; x++) {
+                        source.set(x, tick & 15, 0, state);
+                        cache.markDirty(ChunkSectionPos.asLong(x >> 4, 0, 0));
+                    }
+                    cache.onTick();
+                }
+            } catch (Throwable e) {
+                clientError.set(e);
+            }
+        }, "Fake client thread");
+        client.start();
+
+        try {
+            for (int i = 0; i < 2000; i++) {
+                Long2ObjectMap<PalettedContainer<BlockState>> sections;
+                while ((sections = cache.tryCapture(0, 0, 0, 31, 15, 15)) == null) {
+                    Thread.onSpinWait();
+                }
+                WorldSnapshot snapshot = snapshot(sections);
+                for (int y = 0; y < 16; y++) {
+                    for (int x = 1; x < 32; x++) {
+                        assertEquals(snapshot.getBlockState(0, y, 0), snapshot.getBlockState(x, y, 0), "Snapshot mixes ticks");
+                    }
+                }
+                List<BlockPos> stone = BlockSearch.find(snapshot, state -> state == states[0], BlockPos.ORIGIN, 64, -1);
+                assertEquals(0, stone.size() % 32, "Search mixes ticks");
+            }
+        } finally {
+            running.set(false);
+            client.join();
+        }
+        assertNull(clientError.get());
+    }
+
+    @Test
+    public void testTooLargeRegionThrows() {
+        WorldSnapshot.SectionCache cache = new WorldSnapshot.SectionCache(new FakeSource());
+        assertThrows(IllegalArgumentException.class, () -> cache.tryCapture(-4096, 0, -4096, 4096, 63, 4096));
+        cache.onTick();
+        assertEquals(0, cache.getCachedSectionCount());
+    }
+
+    private static WorldSnapshot snapshot(@Nullable Long2ObjectMap<PalettedContainer<BlockState>> sections) {
+        assertNotNull(sections);
+        return new WorldSnapshot(0, 64, sections);
+    }
+
+    private static final class FakeSource implements WorldSnapshot.SectionSource {
+        // only touched by the thread playing the client thread, like the real world
+        private final Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+        int copies;
+
+        void set(int x, int y, int z, BlockState state) {
+            sections.computeIfAbsent(ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4),
+                    key -> new PalettedContainer<>(Block.STATE_IDS, Blocks.AIR.getDefaultState(), PalettedContainer.PaletteProvider.BLOCK_STATE))
+                    .set(x & 15, y & 15, z & 15, state);
+        }
+
+        @Override
+        public int getBottomSectionCoord() {
+            return 0;
+        }
+
+        @Override
+        public int getTopSectionCoord() {
+            return 4;
+        }
+
+        @Nullable
+        @Override
+        public PalettedContainer<BlockState> copySection(long key) {
+            copies++;
+            PalettedContainer<BlockState> section = sections.get(key);
+            return section == null ? null : section.copy();
+        }
+    }
+}